@@ -17,6 +17,7 @@ plugins {
     id("com.adarshr.test-logger").version("1.1.2")
     id("org.ajoberstar.git-publish").version("0.3.3")
     id("com.jfrog.bintray").version("1.8.5")
+    id("me.champeau.gradle.jmh").version("0.5.3")
 }
 
 repositories {
@@ -48,12 +49,45 @@ java {
     withJavadocJar()
 }
 
+// Vector API kernels, packaged into the multi-release JAR for Java 17 and newer; see EcojiVector
+val java17 by sourceSets.creating {
+    java {
+        setSrcDirs(listOf("src/main/java17"))
+    }
+    compileClasspath += sourceSets.main.get().output
+}
+
+// Whether the build runs on a JDK which can compile and run the Vector API kernels
+val vectorSupported = JavaVersion.current().isCompatibleWith(JavaVersion.VERSION_17)
+
+// Tests and benchmarks exercise the Vector API kernels when the JDK has them, the same way as the multi-release JAR
+sourceSets {
+    test {
+        if (vectorSupported) {
+            runtimeClasspath = java17.output + runtimeClasspath
+        }
+    }
+    named("jmh") {
+        if (vectorSupported) {
+            runtimeClasspath = java17.output + runtimeClasspath
+        }
+    }
+}
+
 idea {
     module {
         generatedSourceDirs.add(generatedSourcesDir)
     }
 }
 
+jmh {
+    jmhVersion = "1.27"
+    profilers = listOf("gc")
+    jvmArgs = listOf("-Xms4g", "-Xmx4g") +
+              (if (vectorSupported) listOf("--add-modules", "jdk.incubator.vector") else listOf())
+    resultFormat = "JSON"
+}
+
 gitPublish {
     repoUri = if (System.getenv("CI") != null) {
         "https://github.com/netvl/ecoji-java.git"
@@ -139,6 +173,9 @@ bintray {
 
     filesSpec(closureOf<RecordingCopyTask> {
         dependsOn(tasks.publish)
+        if (findProject(":ecoji-flow") != null) {
+            dependsOn(":ecoji-flow:publish")
+        }
         from(tempRepo) {
             // looks like bintray does not support uploading sha1, but including then just in case
             include("**/*.sha1")
@@ -176,38 +213,72 @@ tasks {
 
                 output.println("    private Emojis() {}")
 
+                val padding41 = input.removeAt(256)
+                val padding42 = input.removeAt(512)
+                val padding43 = input.removeAt(768)
+                val mapping = input.take(1024)
+
                 output.println("    static final int PADDING = 0x2615;")
                 output.println("    static final int PADDING_40 = 0x269C;")
-                output.println("    static final int PADDING_41 = ${input.removeAt(256)};")
-                output.println("    static final int PADDING_42 = ${input.removeAt(512)};")
-                output.println("    static final int PADDING_43 = ${input.removeAt(768)};")
+                output.println("    static final int PADDING_41 = $padding41;")
+                output.println("    static final int PADDING_42 = $padding42;")
+                output.println("    static final int PADDING_43 = $padding43;")
 
                 output.println("    static final int[] MAPPING = new int[] {")
-                input.take(1024).forEachIndexed { i, s ->
+                mapping.forEachIndexed { i, s ->
                     output.println("        $s,  // $i")
                 }
                 output.println("    };")
 
-                output.println("    static final java.util.Map<Integer, Integer> MAPPING_REV = new java.util.HashMap<>();")
-                output.println("    static {")
-                output.println("        for (int i = 0; i < MAPPING.length; ++i) {")
-                output.println("            MAPPING_REV.put(MAPPING[i], i);")
-                output.println("        }")
-                output.println("    }")
-                output.println("    static int revMapGetOrZero(int k) {")
-                output.println("        Integer value = MAPPING_REV.get(k);")
-                output.println("        if (value == null) {")
-                output.println("            return 0;")
-                output.println("        } else {")
-                output.println("            return value;")
-                output.println("        }")
-                output.println("    }")
+                // Reverse mapping from code points to symbols: 0..1023 for the mapping, the flags below for
+                // the padding characters and -1 for everything else. It is a two-level table, where the high bits
+                // of a code point select a page of 256 symbols; all pages without alphabet characters share page 0.
+                val symbolPadding = 0x1000
+                val symbolPadding4 = 0x2000
+                val symbols = mutableMapOf<Int, Int>()
+                mapping.forEachIndexed { i, s -> symbols[Integer.decode(s)] = i }
+                symbols[0x2615] = symbolPadding
+                symbols[0x269C] = symbolPadding4 or 0
+                symbols[Integer.decode(padding41)] = symbolPadding4 or 1
+                symbols[Integer.decode(padding42)] = symbolPadding4 or 2
+                symbols[Integer.decode(padding43)] = symbolPadding4 or 3
+
+                val pageCount = symbols.keys.max()!! / 256 + 1
+                val pages = mutableListOf(IntArray(256) { -1 })
+                val pageIndex = IntArray(pageCount)
+                for ((page, pageSymbols) in symbols.entries.groupBy { it.key / 256 }.toSortedMap()) {
+                    val block = IntArray(256) { -1 }
+                    pageSymbols.forEach { block[it.key % 256] = it.value }
+                    pageIndex[page] = pages.size
+                    pages.add(block)
+                }
 
-                output.println("    static boolean isValidAlphabetChar(int c) {")
-                output.println("        return c == PADDING || c == PADDING_40 || c == PADDING_41 ||")
-                output.println("               c == PADDING_42 || c == PADDING_43 || MAPPING_REV.containsKey(c);")
-                output.println("    }")
+                output.println("    static final int SYMBOL_PADDING = 0x${symbolPadding.toString(16)};")
+                output.println("    static final int SYMBOL_PADDING_4 = 0x${symbolPadding4.toString(16)};")
 
+                // the tables are package-private, so that EcojiAlphabet can expose them as the tables of the alphabet
+                output.println("    static final byte[] SYMBOL_PAGES = new byte[] {")
+                pageIndex.toList().chunked(32).forEach { line ->
+                    output.println("        ${line.joinToString(", ")},")
+                }
+                output.println("    };")
+
+                output.println("    static final short[] SYMBOLS = new short[] {")
+                pages.forEachIndexed { i, block ->
+                    output.println("        // page $i")
+                    block.toList().chunked(16).forEach { line ->
+                        output.println("        ${line.joinToString(", ")},")
+                    }
+                }
+                output.println("    };")
+
+                output.println("    static int symbolOf(int codePoint) {")
+                output.println("        int page = codePoint >>> 8;")
+                output.println("        if (page >= SYMBOL_PAGES.length) {")
+                output.println("            return -1;")
+                output.println("        }")
+                output.println("        return SYMBOLS[SYMBOL_PAGES[page] << 8 | codePoint & 0xff];")
+                output.println("    }")
 
                 output.println("}")
             }
@@ -216,6 +287,9 @@ tasks {
 
     test {
         useJUnitPlatform()
+        if (vectorSupported) {
+            jvmArgs("--add-modules", "jdk.incubator.vector")
+        }
     }
 
     compileJava {
@@ -227,6 +301,29 @@ tasks {
         targetCompatibility = "1.8"
     }
 
+    named<JavaCompile>("compileJava17Java") {
+        enabled = vectorSupported
+        sourceCompatibility = "17"
+        targetCompatibility = "17"
+        options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+    }
+
+    jar {
+        if (vectorSupported) {
+            into("META-INF/versions/17") {
+                from(java17.output)
+            }
+            manifest {
+                attributes("Multi-Release" to "true")
+            }
+        }
+    }
+
+    named<JavaCompile>("compileJmhJava") {
+        sourceCompatibility = "1.8"
+        targetCompatibility = "1.8"
+    }
+
     gitPublishCopy {
         dependsOn(javadoc)
     }
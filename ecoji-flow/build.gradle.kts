@@ -0,0 +1,77 @@
+// Adapters of the encoding to java.util.concurrent.Flow, published as a separate artifact so that the main one
+// keeps the same API on every Java version; see EcojiFlow
+group = rootProject.group
+version = rootProject.version
+
+plugins {
+    java
+    `maven-publish`
+    id("com.adarshr.test-logger")
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    implementation(project(":"))
+    testImplementation("org.junit.jupiter", "junit-jupiter-api", "5.1.0")
+    testRuntime("org.junit.jupiter", "junit-jupiter-engine", "5.1.0")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_9
+    targetCompatibility = JavaVersion.VERSION_1_9
+
+    withSourcesJar()
+    withJavadocJar()
+}
+
+publishing {
+    publications {
+        register<MavenPublication>("mavenJava") {
+            from(components["java"])
+
+            pom.withXml {
+                asNode().apply {
+                    appendNode("name", "ecoji-flow")
+                    appendNode("description", "java.util.concurrent.Flow adapters for the Ecoji encoding")
+                    appendNode("url", "https://github.com/netvl/ecoji-java")
+                    appendNode("licenses").apply {
+                        appendNode("license").apply {
+                            appendNode("name", "Apache 2.0")
+                            appendNode("url", "https://raw.githubusercontent.com/netvl/ecoji-java/master/LICENSE")
+                            appendNode("distribution", "repo")
+                        }
+                    }
+                    appendNode("developers").apply {
+                        appendNode("developer").apply {
+                            appendNode("name", "Vladimir Matveev")
+                            appendNode("email", "vladimir.matweev@gmail.com")
+                            appendNode("url", "https://github.com/netvl")
+                        }
+                    }
+                    appendNode("scm").apply {
+                        appendNode("connection", "scm:git:https://github.com/netvl/ecoji-java")
+                        appendNode("developerConnection", "scm:git:git@github.com:netvl/ecoji-java.git")
+                        appendNode("url", "https://github.com/netvl/ecoji-java")
+                    }
+                }
+            }
+        }
+    }
+
+    // Published next to the main artifact, so that the bintray upload of the root project picks it up
+    repositories {
+        maven {
+            name = "tempRepo"
+            url = uri("${rootProject.buildDir}/tempRepo")
+        }
+    }
+}
+
+tasks {
+    test {
+        useJUnitPlatform()
+    }
+}
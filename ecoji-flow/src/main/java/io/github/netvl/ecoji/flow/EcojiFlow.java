@@ -0,0 +1,152 @@
+package io.github.netvl.ecoji.flow;
+
+import io.github.netvl.ecoji.Ecoji;
+import io.github.netvl.ecoji.EcojiDecoderSession;
+import io.github.netvl.ecoji.EcojiEncoderSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.concurrent.Flow;
+
+/**
+ * Adapters of the Ecoji encoding to {@link java.util.concurrent.Flow} pipelines.
+ *
+ * <p>The processors returned by this class transform a stream of buffers with the input into a stream of
+ * buffers with the output, which can span the group boundaries arbitrarily. The upstream buffers are consumed
+ * in place, so they must not be modified after they have been passed to {@code onNext()}.</p>
+ *
+ * <p>The processors honor backpressure: upstream items are requested one at a time, when the subscriber has
+ * requested output, or to fill up the output collected while it has not. The output is collected into chunks of
+ * a fixed capacity, and a chunk is published when it has no room for another group, when the upstream has no item
+ * ready and the subscriber has requested output, or when the upstream completes. Therefore small upstream items are
+ * batched while the subscriber is busy, output is not delayed while the upstream is idle, and a processor holds at
+ * most one upstream item and one output chunk at any time, regardless of the size of the stream.</p>
+ *
+ * <p>Every processor supports exactly one subscriber, and can only be used for one stream. Invalid input is
+ * reported to the subscriber with an {@link IOException}, and cancels the upstream subscription.</p>
+ *
+ * <p>This class is shipped in the separate {@code ecoji-flow} artifact, which requires Java 9 or newer.</p>
+ */
+public final class EcojiFlow {
+    /**
+     * The default size of the output chunks, in chars for the encoder and in bytes for the decoder.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    // The maximum number of chars in an encoded group, four surrogate pairs
+    private static final int MAX_GROUP_CHARS = 8;
+
+    private static final ByteBuffer NO_BYTES = ByteBuffer.allocate(0);
+    private static final CharBuffer NO_CHARS = CharBuffer.allocate(0);
+
+    private EcojiFlow() {
+    }
+
+    /**
+     * Returns a new processor which encodes the stream of bytes into Ecoji-encoded chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} chars.
+     *
+     * @return A new encoding processor.
+     */
+    public static Flow.Processor<ByteBuffer, CharBuffer> encoder() {
+        return encoder(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns a new processor which encodes the stream of bytes into Ecoji-encoded chunks of the given size.
+     *
+     * @param chunkSize The capacity of the output chunks in chars; must be at least 8, the size of a group.
+     *
+     * @return A new encoding processor.
+     *
+     * @throws IllegalArgumentException If {@code chunkSize} is less than 8.
+     */
+    public static Flow.Processor<ByteBuffer, CharBuffer> encoder(int chunkSize) {
+        if (chunkSize < MAX_GROUP_CHARS) {
+            throw new IllegalArgumentException("Chunk size must be at least " + MAX_GROUP_CHARS +
+                                               " chars: " + chunkSize);
+        }
+        return new EncodingProcessor(chunkSize);
+    }
+
+    /**
+     * Returns a new processor which decodes the stream of Ecoji-encoded data into chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} bytes.
+     *
+     * @return A new decoding processor.
+     */
+    public static Flow.Processor<CharBuffer, ByteBuffer> decoder() {
+        return decoder(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns a new processor which decodes the stream of Ecoji-encoded data into chunks of the given size.
+     *
+     * @param chunkSize The capacity of the output chunks in bytes; must be at least 5, the size of a group.
+     *
+     * @return A new decoding processor.
+     *
+     * @throws IllegalArgumentException If {@code chunkSize} is less than 5.
+     */
+    public static Flow.Processor<CharBuffer, ByteBuffer> decoder(int chunkSize) {
+        if (chunkSize < 5) {
+            throw new IllegalArgumentException("Chunk size must be at least 5 bytes: " + chunkSize);
+        }
+        return new DecodingProcessor(chunkSize);
+    }
+
+    private static class EncodingProcessor extends EcojiProcessor<ByteBuffer, CharBuffer> {
+        private final EcojiEncoderSession session = Ecoji.getEncoder().newSession();
+
+        EncodingProcessor(int chunkSize) {
+            super(chunkSize);
+        }
+
+        @Override
+        CharBuffer allocate(int size) {
+            return CharBuffer.allocate(size);
+        }
+
+        @Override
+        CoderResult process(ByteBuffer src, CharBuffer dst) {
+            return session.encode(src, dst, false);
+        }
+
+        @Override
+        CoderResult finish(CharBuffer dst) {
+            return session.encode(NO_BYTES.duplicate(), dst, true);
+        }
+    }
+
+    private static class DecodingProcessor extends EcojiProcessor<CharBuffer, ByteBuffer> {
+        private final EcojiDecoderSession session = Ecoji.getDecoder().newSession();
+
+        DecodingProcessor(int chunkSize) {
+            super(chunkSize);
+        }
+
+        @Override
+        ByteBuffer allocate(int size) {
+            return ByteBuffer.allocate(size);
+        }
+
+        @Override
+        CoderResult process(CharBuffer src, ByteBuffer dst) throws IOException {
+            return check(session.decode(src, dst, false));
+        }
+
+        @Override
+        CoderResult finish(ByteBuffer dst) throws IOException {
+            return check(session.decode(NO_CHARS.duplicate(), dst, true));
+        }
+
+        private CoderResult check(CoderResult result) throws IOException {
+            if (result.isMalformed()) {
+                throw new IOException(session.malformedInputMessage());
+            }
+            return result;
+        }
+    }
+}
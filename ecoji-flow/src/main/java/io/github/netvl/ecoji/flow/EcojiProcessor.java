@@ -0,0 +1,259 @@
+package io.github.netvl.ecoji.flow;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.charset.CoderResult;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link Flow.Processor} which feeds the upstream buffers through an incremental codec session and publishes
+ * the output in chunks of a fixed capacity.
+ *
+ * <p>Upstream items are requested one at a time, while the subscriber has outstanding demand or while there is
+ * a partially filled chunk to add to, so the processor holds at most one upstream item and one output chunk. A chunk
+ * is published when the session reports an overflow, when the upstream has no item ready and the subscriber has
+ * demand, and the last one when the upstream completes. Groups which span upstream items are carried over by
+ * the session.</p>
+ *
+ * <p>All signals end up in {@link #drain()}, which serializes the processing: the thread which finds no other
+ * drain in progress runs the loop until it has seen the effects of all concurrent signals.</p>
+ */
+abstract class EcojiProcessor<I extends Buffer, O extends Buffer> implements Flow.Processor<I, O> {
+    private final int chunkSize;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super O>> downstream = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<I> items = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean completed;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    private volatile boolean upstreamCancelled;
+
+    // Accessed from the drain loop only
+    private I pending;
+    private O chunk;
+    private boolean full;
+    private boolean awaitingItem;
+    private boolean terminated;
+
+    EcojiProcessor(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Allocates an output chunk with the given capacity.
+     */
+    abstract O allocate(int size);
+
+    /**
+     * Processes as much of {@code src} as fits into {@code dst}, as the incremental session methods do.
+     */
+    abstract CoderResult process(I src, O dst) throws IOException;
+
+    /**
+     * Finishes the input, writing the remaining output to {@code dst}, as the incremental session methods do
+     * when {@code endOfInput} is {@code true}.
+     */
+    abstract CoderResult finish(O dst) throws IOException;
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super O> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The processor supports only one subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    failure = new IllegalArgumentException("The number of requested items must be positive: " + n);
+                } else {
+                    long current;
+                    do {
+                        current = requested.get();
+                    } while (!requested.compareAndSet(current, current + Math.min(n, Long.MAX_VALUE - current)));
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (!upstream.compareAndSet(null, subscription) || upstreamCancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(I item) {
+        items.offer(Objects.requireNonNull(item));
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = Objects.requireNonNull(throwable);
+        completed = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        completed = true;
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            run();
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private void run() {
+        Flow.Subscriber<? super O> subscriber = downstream.get();
+        Flow.Subscription subscription = upstream.get();
+
+        while (!terminated) {
+            if (cancelled || failure != null) {
+                terminate(true);
+                if (!cancelled) {
+                    subscriber.onError(failure);
+                }
+                return;
+            }
+            if (subscriber == null || subscription == null) {
+                return;
+            }
+            if (error != null) {
+                terminate(false);
+                subscriber.onError(error);
+                return;
+            }
+
+            if (full) {
+                if (requested.get() == 0) {
+                    return;
+                }
+                emit(subscriber);
+                continue;
+            }
+
+            if (pending == null) {
+                pending = items.poll();
+                if (pending != null) {
+                    awaitingItem = false;
+                }
+            }
+
+            try {
+                if (pending != null) {
+                    if (process(pending, chunk()).isOverflow()) {
+                        full = true;
+                    } else {
+                        pending = null;
+                    }
+                    continue;
+                }
+
+                if (completed) {
+                    if (finish(chunk()).isOverflow()) {
+                        full = true;
+                        continue;
+                    }
+                    if (chunk.position() > 0) {
+                        if (requested.get() == 0) {
+                            return;
+                        }
+                        emit(subscriber);
+                    }
+                    terminate(false);
+                    subscriber.onComplete();
+                    return;
+                }
+            } catch (IOException e) {
+                terminate(true);
+                subscriber.onError(e);
+                return;
+            }
+
+            if (!awaitingItem && (requested.get() > 0 || chunk != null)) {
+                awaitingItem = true;
+                subscription.request(1);
+                continue;
+            }
+            // The upstream has nothing to process right now, so the output is not held back until the chunk fills up
+            if (chunk != null && chunk.position() > 0 && items.isEmpty() && requested.get() > 0) {
+                emit(subscriber);
+                continue;
+            }
+            return;
+        }
+    }
+
+    private O chunk() {
+        if (chunk == null) {
+            chunk = allocate(chunkSize);
+        }
+        return chunk;
+    }
+
+    private void emit(Flow.Subscriber<? super O> subscriber) {
+        O output = chunk;
+        chunk = null;
+        full = false;
+        if (requested.get() != Long.MAX_VALUE) {
+            requested.decrementAndGet();
+        }
+        output.flip();
+        subscriber.onNext(output);
+    }
+
+    // If the upstream subscription is to be cancelled but has not arrived yet, it is cancelled in onSubscribe()
+    private void terminate(boolean cancelUpstream) {
+        terminated = true;
+        pending = null;
+        chunk = null;
+        items.clear();
+        if (cancelUpstream) {
+            upstreamCancelled = true;
+            Flow.Subscription subscription = upstream.get();
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.netvl.ecoji.flow;
+
+import io.github.netvl.ecoji.Ecoji;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowTest {
+    @Test
+    void testRoundTrip() throws Exception {
+        Random random = new Random(42);
+        byte[] bytes = new byte[100003];
+        random.nextBytes(bytes);
+
+        Flow.Processor<ByteBuffer, CharBuffer> encoder = EcojiFlow.encoder(1000);
+        Flow.Processor<CharBuffer, ByteBuffer> decoder = EcojiFlow.decoder(777);
+        encoder.subscribe(decoder);
+        Collector<ByteBuffer> collector = new Collector<>(3);
+        decoder.subscribe(collector);
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(encoder);
+            for (int p = 0; p < bytes.length; ) {
+                int n = Math.min(bytes.length - p, random.nextInt(50));
+                publisher.submit(ByteBuffer.wrap(bytes, p, n));
+                p += n;
+            }
+        }
+
+        List<ByteBuffer> chunks = collector.result.get(10, TimeUnit.SECONDS);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); ++i) {
+            ByteBuffer chunk = chunks.get(i);
+            assertTrue(chunk.remaining() <= 777);
+            result.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }
+        assertArrayEquals(bytes, result.toByteArray());
+    }
+
+    @Test
+    void testBackpressure() throws IOException {
+        byte[] bytes = new byte[5000];
+        new Random(42).nextBytes(bytes);
+        String expected = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+        Flow.Processor<ByteBuffer, CharBuffer> encoder = EcojiFlow.encoder(1600);
+        ManualPublisher<ByteBuffer> publisher = new ManualPublisher<>();
+        publisher.subscribe(encoder);
+        Collector<CharBuffer> collector = new Collector<>(0);
+        encoder.subscribe(collector);
+
+        // nothing is requested from the upstream until there is demand
+        assertEquals(0, publisher.requested);
+        collector.subscription.request(1);
+        assertEquals(1, publisher.requested);
+
+        // the output of an item is published when the upstream has nothing else ready
+        int p = 0;
+        publisher.subscriber.onNext(ByteBuffer.wrap(bytes, p, 100));
+        p += 100;
+        assertEquals(1, collector.chunks.size());
+        assertEquals(160, collector.chunks.get(0).remaining());
+
+        // without demand, the processor keeps requesting items only until it has a full chunk
+        for (; p < bytes.length && p / 100 < publisher.requested; p += 100) {
+            publisher.subscriber.onNext(ByteBuffer.wrap(bytes, p, 100));
+        }
+        assertEquals(1, collector.chunks.size());
+        assertEquals(12, publisher.requested);
+
+        collector.subscription.request(100);
+        for (; p < bytes.length && p / 100 < publisher.requested; p += 100) {
+            publisher.subscriber.onNext(ByteBuffer.wrap(bytes, p, 100));
+        }
+        assertEquals(bytes.length, p);
+        publisher.subscriber.onComplete();
+        assertTrue(collector.result.isDone());
+
+        StringBuilder result = new StringBuilder();
+        for (CharBuffer chunk : collector.chunks) {
+            result.append(chunk);
+        }
+        assertEquals(expected, result.toString());
+    }
+
+    @Test
+    void testTrickle() throws IOException {
+        Flow.Processor<CharBuffer, ByteBuffer> decoder = EcojiFlow.decoder();
+        ManualPublisher<CharBuffer> publisher = new ManualPublisher<>();
+        publisher.subscribe(decoder);
+        Collector<ByteBuffer> collector = new Collector<>(0);
+        decoder.subscribe(collector);
+        collector.subscription.request(Long.MAX_VALUE);
+
+        // every group is published as soon as it is complete, and is not held until the stream ends
+        String encoded = Ecoji.getEncoder().readFrom("abcdefghij").writeToString();
+        int firstGroup = Ecoji.getEncoder().readFrom("abcde").writeToString().length();
+        for (int i = 1; i <= encoded.length(); ++i) {
+            publisher.subscriber.onNext(CharBuffer.wrap(encoded, i - 1, i));
+            assertEquals((i >= firstGroup ? 1 : 0) + (i == encoded.length() ? 1 : 0), collector.chunks.size());
+        }
+        assertEquals("abcde", StandardCharsets.US_ASCII.decode(collector.chunks.get(0)).toString());
+        assertEquals("fghij", StandardCharsets.US_ASCII.decode(collector.chunks.get(1)).toString());
+        assertFalse(collector.result.isDone());
+
+        publisher.subscriber.onComplete();
+        assertEquals(2, collector.chunks.size());
+        assertTrue(collector.result.isDone());
+    }
+
+    @Test
+    void testInvalidInput() {
+        Flow.Processor<CharBuffer, ByteBuffer> decoder = EcojiFlow.decoder();
+        ManualPublisher<CharBuffer> publisher = new ManualPublisher<>();
+        publisher.subscribe(decoder);
+        Collector<ByteBuffer> collector = new Collector<>(1);
+        decoder.subscribe(collector);
+
+        publisher.subscriber.onNext(CharBuffer.wrap("👖📸"));
+        publisher.subscriber.onNext(CharBuffer.wrap("🎈a"));
+        assertTrue(publisher.cancelled);
+        assertTrue(collector.result.isCompletedExceptionally());
+    }
+
+    private static class ManualPublisher<T> implements Flow.Publisher<T> {
+        Flow.Subscriber<? super T> subscriber;
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    // Requests `batch` chunks at a time, or nothing if it is zero
+    private static class Collector<T> implements Flow.Subscriber<T> {
+        private final int batch;
+        private int outstanding;
+        final List<T> chunks = new ArrayList<>();
+        final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        Flow.Subscription subscription;
+
+        Collector(int batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                outstanding = batch;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            chunks.add(item);
+            if (batch > 0 && --outstanding == 0) {
+                outstanding = batch;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(chunks);
+        }
+    }
+}
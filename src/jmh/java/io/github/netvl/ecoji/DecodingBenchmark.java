@@ -0,0 +1,99 @@
+package io.github.netvl.ecoji;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decoding throughput for different payload sizes, sources and sinks.
+ *
+ * <p>The {@code size} parameter is the size of the decoded data, so the results are directly comparable
+ * with {@link EncodingBenchmark}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodingBenchmark {
+    @Param({"5", "64", "1024", "65536", "1048576", "67108864"})
+    public int size;
+
+    private String encoded;
+    private byte[] encodedUtf8;
+    private Payloads.NullOutputStream nullOutputStream;
+
+    @Setup
+    public void setUp() throws IOException {
+        encoded = Ecoji.getEncoder().readFrom(Payloads.randomBytes(size)).writeToString();
+        encodedUtf8 = encoded.getBytes(StandardCharsets.UTF_8);
+        nullOutputStream = new Payloads.NullOutputStream();
+    }
+
+    @Benchmark
+    public byte[] stringToBytes(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getDecoder().readFrom(encoded).writeToBytes();
+    }
+
+    @Benchmark
+    public int validateString(ProcessedBytes processed) {
+        processed.bytes += size;
+        return Ecoji.getDecoder().validate(encoded);
+    }
+
+    @Benchmark
+    public byte[] stringToBytesParallel(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getDecoder().parallel(ForkJoinPool.commonPool()).readFrom(encoded).writeToBytes();
+    }
+
+    @Benchmark
+    public int stringToStream(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getDecoder().readFrom(encoded).writeTo(nullOutputStream);
+    }
+
+    @Benchmark
+    public int readerToStream(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getDecoder().readFrom(new StringReader(encoded)).writeTo(nullOutputStream);
+    }
+
+    @Benchmark
+    public byte[] utf8BytesToBytes(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getDecoder().readFromUtf8(encodedUtf8).writeToBytes();
+    }
+
+    @Benchmark
+    public int utf8StreamToStream(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getDecoder().readFromUtf8(new ByteArrayInputStream(encodedUtf8)).writeTo(nullOutputStream);
+    }
+
+    @Benchmark
+    public int utf8StreamToStreamThroughReader(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(encodedUtf8), StandardCharsets.UTF_8);
+        return Ecoji.getDecoder().readFrom(reader).writeTo(nullOutputStream);
+    }
+}
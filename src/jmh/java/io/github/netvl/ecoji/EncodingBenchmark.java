@@ -0,0 +1,101 @@
+package io.github.netvl.ecoji;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding throughput for different payload sizes, sources and sinks.
+ *
+ * <p>Run with {@code ./gradlew jmh}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+    @Param({"5", "64", "1024", "65536", "1048576", "67108864"})
+    public int size;
+
+    private byte[] bytes;
+    private String string;
+    private Payloads.NullWriter nullWriter;
+    private Payloads.NullOutputStream nullOutputStream;
+
+    @Setup
+    public void setUp() {
+        bytes = Payloads.randomBytes(size);
+        string = Payloads.randomAscii(size);
+        nullWriter = new Payloads.NullWriter();
+        nullOutputStream = new Payloads.NullOutputStream();
+    }
+
+    @Benchmark
+    public String bytesToString(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().readFrom(bytes).writeToString();
+    }
+
+    @Benchmark
+    public String stringToString(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().readFrom(string).writeToString();
+    }
+
+    @Benchmark
+    public int bytesToWriter(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().readFrom(bytes).writeTo(nullWriter);
+    }
+
+    @Benchmark
+    public int streamToWriter(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().readFrom(new ByteArrayInputStream(bytes)).writeTo(nullWriter);
+    }
+
+    @Benchmark
+    public String bytesToStringParallel(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().parallel(ForkJoinPool.commonPool()).readFrom(bytes).writeToString();
+    }
+
+    @Benchmark
+    public byte[] bytesToUtf8Bytes(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+    }
+
+    @Benchmark
+    public int bytesToUtf8Stream(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        return Ecoji.getEncoder().readFrom(bytes).writeTo(nullOutputStream);
+    }
+
+    @Benchmark
+    public int bytesToUtf8StreamThroughWriter(ProcessedBytes processed) throws IOException {
+        processed.bytes += size;
+        Writer writer = new OutputStreamWriter(nullOutputStream, StandardCharsets.UTF_8);
+        int written = Ecoji.getEncoder().readFrom(bytes).writeTo(writer);
+        writer.flush();
+        return written;
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.netvl.ecoji;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding and decoding of identifiers with {@link EcojiPrimitives}, compared to the general-purpose
+ * API.
+ *
+ * <p>Run with {@code ./gradlew jmh}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdBenchmark {
+    private long id;
+    private UUID uuid;
+    private String encodedId;
+    private char[] chars;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        id = random.nextLong();
+        uuid = new UUID(random.nextLong(), random.nextLong());
+        encodedId = EcojiPrimitives.encodeLong(id);
+        chars = new char[EcojiPrimitives.UUID_LENGTH];
+    }
+
+    @Benchmark
+    public String encodeLongThroughBytes() throws IOException {
+        return Ecoji.getEncoder().readFrom(ByteBuffer.allocate(8).putLong(id).array()).writeToString();
+    }
+
+    @Benchmark
+    public String encodeLong() {
+        return EcojiPrimitives.encodeLong(id);
+    }
+
+    @Benchmark
+    public int encodeLongToArray() {
+        return EcojiPrimitives.encodeLong(id, chars, 0);
+    }
+
+    @Benchmark
+    public long decodeLongThroughBytes() throws IOException {
+        return ByteBuffer.wrap(Ecoji.getDecoder().readFrom(encodedId).writeToBytes()).getLong();
+    }
+
+    @Benchmark
+    public long decodeLong() throws IOException {
+        return EcojiPrimitives.decodeLong(encodedId, 0);
+    }
+
+    @Benchmark
+    public String encodeUuid() {
+        return EcojiPrimitives.encodeUuid(uuid);
+    }
+}
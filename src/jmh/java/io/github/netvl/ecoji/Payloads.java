@@ -0,0 +1,75 @@
+package io.github.netvl.ecoji;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Shared input data and sinks for the benchmarks.
+ */
+final class Payloads {
+    private Payloads() {
+    }
+
+    private static final long SEED = 20180318L;
+
+    /**
+     * Returns {@code size} pseudo-random bytes; the same size always produces the same data.
+     */
+    static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(SEED).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a string of {@code size} printable ASCII characters, so that its UTF-8 representation
+     * is exactly {@code size} bytes long.
+     */
+    static String randomAscii(int size) {
+        Random random = new Random(SEED);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; ++i) {
+            chars[i] = (char) (' ' + random.nextInt('~' - ' ' + 1));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A {@link Writer} which discards everything, so that only the encoder itself is measured.
+     */
+    static final class NullWriter extends Writer {
+        @Override
+        public void write(int c) {
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * An {@link OutputStream} which discards everything, so that only the decoder itself is measured.
+     */
+    static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
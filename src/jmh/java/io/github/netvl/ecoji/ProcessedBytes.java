@@ -0,0 +1,26 @@
+package io.github.netvl.ecoji;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the number of raw (unencoded) bytes which went through the codec.
+ *
+ * <p>JMH reports this counter as a rate next to the primary result, which makes it possible to compare
+ * the throughput of benchmarks with different payload sizes: with the {@code SECONDS} output time unit
+ * the {@code bytes} secondary result is the throughput in bytes per second (divide by 2<sup>20</sup> to get MB/s).
+ * Allocation rates are reported by the {@code gc} profiler, which is enabled in the build script.</p>
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ProcessedBytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+    }
+}
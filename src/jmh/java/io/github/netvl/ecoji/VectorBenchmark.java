@@ -0,0 +1,106 @@
+package io.github.netvl.ecoji;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.CoderResult;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Vector API kernels with the scalar ones by running the block functions with the kernels enabled
+ * and disabled via the system property.
+ *
+ * <p>The kernels are only enabled on Java 17 and newer; on older JDKs both variants measure the scalar code.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorBenchmark {
+    private static final String SCALAR = "-Dio.github.netvl.ecoji.vector=false";
+
+    @Param({"1024", "65535"})
+    public int size;
+
+    private byte[] bytes;
+    private char[] encoded;
+    private byte[] encodedUtf8;
+    private char[] chars;
+    private byte[] utf8;
+    private byte[] decoded;
+    private EcojiDecoding decoding;
+
+    @Setup
+    public void setUp() {
+        bytes = Payloads.randomBytes(size);
+        encoded = EcojiEncoding.encodeToString(bytes, null, null).toCharArray();
+        encodedUtf8 = EcojiEncoding.encodeToUtf8Bytes(bytes, null, null);
+        chars = new char[encoded.length];
+        utf8 = new byte[encodedUtf8.length];
+        decoded = new byte[size];
+        decoding = new EcojiDecoding();
+    }
+
+    @Benchmark
+    public int encodeVector(ProcessedBytes processed) {
+        processed.bytes += size;
+        return EcojiEncoding.encodeBlock(bytes, 0, size, chars, 0);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public int encodeScalar(ProcessedBytes processed) {
+        processed.bytes += size;
+        return EcojiEncoding.encodeBlock(bytes, 0, size, chars, 0);
+    }
+
+    @Benchmark
+    public int encodeUtf8Vector(ProcessedBytes processed) {
+        processed.bytes += size;
+        return EcojiEncoding.encodeBlockUtf8(bytes, 0, size, utf8, 0);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public int encodeUtf8Scalar(ProcessedBytes processed) {
+        processed.bytes += size;
+        return EcojiEncoding.encodeBlockUtf8(bytes, 0, size, utf8, 0);
+    }
+
+    @Benchmark
+    public CoderResult decodeVector(ProcessedBytes processed) {
+        processed.bytes += size;
+        return decoding.decodeBlock(encoded, 0, encoded.length, decoded, 0, decoded.length);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public CoderResult decodeScalar(ProcessedBytes processed) {
+        processed.bytes += size;
+        return decoding.decodeBlock(encoded, 0, encoded.length, decoded, 0, decoded.length);
+    }
+
+    @Benchmark
+    public CoderResult decodeUtf8Vector(ProcessedBytes processed) {
+        processed.bytes += size;
+        return decoding.decodeBlockUtf8(encodedUtf8, 0, encodedUtf8.length, decoded, 0, decoded.length);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public CoderResult decodeUtf8Scalar(ProcessedBytes processed) {
+        processed.bytes += size;
+        return decoding.decodeBlockUtf8(encodedUtf8, 0, encodedUtf8.length, decoded, 0, decoded.length);
+    }
+}
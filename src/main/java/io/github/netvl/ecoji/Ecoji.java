@@ -1,8 +1,15 @@
 package io.github.netvl.ecoji;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CoderResult;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The main entry point for Ecoji encoding/decoding.
@@ -27,7 +34,7 @@ public final class Ecoji {
     private Ecoji() {
     }
 
-    private static final Encoder ENCODER = new Encoder();
+    private static final Encoder ENCODER = new Encoder(null);
 
     /**
      * Returns an instance of the {@link Encoder} class, which can then be used to encode any stream or sequence of
@@ -40,12 +47,113 @@ public final class Ecoji {
     }
 
     /**
-     * Encodes byte sources into a base-1024 representation with an emoji alphabet.
+     * Returns an instance of the {@link Encoder} class which encodes bytes with the given alphabet.
+     *
+     * <p>The alphabet is bound to the encoder here, so that the encoding loops do not select it per group.</p>
+     *
+     * @param alphabet The alphabet of the encoded data.
+     *
+     * @return An instance of {@link Encoder}.
+     */
+    public static Encoder getEncoder(EcojiAlphabet alphabet) {
+        checkAlphabet(alphabet);
+        return ENCODER;
+    }
+
+    /**
+     * The operations which are shared by {@link Encoder} and {@link WrappingEncoder}.
      *
      * Use one of the {@code readFrom()} methods to start the encoding process.
      */
-    public static class Encoder {
-        private Encoder() {
+    public abstract static class AbstractEncoder {
+        final ForkJoinPool pool;
+        // null if the output is not wrapped
+        final EcojiWrapping wrapping;
+
+        AbstractEncoder(ForkJoinPool pool, EcojiWrapping wrapping) {
+            this.pool = pool;
+            this.wrapping = wrapping;
+        }
+
+        /**
+         * Returns an encoder which encodes large in-memory inputs in parallel, using the provided
+         * {@link ForkJoinPool}.
+         *
+         * <p>Since every 5 input bytes are encoded independently to exactly 4 emojis, byte arrays and array-backed
+         * byte buffers are split on 5-byte boundaries, and the chunks are encoded concurrently into disjoint regions
+         * of the output. The result is identical to the one of the sequential encoder. Inputs smaller than a few
+         * hundred kilobytes and {@link InputStream} sources are still encoded sequentially, and so is the output
+         * which is {@linkplain #wrapAt(int, String) wrapped}.</p>
+         *
+         * <p>The returned encoder keeps the other settings of this encoder.</p>
+         *
+         * @param pool A {@link ForkJoinPool} which executes the encoding tasks, e.g. {@link ForkJoinPool#commonPool()}.
+         *
+         * @return An encoder which uses the provided pool.
+         */
+        public abstract AbstractEncoder parallel(ForkJoinPool pool);
+
+        /**
+         * Returns an encoder which breaks the encoded data into lines of the given number of emojis, separated with
+         * the provided separator.
+         *
+         * <p>The separators are inserted while the data is encoded, and the exact length of the wrapped output is
+         * known in advance, so encoding to a {@link String} or a byte array still allocates the result only once.
+         * There is no separator after the last line. The result can be decoded by a decoder which
+         * {@linkplain Decoder#ignoring(String) ignores} the code points of the separator, e.g. by a
+         * {@linkplain Decoder#lenient() lenient} one if the separator is a line break.</p>
+         *
+         * <p>The lines are counted from the start of every encoding operation. A {@linkplain #newSession() session}
+         * counts them from the start of every call of its array-based methods, and across the calls of its
+         * incremental methods until the end of the input. The stateless buffer-based
+         * {@link Encoder#encode(ByteBuffer, CharBuffer, boolean)} method cannot keep track of the lines between
+         * the calls, so the returned {@link WrappingEncoder} does not have it.</p>
+         *
+         * <p>The returned encoder keeps the other settings of this encoder.</p>
+         *
+         * @param emojisPerLine The number of emojis in every line but the last one, which may be shorter.
+         *
+         * @param separator A string which is inserted between the lines, e.g. {@code "\n"} or {@code "\r\n"};
+         *                  if it is empty, the returned encoder does not wrap the output.
+         *
+         * @return An encoder which wraps the output.
+         *
+         * @throws IllegalArgumentException If {@code emojisPerLine} is not positive, or if the separator contains
+         * a code point of the Ecoji alphabet.
+         */
+        public WrappingEncoder wrapAt(int emojisPerLine, String separator) {
+            if (emojisPerLine <= 0) {
+                throw new IllegalArgumentException("The number of emojis per line must be positive: " +
+                                                   emojisPerLine);
+            }
+            for (int i = 0; i < separator.length(); ) {
+                int c = separator.codePointAt(i);
+                if (Emojis.symbolOf(c) >= 0) {
+                    throw new IllegalArgumentException("Code point " + c + " is a part of the Ecoji alphabet and " +
+                                                       "cannot be a part of the separator");
+                }
+                i += Character.charCount(c);
+            }
+            return new WrappingEncoder(pool, separator.isEmpty() ? null : new EcojiWrapping(emojisPerLine, separator));
+        }
+
+        // A fresh wrapping state for one encoding operation
+        EcojiWrapping startWrapping() {
+            return wrapping != null ? wrapping.start() : null;
+        }
+
+        /**
+         * Creates a new session for encoding small inputs directly between caller-owned arrays, without
+         * allocations.
+         *
+         * <p>Sessions are not thread-safe; see {@link EcojiEncoderSession} for details.</p>
+         *
+         * <p>If this encoder {@linkplain #wrapAt(int, String) wraps} the output, so does the session.</p>
+         *
+         * @return A new {@link EcojiEncoderSession}.
+         */
+        public EcojiEncoderSession newSession() {
+            return new EcojiEncoderSession(startWrapping());
         }
 
         /**
@@ -54,12 +162,15 @@ public final class Ecoji {
          * <p>The provided stream will be read entirely, however, it won't be closed automatically. There are
          * no limitations on the contents of the stream.</p>
          *
+         * <p>The stream is read in large blocks, and reads which return fewer bytes than requested are handled
+         * transparently, so there is no need to wrap it into a {@link BufferedInputStream}.</p>
+         *
          * @param inputStream A sequence of bytes which should be encoded as emojis.
          *
          * @return An intermediate object used to specify the destination of the encoding process.
          */
         public Target readFrom(InputStream inputStream) {
-            return new Target(inputStream);
+            return new Target(this, inputStream, null);
         }
 
         /**
@@ -70,7 +181,7 @@ public final class Ecoji {
          * @return an intermediate object used to specify the destination of the encoding process.
          */
         public Target readFrom(byte[] bytes) {
-            return readFrom(new ByteArrayInputStream(bytes));
+            return new Target(this, null, bytes);
         }
 
         /**
@@ -95,17 +206,216 @@ public final class Ecoji {
          * @return An intermediate object used to specify the destination of the encoding process.
          */
         public Target readFrom(String string, Charset charset) {
-            return readFrom(new ByteArrayInputStream(string.getBytes(charset)));
+            return readFrom(string.getBytes(charset));
+        }
+
+        /**
+         * Encodes the contents of the {@code source} file and writes the UTF-8 representation of the result to
+         * the {@code destination} file, replacing its contents.
+         *
+         * <p>Both files are accessed through memory-mapped {@link java.nio.channels.FileChannel}s: the destination
+         * file is sized up front from the exact length of the encoded data, and the mapped regions are encoded
+         * through bounded heap buffers, without read or write calls. If this encoder is
+         * {@linkplain #parallel(ForkJoinPool) parallel}, the mapped regions are encoded concurrently. If this
+         * encoder {@linkplain #wrapAt(int, String) wraps} the output, the lines do not follow the regions, so the
+         * file is encoded sequentially through streams instead.</p>
+         *
+         * @param source A file whose contents should be encoded as emojis.
+         *
+         * @param destination A file which will contain the UTF-8 representation of the Ecoji-encoded data.
+         *
+         * @return The number of bytes written to the destination file.
+         *
+         * @throws IOException If an error has happened during a read or a write operation.
+         */
+        public long encodeFile(Path source, Path destination) throws IOException {
+            return EcojiFiles.encodeUtf8(source, destination, pool, startWrapping());
+        }
+
+        /**
+         * Wraps the provided {@link Writer} into an {@link OutputStream} which encodes all bytes written to it
+         * and writes the Ecoji-encoded data to the writer.
+         *
+         * <p>This is the push-based counterpart of {@link #readFrom(InputStream)}: bytes are encoded incrementally
+         * as they are written, using internal buffers of a fixed size, so streams of any length can be encoded in
+         * constant memory. Flushing the returned stream encodes all of the complete 5-byte groups written so far
+         * and flushes the writer.</p>
+         *
+         * <p>The returned stream must be closed to write the last, possibly padded, group. Closing it also closes
+         * the provided {@link Writer}.</p>
+         *
+         * @param writer A {@link Writer} which will accept the Ecoji-encoded data.
+         *
+         * @return An {@link OutputStream} which encodes bytes written to it.
+         */
+        public OutputStream wrap(Writer writer) {
+            return new EcojiOutputStream(writer, startWrapping());
+        }
+
+        /**
+         * Encodes many values into one shared array, writing the offsets of the encoded values to an index.
+         *
+         * <p>The encoded value {@code i} occupies the chars of the result between {@code offsets[i]} and
+         * {@code offsets[i + 1]}, so the index must have room for one element more than there are values. The result
+         * is sized exactly from the lengths of the values before encoding them, so there are no allocations per
+         * value. The values are encoded independently, e.g. each of them gets its own padding and, if the output is
+         * {@linkplain #wrapAt(int, String) wrapped}, its own lines, and the result can be decoded back into the
+         * values with {@link Decoder#decodeBatch(char[], int[], int[])}.</p>
+         *
+         * <p>Values are looked up in the list by index, so it should support fast random access.</p>
+         *
+         * @param values The values to encode.
+         *
+         * @param offsets An array which will accept the offsets of the encoded values in the result, starting
+         *                with 0.
+         *
+         * @return A new array with the encoded values, one after another.
+         *
+         * @throws IllegalArgumentException If {@code offsets} has fewer than {@code values.size() + 1} elements.
+         */
+        public char[] encodeBatch(List<byte[]> values, int[] offsets) {
+            return EcojiEncoding.encodeBatch(values.toArray(new byte[0][]), null, null, offsets, wrapping);
+        }
+
+        /**
+         * Encodes the values stored one after another in the provided buffer into one shared array, writing
+         * the offsets of the encoded values to an index.
+         *
+         * <p>Value {@code i} consists of the bytes of {@code buffer} between {@code bufferOffsets[i]} and
+         * {@code bufferOffsets[i + 1]}, so there is one value less than there are buffer offsets. Otherwise this
+         * works like {@link #encodeBatch(List, int[])}.</p>
+         *
+         * @param buffer An array with the values to encode.
+         *
+         * @param bufferOffsets Non-decreasing offsets of the values in {@code buffer}.
+         *
+         * @param offsets An array which will accept the offsets of the encoded values in the result, starting
+         *                with 0.
+         *
+         * @return A new array with the encoded values, one after another.
+         *
+         * @throws IndexOutOfBoundsException If the buffer offsets are decreasing or out of the bounds of
+         * {@code buffer}.
+         *
+         * @throws IllegalArgumentException If {@code bufferOffsets} is empty, or if {@code offsets} is shorter than
+         * {@code bufferOffsets}.
+         */
+        public char[] encodeBatch(byte[] buffer, int[] bufferOffsets, int[] offsets) {
+            return EcojiEncoding.encodeBatch(null, buffer, bufferOffsets, offsets, wrapping);
+        }
+
+        /**
+         * Encodes many values into the UTF-8 representation of the encoded data in one shared array, writing
+         * the offsets of the encoded values to an index.
+         *
+         * <p>This works like {@link #encodeBatch(List, int[])}, with the offsets counted in bytes. The result can be
+         * decoded back into the values with {@link Decoder#decodeBatchUtf8(byte[], int[], int[])}.</p>
+         *
+         * @param values The values to encode.
+         *
+         * @param offsets An array which will accept the offsets of the encoded values in the result, starting
+         *                with 0.
+         *
+         * @return A new array with the UTF-8 representation of the encoded values, one after another.
+         *
+         * @throws IllegalArgumentException If {@code offsets} has fewer than {@code values.size() + 1} elements.
+         */
+        public byte[] encodeBatchUtf8(List<byte[]> values, int[] offsets) {
+            return EcojiEncoding.encodeBatchUtf8(values.toArray(new byte[0][]), null, null, offsets, wrapping);
+        }
+
+        /**
+         * Encodes the values stored one after another in the provided buffer into the UTF-8 representation of
+         * the encoded data in one shared array, writing the offsets of the encoded values to an index.
+         *
+         * <p>This works like {@link #encodeBatch(byte[], int[], int[])}, with the offsets of the result counted in
+         * bytes.</p>
+         *
+         * @param buffer An array with the values to encode.
+         *
+         * @param bufferOffsets Non-decreasing offsets of the values in {@code buffer}.
+         *
+         * @param offsets An array which will accept the offsets of the encoded values in the result, starting
+         *                with 0.
+         *
+         * @return A new array with the UTF-8 representation of the encoded values, one after another.
+         *
+         * @throws IndexOutOfBoundsException If the buffer offsets are decreasing or out of the bounds of
+         * {@code buffer}.
+         *
+         * @throws IllegalArgumentException If {@code bufferOffsets} is empty, or if {@code offsets} is shorter than
+         * {@code bufferOffsets}.
+         */
+        public byte[] encodeBatchUtf8(byte[] buffer, int[] bufferOffsets, int[] offsets) {
+            return EcojiEncoding.encodeBatchUtf8(null, buffer, bufferOffsets, offsets, wrapping);
+        }
+
+        /**
+         * Returns the maximum number of {@code char}s which {@code inputBytes} bytes can be encoded to.
+         *
+         * <p>The result is exact unless the number of input bytes is 4 modulo 5, in which case the last padding
+         * emoji may be a single {@code char} instead of a surrogate pair, depending on the last input byte.
+         * It is suitable to size a destination {@link CharBuffer} or {@code char[]} for the encoded data.
+         * If the output is {@linkplain #wrapAt(int, String) wrapped}, the separators are included.</p>
+         *
+         * @param inputBytes A number of bytes to encode.
+         *
+         * @return The maximum length of the Ecoji-encoded data in UTF-16 code units.
+         */
+        public long encodedLength(long inputBytes) {
+            if (wrapping != null) {
+                return wrapping.encodedChars(inputBytes, 0xff);
+            }
+            return EcojiEncoding.encodedChars(inputBytes, 0xff);
+        }
+
+        /**
+         * Returns the exact number of Unicode code points which {@code inputBytes} bytes are encoded to.
+         *
+         * <p>Every started group of 5 input bytes is encoded as 4 emojis. If the output is
+         * {@linkplain #wrapAt(int, String) wrapped}, the code points of the separators are included.</p>
+         *
+         * @param inputBytes A number of bytes to encode.
+         *
+         * @return The number of code points in the Ecoji-encoded data.
+         */
+        public long encodedCodePointCount(long inputBytes) {
+            if (wrapping != null) {
+                return wrapping.encodedCodePoints(inputBytes);
+            }
+            return (inputBytes + 4) / 5 * 4;
+        }
+
+        /**
+         * Returns the maximum number of bytes in the UTF-8 representation of the data which {@code inputBytes} bytes
+         * are encoded to.
+         *
+         * <p>The same considerations as for {@link #encodedLength(long)} apply.</p>
+         *
+         * @param inputBytes A number of bytes to encode.
+         *
+         * @return The maximum length of the UTF-8 representation of the Ecoji-encoded data.
+         */
+        public long encodedUtf8Length(long inputBytes) {
+            if (wrapping != null) {
+                return wrapping.encodedUtf8Bytes(inputBytes, 0xff);
+            }
+            return EcojiEncoding.encodedUtf8Bytes(inputBytes, 0xff);
         }
 
         /**
          * An intermediate class, needed to implement the builder-like DSL for encoding.
          */
         public static class Target {
+            private final AbstractEncoder encoder;
+            // exactly one of these is set
             private final InputStream source;
+            private final byte[] bytes;
 
-            private Target(InputStream source) {
+            private Target(AbstractEncoder encoder, InputStream source, byte[] bytes) {
+                this.encoder = encoder;
                 this.source = source;
+                this.bytes = bytes;
             }
 
             /**
@@ -124,7 +434,10 @@ public final class Ecoji {
              * @throws IOException If an error has happened during a read or a write operation.
              */
             public int writeTo(Writer writer) throws IOException {
-                return EcojiEncoding.encode(source, writer);
+                if (bytes != null) {
+                    return EcojiEncoding.encode(bytes, writer, encoder.pool, encoder.startWrapping());
+                }
+                return EcojiEncoding.encode(source, writer, encoder.startWrapping());
             }
 
             /**
@@ -139,14 +452,153 @@ public final class Ecoji {
              * @throws IOException If an error has happened during a read operation.
              */
             public String writeToString() throws IOException {
+                if (bytes != null) {
+                    return EcojiEncoding.encodeToString(bytes, encoder.pool, encoder.startWrapping());
+                }
                 StringWriter sw = new StringWriter();
                 writeTo(sw);
                 return sw.toString();
             }
+
+            /**
+             * Writes the base-1024 representation of bytes contained in the previously specified source to the
+             * provided {@link OutputStream}, encoded in UTF-8.
+             *
+             * <p>This is equivalent to writing to an {@link OutputStreamWriter} with the UTF-8 encoding, but it is
+             * much more efficient, because the UTF-8 representation of each emoji is precomputed and written
+             * directly, without going through UTF-16 and a charset encoder.</p>
+             *
+             * <p>The passed {@link OutputStream} will not be closed after the operation finishes.</p>
+             *
+             * @param outputStream An {@link OutputStream} which will accept the UTF-8 representation of the
+             *                     Ecoji-encoded data.
+             *
+             * @return A number of bytes written to the provided {@link OutputStream}.
+             *
+             * @throws IOException If an error has happened during a read or a write operation.
+             */
+            public int writeTo(OutputStream outputStream) throws IOException {
+                if (bytes != null) {
+                    return EcojiEncoding.encodeUtf8(bytes, outputStream, encoder.pool, encoder.startWrapping());
+                }
+                return EcojiEncoding.encodeUtf8(source, outputStream, encoder.startWrapping());
+            }
+
+            /**
+             * Writes the base-1024 representation of bytes contained in the previously specified source as a byte
+             * array containing its UTF-8 representation.
+             *
+             * <p>The result is the same as {@code writeToString().getBytes(StandardCharsets.UTF_8)}, but it is
+             * produced directly, without constructing the intermediate string.</p>
+             *
+             * @return A byte array containing the UTF-8 representation of the Ecoji-encoded input.
+             *
+             * @throws IOException If an error has happened during a read operation.
+             */
+            public byte[] writeToUtf8Bytes() throws IOException {
+                if (bytes != null) {
+                    return EcojiEncoding.encodeToUtf8Bytes(bytes, encoder.pool, encoder.startWrapping());
+                }
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                writeTo(outputStream);
+                return outputStream.toByteArray();
+            }
         }
     }
 
-    private static final Decoder DECODER = new Decoder();
+    /**
+     * Encodes byte sources into a base-1024 representation with an emoji alphabet.
+     *
+     * Use one of the {@code readFrom()} methods to start the encoding process.
+     */
+    public static class Encoder extends AbstractEncoder {
+        private Encoder(ForkJoinPool pool) {
+            super(pool, null);
+        }
+
+        @Override
+        public Encoder parallel(ForkJoinPool pool) {
+            if (pool == null) {
+                throw new NullPointerException("pool");
+            }
+            return new Encoder(pool);
+        }
+
+        /**
+         * Encodes as many bytes as possible from the provided byte buffer, writing the result to the provided char
+         * buffer.
+         *
+         * <p>This method follows the contract of
+         * {@link java.nio.charset.CharsetEncoder#encode(CharBuffer, ByteBuffer, boolean)}: the buffers are read and
+         * written starting at their positions, and their positions are advanced past the bytes which were encoded
+         * and the chars which were written. Encoding stops when the input is exhausted, in which case
+         * {@link CoderResult#UNDERFLOW} is returned, or when there is not enough room in the output for the next
+         * group, in which case {@link CoderResult#OVERFLOW} is returned. Either way, the operation can be resumed
+         * by calling this method again with more input or more room in the output.</p>
+         *
+         * <p>Input bytes are encoded in groups of 5. If {@code endOfInput} is {@code false}, the last bytes of
+         * the input which do not form a complete group are left in the input buffer, so they can be encoded
+         * together with the following input. If it is {@code true}, they are encoded as a padded group, which
+         * terminates the Ecoji-encoded data.</p>
+         *
+         * <p>Arrays which back the buffers are accessed directly; buffers without an accessible array, e.g.
+         * direct buffers, are processed in bounded chunks.</p>
+         *
+         * @param src A buffer with bytes which should be encoded as emojis.
+         *
+         * @param dst A buffer which will accept the Ecoji-encoded data.
+         *
+         * @param endOfInput Whether the source buffer contains the last bytes of the input.
+         *
+         * @return {@link CoderResult#UNDERFLOW} if all of the input which can be encoded has been encoded, or
+         * {@link CoderResult#OVERFLOW} if more room is needed in the output buffer.
+         */
+        public CoderResult encode(ByteBuffer src, CharBuffer dst, boolean endOfInput) {
+            return EcojiEncoding.encode(src, dst, endOfInput, pool);
+        }
+
+        /**
+         * Encodes all of the bytes from the provided byte buffer, writing the result to the provided char buffer.
+         *
+         * <p>This is equivalent to {@code encode(src, dst, true)}, i.e. the source buffer is treated as the
+         * entire input.</p>
+         *
+         * @param src A buffer with bytes which should be encoded as emojis.
+         *
+         * @param dst A buffer which will accept the Ecoji-encoded data.
+         *
+         * @return {@link CoderResult#UNDERFLOW} if all of the input has been encoded, or
+         * {@link CoderResult#OVERFLOW} if more room is needed in the output buffer.
+         *
+         * @see #encode(ByteBuffer, CharBuffer, boolean)
+         */
+        public CoderResult encode(ByteBuffer src, CharBuffer dst) {
+            return encode(src, dst, true);
+        }
+    }
+
+    /**
+     * An encoder which breaks the encoded data into lines, returned by {@link AbstractEncoder#wrapAt(int, String)}.
+     *
+     * <p>It supports all of the operations of {@link Encoder} except for the stateless buffer-based
+     * {@code encode()} methods, which cannot keep track of the lines between the calls; the incremental methods of
+     * a {@linkplain #newSession() session} can be used instead.</p>
+     */
+    public static final class WrappingEncoder extends AbstractEncoder {
+        private WrappingEncoder(ForkJoinPool pool, EcojiWrapping wrapping) {
+            super(pool, wrapping);
+        }
+
+        @Override
+        public WrappingEncoder parallel(ForkJoinPool pool) {
+            if (pool == null) {
+                throw new NullPointerException("pool");
+            }
+            return new WrappingEncoder(pool, wrapping);
+        }
+    }
+
+    private static final Decoder DECODER = new Decoder(null, null);
 
     /**
      * Returns an instance of the {@link Decoder} class, which can then be used to decode a stream or a sequence of
@@ -158,13 +610,154 @@ public final class Ecoji {
         return DECODER;
     }
 
+    /**
+     * Returns an instance of the {@link Decoder} class which decodes data encoded with the given alphabet, e.g. one
+     * returned by {@link EcojiAlphabet#detect(CharSequence)}.
+     *
+     * <p>The alphabet is bound to the decoder here, so that the decoding loops do not select it per group.</p>
+     *
+     * @param alphabet The alphabet of the data to decode.
+     *
+     * @return An instance of {@link Decoder}.
+     */
+    public static Decoder getDecoder(EcojiAlphabet alphabet) {
+        checkAlphabet(alphabet);
+        return DECODER;
+    }
+
+    // The codec is bound to the tables of the original alphabet, which is the only one available
+    private static void checkAlphabet(EcojiAlphabet alphabet) {
+        if (alphabet == null) {
+            throw new NullPointerException("alphabet");
+        }
+        if (alphabet != EcojiAlphabet.V1) {
+            throw new IllegalArgumentException("Unsupported alphabet: " + alphabet);
+        }
+    }
+
+    /**
+     * Creates a new bounded cache of encoding and decoding results, which remembers the encoded and decoded forms
+     * of small values by their content.
+     *
+     * <p>The cache encodes and decodes like {@link #getEncoder()} and {@link #getDecoder()}. It is useful when
+     * the same values, e.g. tokens or identifiers, are encoded and decoded over and over again; see
+     * {@link EcojiCache} for details.</p>
+     *
+     * @param maxEntries The maximum number of results in the cache.
+     *
+     * @param maxInputLength The maximum length of the inputs which are cached, in bytes for encoding and in chars
+     *                       for decoding; longer inputs are encoded or decoded without the cache.
+     *
+     * @return A new, empty {@link EcojiCache}.
+     *
+     * @throws IllegalArgumentException If {@code maxEntries} is not positive or {@code maxInputLength} is negative.
+     */
+    public static EcojiCache newCache(int maxEntries, int maxInputLength) {
+        return new EcojiCache(maxEntries, maxInputLength);
+    }
+
     /**
      * Decodes Unicode character sources from a base-1024 representation with an emoji alphabet into bytes.
      *
      * Use one of the {@code readFrom()} methods to start the decoding process.
      */
     public static class Decoder {
-        private Decoder() {
+        private static final String WHITESPACE = " \t\n\r\f\u000b";
+
+        private final ForkJoinPool pool;
+        // sorted, or null if the decoder is strict
+        private final int[] ignored;
+
+        private Decoder(ForkJoinPool pool, int[] ignored) {
+            this.pool = pool;
+            this.ignored = ignored;
+        }
+
+        /**
+         * Returns a decoder which decodes large in-memory inputs in parallel, using the provided
+         * {@link ForkJoinPool}.
+         *
+         * <p>{@link String} and UTF-8 byte array sources are split on group boundaries, assuming that every group
+         * but the last one consists of 4 emojis outside of the Basic Multilingual Plane, as produced by the encoder,
+         * and the chunks are decoded concurrently into disjoint regions of the output. If the input turns out to be
+         * laid out differently, e.g. when it is a concatenation of several encoded sequences, or if it is invalid,
+         * it is decoded sequentially instead, so the result and the reported errors are identical to the ones of
+         * the sequential decoder. Inputs smaller than a few hundred kilobytes and streaming sources are always
+         * decoded sequentially.</p>
+         *
+         * @param pool A {@link ForkJoinPool} which executes the decoding tasks, e.g. {@link ForkJoinPool#commonPool()}.
+         *
+         * @return A decoder which uses the provided pool.
+         */
+        public Decoder parallel(ForkJoinPool pool) {
+            if (pool == null) {
+                throw new NullPointerException("pool");
+            }
+            return new Decoder(pool, ignored);
+        }
+
+        /**
+         * Returns a decoder which skips whitespace and line breaks wherever they appear in the input, e.g. in
+         * Ecoji-encoded data wrapped into lines.
+         *
+         * <p>This is equivalent to {@code ignoring(" \t\n\r\f\u000b")}.</p>
+         *
+         * @return A decoder which ignores whitespace.
+         *
+         * @see #ignoring(String)
+         */
+        public Decoder lenient() {
+            return ignoring(WHITESPACE);
+        }
+
+        /**
+         * Returns a decoder which skips the code points of the provided string wherever they appear in the input,
+         * including the middle of a group.
+         *
+         * <p>The ignored code points are skipped as a part of decoding, without a separate pass over the input, and
+         * they are only looked up for the code points which are not a part of the Ecoji alphabet, so the decoding of
+         * input without them is as fast as with a strict decoder. Positions in error messages refer to the original
+         * input, including the ignored code points.</p>
+         *
+         * <p>The ignored code points inside of a group, together with the group itself, may span at most 1024 chars
+         * (or bytes of UTF-8 input); longer runs are reported as an error. There is no limit for the runs between
+         * the groups.</p>
+         *
+         * <p>The returned decoder replaces the set of ignored code points of this decoder, and keeps its other
+         * settings.</p>
+         *
+         * @param codePoints A string which contains the code points to ignore; if it is empty, the returned decoder
+         *                   is strict.
+         *
+         * @return A decoder which ignores the provided code points.
+         *
+         * @throws IllegalArgumentException If some of the code points are a part of the Ecoji alphabet.
+         */
+        public Decoder ignoring(String codePoints) {
+            int[] sorted = new int[codePoints.codePointCount(0, codePoints.length())];
+            for (int i = 0, p = 0; i < sorted.length; ++i) {
+                int c = codePoints.codePointAt(p);
+                if (Emojis.symbolOf(c) >= 0) {
+                    throw new IllegalArgumentException("Code point " + c + " is a part of the Ecoji alphabet and " +
+                                                       "cannot be ignored");
+                }
+                sorted[i] = c;
+                p += Character.charCount(c);
+            }
+            Arrays.sort(sorted);
+            return new Decoder(pool, sorted.length == 0 ? null : sorted);
+        }
+
+        /**
+         * Creates a new session for decoding small inputs directly between caller-owned arrays, without
+         * allocations.
+         *
+         * <p>Sessions are not thread-safe; see {@link EcojiDecoderSession} for details.</p>
+         *
+         * @return A new {@link EcojiDecoderSession}.
+         */
+        public EcojiDecoderSession newSession() {
+            return new EcojiDecoderSession(ignored);
         }
 
         /**
@@ -180,7 +773,7 @@ public final class Ecoji {
          * @return An intermediate object used to specify the destination of the decoding process.
          */
         public Target readFrom(Reader reader) {
-            return new Target(reader);
+            return new Target(this, reader, null, null, null);
         }
 
         /**
@@ -195,17 +788,341 @@ public final class Ecoji {
          * @return An intermediate object used to specify the destination of the decoding process.
          */
         public Target readFrom(String string) {
-            return readFrom(new StringReader(string));
+            return new Target(this, null, string, null, null);
+        }
+
+        /**
+         * Uses the provided {@link InputStream} as a source of UTF-8 encoded emoji characters.
+         *
+         * <p>The provided stream will be read entirely, however, it won't be closed automatically. The stream is
+         * decoded directly, which is more efficient than wrapping it into an {@link InputStreamReader}. It is expected
+         * that the entirety of the stream is valid UTF-8 representation of Ecoji-encoded data; if the stream contains
+         * malformed UTF-8 sequences or code points which do not belong to the Ecoji alphabet, an exception will be
+         * thrown, and its message will contain the offset of the invalid sequence in the stream. An exception will
+         * also be thrown if the number of code points in the input is not a multiple of 4.</p>
+         *
+         * @param inputStream An {@link InputStream} which contains UTF-8 representation of Ecoji-encoded data.
+         *
+         * @return An intermediate object used to specify the destination of the decoding process.
+         */
+        public Target readFromUtf8(InputStream inputStream) {
+            return new Target(this, null, null, inputStream, null);
+        }
+
+        /**
+         * Uses the provided byte array as a source of UTF-8 encoded emoji characters.
+         *
+         * <p>It is expected that the entire array is valid UTF-8 representation of Ecoji-encoded data; if the array
+         * contains malformed UTF-8 sequences or code points which do not belong to the Ecoji alphabet, an exception
+         * will be thrown, and its message will contain the offset of the invalid sequence in the array. An exception
+         * will also be thrown if the number of code points in the input is not a multiple of 4.</p>
+         *
+         * @param bytes A byte array containing UTF-8 representation of Ecoji-encoded data.
+         *
+         * @return An intermediate object used to specify the destination of the decoding process.
+         */
+        public Target readFromUtf8(byte[] bytes) {
+            return new Target(this, null, null, null, bytes);
+        }
+
+        /**
+         * Decodes the UTF-8 representation of Ecoji-encoded data contained in the {@code source} file and writes
+         * the result to the {@code destination} file, replacing its contents.
+         *
+         * <p>The source file is accessed through a memory-mapped {@link java.nio.channels.FileChannel} and decoded
+         * in a single pass: its regions are decoded through bounded heap buffers and written to their places in
+         * the destination file with positional writes, assuming the layout of the encoder output. If this decoder
+         * is {@linkplain #parallel(ForkJoinPool) parallel}, the regions are decoded concurrently. Input which is
+         * not laid out exactly as the encoder output, e.g. a concatenation of several encoded sequences, is found
+         * out during the pass; the destination file is then truncated, and the input is decoded sequentially
+         * through streams instead.</p>
+         *
+         * <p>If the input is invalid, an exception is thrown, and the destination file will contain the bytes
+         * decoded before the invalid code point.</p>
+         *
+         * @param source A file which contains UTF-8 representation of Ecoji-encoded data.
+         *
+         * @param destination A file which will contain the original representation of the base-1024 encoded data.
+         *
+         * @return The number of bytes written to the destination file.
+         *
+         * @throws IOException If an error has happened during a read or a write operation, or if the input cannot
+         * be decoded properly.
+         */
+        public long decodeFile(Path source, Path destination) throws IOException {
+            return EcojiFiles.decodeUtf8(source, destination, pool, ignored);
+        }
+
+        /**
+         * Wraps the provided {@link Reader} into an {@link InputStream} which decodes the Ecoji-encoded data read
+         * from the reader.
+         *
+         * <p>The reader is consumed lazily as bytes are read from the returned stream, using internal buffers of
+         * a fixed size, so streams of any length can be decoded in constant memory. If the input is invalid, all of
+         * the bytes decoded before the invalid code point are returned first, and then an {@link IOException} is
+         * thrown.</p>
+         *
+         * <p>Closing the returned stream also closes the provided {@link Reader}.</p>
+         *
+         * @param reader A {@link Reader} which contains Ecoji-encoded data.
+         *
+         * @return An {@link InputStream} which returns the decoded bytes.
+         */
+        public InputStream wrap(Reader reader) {
+            return new EcojiInputStream(reader, ignored);
+        }
+
+        /**
+         * Returns the number of bytes which the provided Ecoji-encoded data decodes to.
+         *
+         * <p>Only the last four code points are inspected, so this method is cheap even for large inputs. The result
+         * is exact for the data produced by {@link Encoder}; for a concatenation of several Ecoji-encoded sequences
+         * it is an upper bound. For invalid input the result is unspecified.</p>
+         *
+         * @param encoded Ecoji-encoded data.
+         *
+         * @return The number of bytes which the provided data decodes to.
+         */
+        public long decodedLength(CharSequence encoded) {
+            return EcojiDecoding.decodedLength(encoded);
+        }
+
+        /**
+         * Returns the number of bytes which the provided UTF-8 representation of Ecoji-encoded data decodes to.
+         *
+         * <p>The same considerations as for {@link #decodedLength(CharSequence)} apply.</p>
+         *
+         * @param encoded UTF-8 representation of Ecoji-encoded data.
+         *
+         * @return The number of bytes which the provided data decodes to.
+         */
+        public long decodedUtf8Length(byte[] encoded) {
+            return EcojiDecoding.decodedUtf8Length(encoded);
+        }
+
+        /**
+         * Checks whether the provided data is valid Ecoji-encoded data, without decoding it.
+         *
+         * <p>This is equivalent to {@code validate(encoded) < 0}.</p>
+         *
+         * @param encoded Data which should be checked.
+         *
+         * @return {@code true} if the data is valid Ecoji-encoded data, {@code false} otherwise.
+         */
+        public boolean isValid(CharSequence encoded) {
+            return EcojiDecoding.validate(encoded, ignored) < 0;
+        }
+
+        /**
+         * Checks whether the provided data is valid Ecoji-encoded data, without decoding it, and returns
+         * the position of the first error.
+         *
+         * <p>The data is scanned once, through a small scratch buffer, without producing any output or throwing
+         * exceptions, so this method is considerably cheaper than decoding. The data is valid if it consists of
+         * complete groups of four code points from the Ecoji alphabet, and the padding emojis in every group are
+         * placed as the encoder places them. Groups with padding may appear in the middle of the data, since
+         * a concatenation of several Ecoji-encoded sequences can be decoded as well.</p>
+         *
+         * <p>All data which is valid according to this method can be decoded. The decoder itself is more
+         * lenient with regard to the placement of padding emojis, though. The code points which this decoder
+         * {@linkplain #ignoring(String) ignores} are skipped, like in decoding.</p>
+         *
+         * @param encoded Data which should be checked.
+         *
+         * @return -1 if the data is valid, or otherwise the index of the first char of the first code point which
+         * is not a part of the Ecoji alphabet or is out of place, or of the first char of the last group if this
+         * group is incomplete.
+         */
+        public int validate(CharSequence encoded) {
+            return EcojiDecoding.validate(encoded, ignored);
+        }
+
+        /**
+         * Decodes a range of the data encoded by the provided sequence, without decoding the data before it.
+         *
+         * <p>Since the encoder turns every 5 bytes into a group of 4 emojis, which take 8 chars, the groups which
+         * contain the range can be located directly, and only they are decoded, together with the last group of
+         * the input, which determines the length of the data. The cost of this method depends on the length of
+         * the range, but not on its offset or the length of the input.</p>
+         *
+         * <p>The input must be a single sequence produced by the encoder, without
+         * {@linkplain Encoder#wrapAt(int, String) line wrapping}. Since the rest of the input is not read, a different
+         * layout is only detected if it makes the groups of the range invalid or incomplete, otherwise the result
+         * is undefined. Ignored code points of this decoder are not skipped.</p>
+         *
+         * @param encoded Ecoji-encoded data.
+         *
+         * @param byteOffset The offset of the range in the decoded data.
+         *
+         * @param length The length of the range.
+         *
+         * @return A new array with {@code length} decoded bytes.
+         *
+         * @throws IndexOutOfBoundsException If the range is out of the bounds of the decoded data.
+         *
+         * @throws IOException If the groups of the range are invalid or incomplete.
+         */
+        public byte[] decodeRange(CharSequence encoded, long byteOffset, int length) throws IOException {
+            return EcojiDecoding.decodeRange(encoded, byteOffset, length);
+        }
+
+        /**
+         * Decodes a range of the data encoded by the UTF-8 representation of Ecoji-encoded data between the position
+         * and the limit of the provided buffer, without decoding the data before it.
+         *
+         * <p>This works like {@link #decodeRange(CharSequence, long, int)}, with every group but the last one taking
+         * 16 bytes. The position of the buffer is not changed. Only the needed bytes are copied out of buffers
+         * without an accessible array, so e.g. memory-mapped files can be sliced without reading them entirely.</p>
+         *
+         * @param encodedUtf8 A buffer with the UTF-8 representation of Ecoji-encoded data.
+         *
+         * @param byteOffset The offset of the range in the decoded data.
+         *
+         * @param length The length of the range.
+         *
+         * @return A new array with {@code length} decoded bytes.
+         *
+         * @throws IndexOutOfBoundsException If the range is out of the bounds of the decoded data.
+         *
+         * @throws IOException If the groups of the range are invalid or incomplete.
+         */
+        public byte[] decodeRange(ByteBuffer encodedUtf8, long byteOffset, int length) throws IOException {
+            return EcojiDecoding.decodeRangeUtf8(encodedUtf8, byteOffset, length);
+        }
+
+        /**
+         * Decodes many values stored one after another in the provided array into one shared array, writing
+         * the offsets of the decoded values to an index.
+         *
+         * <p>This is the counterpart of {@link Encoder#encodeBatch(List, int[])}: encoded value {@code i} consists
+         * of the chars of {@code encoded} between {@code offsets[i]} and {@code offsets[i + 1]}, and the decoded
+         * value {@code i} occupies the bytes of the result between {@code decodedOffsets[i]} and
+         * {@code decodedOffsets[i + 1]}. Every encoded value must be complete on its own. Ignored code points of
+         * this decoder are skipped.</p>
+         *
+         * @param encoded An array with the encoded values.
+         *
+         * @param offsets Non-decreasing offsets of the encoded values in {@code encoded}.
+         *
+         * @param decodedOffsets An array which will accept the offsets of the decoded values in the result,
+         *                       starting with 0.
+         *
+         * @return A new array with the decoded values, one after another.
+         *
+         * @throws IndexOutOfBoundsException If the offsets are decreasing or out of the bounds of {@code encoded}.
+         *
+         * @throws IllegalArgumentException If {@code offsets} is empty, or if {@code decodedOffsets} is shorter than
+         * {@code offsets}.
+         *
+         * @throws IOException If an encoded value is invalid or incomplete.
+         */
+        public byte[] decodeBatch(char[] encoded, int[] offsets, int[] decodedOffsets) throws IOException {
+            return EcojiDecoding.decodeBatch(encoded, offsets, decodedOffsets, ignored);
+        }
+
+        /**
+         * Decodes many values stored one after another in the provided array with the UTF-8 representation of
+         * Ecoji-encoded data into one shared array, writing the offsets of the decoded values to an index.
+         *
+         * <p>This is the counterpart of {@link Encoder#encodeBatchUtf8(List, int[])}, and works like
+         * {@link #decodeBatch(char[], int[], int[])} with the offsets of the encoded values counted in bytes.</p>
+         *
+         * @param encodedUtf8 An array with the UTF-8 representation of the encoded values.
+         *
+         * @param offsets Non-decreasing offsets of the encoded values in {@code encodedUtf8}.
+         *
+         * @param decodedOffsets An array which will accept the offsets of the decoded values in the result,
+         *                       starting with 0.
+         *
+         * @return A new array with the decoded values, one after another.
+         *
+         * @throws IndexOutOfBoundsException If the offsets are decreasing or out of the bounds of
+         * {@code encodedUtf8}.
+         *
+         * @throws IllegalArgumentException If {@code offsets} is empty, or if {@code decodedOffsets} is shorter than
+         * {@code offsets}.
+         *
+         * @throws IOException If an encoded value is invalid or incomplete.
+         */
+        public byte[] decodeBatchUtf8(byte[] encodedUtf8, int[] offsets, int[] decodedOffsets) throws IOException {
+            return EcojiDecoding.decodeBatchUtf8(encodedUtf8, offsets, decodedOffsets, ignored);
+        }
+
+        /**
+         * Decodes as many chars as possible from the provided char buffer, writing the result to the provided byte
+         * buffer.
+         *
+         * <p>This method follows the contract of
+         * {@link java.nio.charset.CharsetDecoder#decode(ByteBuffer, CharBuffer, boolean)}: the buffers are read and
+         * written starting at their positions, and their positions are advanced past the chars which were decoded
+         * and the bytes which were written. Decoding stops when the input is exhausted, in which case
+         * {@link CoderResult#UNDERFLOW} is returned, when there is not enough room in the output for the next
+         * group, in which case {@link CoderResult#OVERFLOW} is returned, or when the input is invalid. Unless
+         * the input is invalid, the operation can be resumed by calling this method again with more input or more
+         * room in the output.</p>
+         *
+         * <p>Input code points are decoded in groups of 4. If {@code endOfInput} is {@code false}, the last chars
+         * of the input which do not form a complete group are left in the input buffer, so they can be decoded
+         * together with the following input. If it is {@code true}, they are reported as malformed input.</p>
+         *
+         * <p>If a code point does not belong to the Ecoji alphabet, a malformed result is returned, whose
+         * {@linkplain CoderResult#length() length} is the number of chars in this code point; the position of
+         * the input buffer is left at the start of this code point.</p>
+         *
+         * <p>Arrays which back the buffers are accessed directly; buffers without an accessible array, e.g.
+         * direct buffers, are processed in bounded chunks.</p>
+         *
+         * @param src A buffer with Ecoji-encoded data.
+         *
+         * @param dst A buffer which will accept the original representation of the base-1024 encoded data.
+         *
+         * @param endOfInput Whether the source buffer contains the last chars of the input.
+         *
+         * @return {@link CoderResult#UNDERFLOW} if all of the input which can be decoded has been decoded,
+         * {@link CoderResult#OVERFLOW} if more room is needed in the output buffer, or a malformed result if the
+         * input is invalid.
+         */
+        public CoderResult decode(CharBuffer src, ByteBuffer dst, boolean endOfInput) {
+            return EcojiDecoding.decode(src, dst, endOfInput, ignored);
+        }
+
+        /**
+         * Decodes all of the chars from the provided char buffer, writing the result to the provided byte buffer.
+         *
+         * <p>This is equivalent to {@code decode(src, dst, true)}, i.e. the source buffer is treated as the
+         * entire input.</p>
+         *
+         * @param src A buffer with Ecoji-encoded data.
+         *
+         * @param dst A buffer which will accept the original representation of the base-1024 encoded data.
+         *
+         * @return {@link CoderResult#UNDERFLOW} if all of the input has been decoded,
+         * {@link CoderResult#OVERFLOW} if more room is needed in the output buffer, or a malformed result if the
+         * input is invalid.
+         *
+         * @see #decode(CharBuffer, ByteBuffer, boolean)
+         */
+        public CoderResult decode(CharBuffer src, ByteBuffer dst) {
+            return decode(src, dst, true);
         }
 
         /**
          * An intermediate class, needed to implement the builder-like DSL for decoding.
          */
         public static class Target {
+            private final Decoder decoder;
+            // exactly one of these is set
             private final Reader source;
+            private final String string;
+            private final InputStream utf8Source;
+            private final byte[] utf8Bytes;
 
-            private Target(Reader source) {
+            private Target(Decoder decoder, Reader source, String string, InputStream utf8Source, byte[] utf8Bytes) {
+                this.decoder = decoder;
                 this.source = source;
+                this.string = string;
+                this.utf8Source = utf8Source;
+                this.utf8Bytes = utf8Bytes;
             }
 
             /**
@@ -223,7 +1140,22 @@ public final class Ecoji {
              * be decoded properly.
              */
             public int writeTo(OutputStream outputStream) throws IOException {
-                return EcojiDecoding.decode(source, outputStream);
+                if (decoder.pool != null && source == null && utf8Source == null) {
+                    byte[] bytes = writeToBytes();
+                    outputStream.write(bytes);
+                    return bytes.length;
+                }
+
+                if (source != null) {
+                    return EcojiDecoding.decode(source, outputStream, decoder.ignored);
+                } else if (string != null) {
+                    return EcojiDecoding.decode(new StringReader(string), outputStream, decoder.ignored);
+                } else if (utf8Source != null) {
+                    return EcojiDecoding.decodeUtf8(utf8Source, outputStream, decoder.ignored);
+                } else {
+                    return EcojiDecoding.decodeUtf8(new ByteArrayInputStream(utf8Bytes), outputStream,
+                                                    decoder.ignored);
+                }
             }
 
             /**
@@ -237,6 +1169,11 @@ public final class Ecoji {
              * be decoded properly.
              */
             public byte[] writeToBytes() throws IOException {
+                if (string != null) {
+                    return EcojiDecoding.decodeToBytes(string, decoder.pool, decoder.ignored);
+                } else if (utf8Bytes != null) {
+                    return EcojiDecoding.decodeUtf8ToBytes(utf8Bytes, decoder.pool, decoder.ignored);
+                }
                 ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
                 writeTo(outputStream);
                 return outputStream.toByteArray();
@@ -0,0 +1,181 @@
+package io.github.netvl.ecoji;
+
+/**
+ * An emoji alphabet of the Ecoji encoding: the 1024 emojis which represent 10 bits of data each, and the padding
+ * emojis, together with the precomputed tables which the codec works with.
+ *
+ * <p>An alphabet is selected once, when an encoder or a decoder is obtained for it with
+ * {@link Ecoji#getEncoder(EcojiAlphabet)} or {@link Ecoji#getDecoder(EcojiAlphabet)}; the encoding and decoding
+ * loops read the tables of their alphabet from constants and never look the alphabet up per group. Currently, the
+ * only available alphabet is the original one, {@link #V1}.</p>
+ *
+ * <p>{@link #detect(CharSequence)} and {@link #detectUtf8(byte[], int, int)} find out which of the available
+ * alphabets an encoded input uses, by its first emoji which belongs to exactly one of them.</p>
+ */
+public final class EcojiAlphabet {
+    /**
+     * The alphabet of the original Ecoji encoding.
+     */
+    public static final EcojiAlphabet V1 = new EcojiAlphabet(
+        1, Emojis.MAPPING, Emojis.PADDING,
+        new int[]{Emojis.PADDING_40, Emojis.PADDING_41, Emojis.PADDING_42, Emojis.PADDING_43},
+        Emojis.SYMBOL_PAGES, Emojis.SYMBOLS
+    );
+
+    // The available alphabets; the first one is assumed when an input does not tell them apart
+    private static final EcojiAlphabet[] ALPHABETS = {V1};
+
+    private final int version;
+
+    // Forward tables: the code point of every symbol, and its UTF-16 and UTF-8 representations. All data emojis
+    // are outside of the BMP, so the UTF-8 representation always consists of four bytes, which are packed into
+    // an int, most significant byte first
+    final int[] mapping;
+    final char[] mappingHigh;
+    final char[] mappingLow;
+    final int[] mappingUtf8;
+
+    final int padding;
+    // The padding emojis of the last symbol of a group, by the two bits of data they carry
+    final int[] paddings4;
+
+    // Reverse table, see symbolOf()
+    private final byte[] symbolPages;
+    private final short[] symbols;
+
+    private EcojiAlphabet(int version, int[] mapping, int padding, int[] paddings4, byte[] symbolPages,
+                          short[] symbols) {
+        this.version = version;
+        this.mapping = mapping;
+        this.padding = padding;
+        this.paddings4 = paddings4;
+        this.symbolPages = symbolPages;
+        this.symbols = symbols;
+
+        this.mappingHigh = new char[mapping.length];
+        this.mappingLow = new char[mapping.length];
+        this.mappingUtf8 = new int[mapping.length];
+        for (int i = 0; i < mapping.length; ++i) {
+            int c = mapping[i];
+            if (Character.isBmpCodePoint(c)) {
+                throw new AssertionError("Unexpected BMP code point in the mapping: " + c);
+            }
+            mappingHigh[i] = Character.highSurrogate(c);
+            mappingLow[i] = Character.lowSurrogate(c);
+            mappingUtf8[i] = (0xf0 | c >> 18) << 24 | (0x80 | c >> 12 & 0x3f) << 16 | (0x80 | c >> 6 & 0x3f) << 8 |
+                             (0x80 | c & 0x3f);
+        }
+    }
+
+    /**
+     * Returns the version of the Ecoji encoding which this alphabet belongs to.
+     *
+     * @return The version number, e.g. {@code 1} for {@link #V1}.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Checks whether the given code point is one of the emojis of this alphabet, including the padding ones.
+     *
+     * @param codePoint A Unicode code point.
+     *
+     * @return {@code true} if the code point belongs to this alphabet.
+     */
+    public boolean contains(int codePoint) {
+        return symbolOf(codePoint) >= 0;
+    }
+
+    // Returns 0..1023 for the data emojis, Emojis.SYMBOL_PADDING or Emojis.SYMBOL_PADDING_4 with the two bits
+    // of data for the padding emojis, and -1 for everything else, see Emojis.symbolOf()
+    int symbolOf(int codePoint) {
+        int page = codePoint >>> 8;
+        if (page >= symbolPages.length) {
+            return -1;
+        }
+        return symbols[symbolPages[page] << 8 | codePoint & 0xff];
+    }
+
+    /**
+     * Finds out which alphabet the provided Ecoji-encoded data uses.
+     *
+     * <p>The input is scanned up to its first emoji which belongs to exactly one of the available alphabets, so
+     * usually only a few code points are examined. If there is no such emoji, e.g. if the input is empty, the
+     * original alphabet is returned.</p>
+     *
+     * @param input Ecoji-encoded data.
+     *
+     * @return The alphabet of the input, to be passed to {@link Ecoji#getDecoder(EcojiAlphabet)}.
+     */
+    public static EcojiAlphabet detect(CharSequence input) {
+        for (int i = 0; i < input.length(); ) {
+            int c = Character.codePointAt(input, i);
+            EcojiAlphabet alphabet = alphabetOf(c);
+            if (alphabet != null) {
+                return alphabet;
+            }
+            i += Character.charCount(c);
+        }
+        return ALPHABETS[0];
+    }
+
+    /**
+     * Works like {@link #detect(CharSequence)} for the UTF-8 representation of Ecoji-encoded data.
+     *
+     * <p>Malformed UTF-8 is not reported; it never matches an emoji and is skipped.</p>
+     *
+     * @param input An array which contains the UTF-8 representation of Ecoji-encoded data.
+     *
+     * @param off The offset of the data in the array.
+     *
+     * @param len The length of the data in bytes.
+     *
+     * @return The alphabet of the input, to be passed to {@link Ecoji#getDecoder(EcojiAlphabet)}.
+     *
+     * @throws IndexOutOfBoundsException If {@code off} or {@code len} are out of the bounds of the array.
+     */
+    public static EcojiAlphabet detectUtf8(byte[] input, int off, int len) {
+        EcojiEncoderSession.checkBounds(input.length, off, len);
+
+        int end = off + len;
+        for (int p = off; p < end; ) {
+            int b = input[p] & 0xff;
+            int n = b < 0x80 ? 1 : b >= 0xc0 && b < 0xe0 ? 2 : b >= 0xe0 && b < 0xf0 ? 3 : b >= 0xf0 ? 4 : 0;
+            if (n == 0 || n > end - p) {
+                ++p;
+                continue;
+            }
+
+            int c = n == 1 ? b : b & 0x3f >> n - 1;
+            for (int i = 1; i < n; ++i) {
+                c = c << 6 | input[p + i] & 0x3f;
+            }
+            EcojiAlphabet alphabet = alphabetOf(c);
+            if (alphabet != null) {
+                return alphabet;
+            }
+            p += n;
+        }
+        return ALPHABETS[0];
+    }
+
+    // Returns the only available alphabet which contains the code point, or null if there is none or several
+    private static EcojiAlphabet alphabetOf(int codePoint) {
+        EcojiAlphabet found = null;
+        for (EcojiAlphabet alphabet : ALPHABETS) {
+            if (alphabet.contains(codePoint)) {
+                if (found != null) {
+                    return null;
+                }
+                found = alphabet;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String toString() {
+        return "Ecoji v" + version;
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.netvl.ecoji;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of encoding and decoding results, for workloads which encode and decode the same small values,
+ * e.g. tokens or identifiers, over and over again.
+ *
+ * <p>An instance is obtained with {@link Ecoji#newCache(int, int)}. It encodes and decodes like
+ * {@link Ecoji#getEncoder()} and {@link Ecoji#getDecoder()}, and remembers the results by the content of
+ * the input. Inputs longer than the configured limit are encoded or decoded directly and never stored, so large
+ * payloads do not evict the hot entries.</p>
+ *
+ * <p>The cache is thread-safe. It is split into segments by the hash of the input, each of which is guarded by its
+ * own lock and evicts its least recently used entries when it is full, so the eviction order is only approximately
+ * LRU across the whole cache. Encoding and decoding results share the same entries budget.</p>
+ *
+ * <p>Encoding results are immutable strings and are returned as is; decoding results are copied, so the returned
+ * arrays can be modified freely.</p>
+ */
+public final class EcojiCache {
+    private static final int MAX_SEGMENTS = 16;
+
+    private final int maxInputLength;
+    private final Segment[] segments;
+
+    EcojiCache(int maxEntries, int maxInputLength) {
+        this(maxEntries, maxInputLength, Integer.highestOneBit(Math.min(MAX_SEGMENTS, Math.max(maxEntries, 1))));
+    }
+
+    // The number of segments must be a power of two not greater than maxEntries
+    EcojiCache(int maxEntries, int maxInputLength, int segmentCount) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive: " + maxEntries);
+        }
+        if (maxInputLength < 0) {
+            throw new IllegalArgumentException("The maximum input length must not be negative: " + maxInputLength);
+        }
+        this.maxInputLength = maxInputLength;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            // the remainder is spread over the first segments, so that the capacities add up to maxEntries exactly
+            segments[i] = new Segment(maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Encodes the provided bytes like {@code Ecoji.getEncoder().readFrom(bytes).writeToString()}, reusing
+     * the previous result for the same bytes if it is still in the cache.
+     *
+     * @param bytes The bytes to encode.
+     *
+     * @return The Ecoji-encoded data.
+     */
+    public String encode(byte[] bytes) {
+        if (bytes.length > maxInputLength) {
+            return EcojiEncoding.encodeToString(bytes, null, null);
+        }
+
+        BytesKey key = new BytesKey(bytes);
+        Segment segment = segmentFor(key.hash);
+        Object cached = segment.get(key);
+        if (cached != null) {
+            return (String) cached;
+        }
+
+        String encoded = EcojiEncoding.encodeToString(bytes, null, null);
+        // the key keeps a copy, since the caller may modify the array afterwards
+        segment.put(new BytesKey(bytes.clone(), key.hash), encoded);
+        return encoded;
+    }
+
+    /**
+     * Decodes the provided Ecoji-encoded data like {@code Ecoji.getDecoder().readFrom(encoded).writeToBytes()},
+     * reusing the previous result for the same data if it is still in the cache. Invalid data is not cached.
+     *
+     * @param encoded Ecoji-encoded data.
+     *
+     * @return A new array with the decoded bytes.
+     *
+     * @throws IOException If the data is invalid or incomplete.
+     */
+    public byte[] decode(String encoded) throws IOException {
+        if (encoded.length() > maxInputLength) {
+            return EcojiDecoding.decodeToBytes(encoded, null, null);
+        }
+
+        Segment segment = segmentFor(encoded.hashCode());
+        Object cached = segment.get(encoded);
+        if (cached != null) {
+            return ((byte[]) cached).clone();
+        }
+
+        byte[] decoded = EcojiDecoding.decodeToBytes(encoded, null, null);
+        segment.put(encoded, decoded.clone());
+        return decoded;
+    }
+
+    /**
+     * Returns the number of calls which found their result in the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long hitCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.hits();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of calls which did not find their result in the cache; inputs which are too long to be
+     * cached are not counted.
+     *
+     * @return The number of cache misses.
+     */
+    public long missCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.misses();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return The number of cached encoding and decoding results.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Removes all of the entries from the cache; the hit and miss counts are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ hash >>> 16) & segments.length - 1];
+    }
+
+    // An access-ordered map, which drops the least recently used entry when it grows over its capacity, with
+    // the statistics of its lookups; the keys are either strings, for decoding, or BytesKeys, for encoding, which
+    // never equal each other
+    private static final class Segment {
+        private final Map<Object, Object> map;
+        private long hits;
+        private long misses;
+
+        Segment(final int capacity) {
+            this.map = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Object get(Object key) {
+            Object value = map.get(key);
+            if (value != null) {
+                ++hits;
+            } else {
+                ++misses;
+            }
+            return value;
+        }
+
+        synchronized void put(Object key, Object value) {
+            map.put(key, value);
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+    }
+
+    private static final class BytesKey {
+        private final byte[] bytes;
+        private final int hash;
+
+        BytesKey(byte[] bytes) {
+            this(bytes, Arrays.hashCode(bytes));
+        }
+
+        BytesKey(byte[] bytes, int hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BytesKey && Arrays.equals(bytes, ((BytesKey) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
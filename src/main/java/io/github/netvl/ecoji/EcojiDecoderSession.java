@@ -0,0 +1,374 @@
+package io.github.netvl.ecoji;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+
+/**
+ * A reusable decoder for small inputs which works directly on caller-owned arrays.
+ *
+ * <p>Use {@link Ecoji.Decoder#newSession()} to create a session. Unlike the {@code readFrom()} methods of
+ * {@link Ecoji.Decoder}, which allocate an intermediate object and internal buffers for every input, the methods
+ * of this class decode straight into the provided arrays and reuse the decoding state kept in the session, so
+ * they do not allocate anything unless the input is invalid. This makes them suitable for hot paths which decode
+ * many short messages, like identifiers or cache keys.</p>
+ *
+ * <p>Sessions are not thread-safe. They are cheap to create, and are meant to be kept per thread, e.g. in
+ * a {@link ThreadLocal}, or in a pool.</p>
+ *
+ * <p>The size of the output can be computed with {@link Ecoji.Decoder#decodedLength(CharSequence)} and
+ * {@link Ecoji.Decoder#decodedUtf8Length(byte[])}.</p>
+ *
+ * <p>A session can also decode a stream of Ecoji-encoded data which arrives in arbitrary fragments, e.g. in
+ * an event loop, with {@link #decode(CharBuffer, ByteBuffer, boolean)} and
+ * {@link #decodeUtf8(ByteBuffer, ByteBuffer, boolean)}. These methods work like
+ * {@link java.nio.charset.CharsetDecoder#decode(ByteBuffer, CharBuffer, boolean)}, except that the code points of
+ * an incomplete group, including a surrogate pair or a UTF-8 sequence split between fragments, are kept in
+ * the session until the rest of the group arrives.</p>
+ */
+public final class EcojiDecoderSession {
+    private static final int MAX_KEPT_SCRATCH = 8192;
+
+    private final EcojiDecoding decoding;
+
+    // Scratch buffer for decode(String, ...), kept between the calls unless it grows too large
+    private char[] scratch = new char[0];
+
+    // Incremental decoding state: the window starts with the chars or bytes of an incomplete group carried over
+    // from the previous calls; the windows are allocated on the first incremental call
+    private static final int WINDOW = 4096;
+    private char[] in;
+    private byte[] inUtf8;
+    private byte[] out;
+    private int carried;
+    // The position of the start of the window in the input, for error messages
+    private long position;
+    // The description of the malformed input reported by the last incremental call, if any
+    private String malformedInputMessage;
+
+    EcojiDecoderSession(int[] ignored) {
+        this.decoding = new EcojiDecoding(ignored);
+    }
+
+    /**
+     * Decodes {@code len} chars of Ecoji-encoded data from {@code src} starting at {@code off}, writing
+     * the original bytes to {@code dst} starting at {@code dstOff}.
+     *
+     * <p>The entire range is expected to be valid Ecoji-encoded data; otherwise an exception is thrown, and
+     * the contents of {@code dst} after {@code dstOff} are unspecified.</p>
+     *
+     * @param src An array with Ecoji-encoded data.
+     *
+     * @param off The index of the first char to decode.
+     *
+     * @param len The number of chars to decode.
+     *
+     * @param dst An array which will accept the original representation of the base-1024 encoded data.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of bytes written to {@code dst}.
+     *
+     * @throws IOException If the input cannot be decoded properly; the message contains the position of
+     * the invalid code point relative to {@code off}.
+     *
+     * @throws IndexOutOfBoundsException If the specified ranges are out of the bounds of the arrays.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the decoded data.
+     */
+    public int decode(char[] src, int off, int len, byte[] dst, int dstOff) throws IOException {
+        EcojiEncoderSession.checkBounds(src.length, off, len);
+        EcojiEncoderSession.checkBounds(dst.length, dstOff, 0);
+
+        CoderResult result = decoding.decodeBlock(src, off, off + len, dst, dstOff, dst.length);
+        if (result.isMalformed()) {
+            throw decoding.malformedInputException(-off);
+        }
+        return finish(result, off + len, dstOff);
+    }
+
+    /**
+     * Decodes Ecoji-encoded data from the provided {@link String}, writing the original bytes to {@code dst}
+     * starting at {@code dstOff}.
+     *
+     * <p>The chars of the string are copied into a buffer owned by this session, so nothing is allocated for
+     * short inputs.</p>
+     *
+     * @param src A {@link String} containing Ecoji-encoded data.
+     *
+     * @param dst An array which will accept the original representation of the base-1024 encoded data.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of bytes written to {@code dst}.
+     *
+     * @throws IOException If the input cannot be decoded properly.
+     *
+     * @throws IndexOutOfBoundsException If {@code dstOff} is out of the bounds of {@code dst}.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the decoded data.
+     */
+    public int decode(String src, byte[] dst, int dstOff) throws IOException {
+        char[] buffer = scratch;
+        if (buffer.length < src.length()) {
+            buffer = new char[src.length()];
+            if (buffer.length <= MAX_KEPT_SCRATCH) {
+                scratch = buffer;
+            }
+        }
+
+        src.getChars(0, src.length(), buffer, 0);
+        return decode(buffer, 0, src.length(), dst, dstOff);
+    }
+
+    /**
+     * Decodes {@code len} bytes of the UTF-8 representation of Ecoji-encoded data from {@code src} starting at
+     * {@code off}, writing the original bytes to {@code dst} starting at {@code dstOff}.
+     *
+     * <p>The entire range is expected to be valid UTF-8 representation of Ecoji-encoded data; otherwise
+     * an exception is thrown, and the contents of {@code dst} after {@code dstOff} are unspecified.</p>
+     *
+     * @param src An array with UTF-8 representation of Ecoji-encoded data.
+     *
+     * @param off The index of the first byte to decode.
+     *
+     * @param len The number of bytes to decode.
+     *
+     * @param dst An array which will accept the original representation of the base-1024 encoded data.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of bytes written to {@code dst}.
+     *
+     * @throws IOException If the input cannot be decoded properly; the message contains the offset of
+     * the invalid sequence relative to {@code off}.
+     *
+     * @throws IndexOutOfBoundsException If the specified ranges are out of the bounds of the arrays.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the decoded data.
+     */
+    public int decodeUtf8(byte[] src, int off, int len, byte[] dst, int dstOff) throws IOException {
+        EcojiEncoderSession.checkBounds(src.length, off, len);
+        EcojiEncoderSession.checkBounds(dst.length, dstOff, 0);
+
+        CoderResult result = decoding.decodeBlockUtf8(src, off, off + len, dst, dstOff, dst.length);
+        if (result.isMalformed()) {
+            throw decoding.malformedUtf8InputException(-off);
+        }
+        return finish(result, off + len, dstOff);
+    }
+
+    /**
+     * Decodes Ecoji-encoded data from {@code src} into {@code dst}, keeping the code points of an incomplete group
+     * in this session until the next call.
+     *
+     * <p>All remaining chars of {@code src} are consumed, unless {@code dst} does not have room for the next
+     * group; in that case {@link CoderResult#OVERFLOW} is returned, and the call should be repeated with the same
+     * input once there is more room in the output. The method never blocks, and does not throw on invalid
+     * input.</p>
+     *
+     * <p>If a code point does not belong to the Ecoji alphabet, a malformed result is returned, whose
+     * {@linkplain CoderResult#length() length} is the number of chars in this code point. The groups before it
+     * are written to {@code dst}, {@code src} is left at the start of the code point, and the code points of its
+     * group which precede it are kept in the session, so decoding can continue after the malformed input is
+     * skipped. A high surrogate at the end of the previous call which is not followed by a low surrogate is
+     * discarded, and the malformed result covers the first char of {@code src}. The description of the malformed
+     * input, with its position from the start of the input, is returned by {@link #malformedInputMessage()}.</p>
+     *
+     * <p>When {@code endOfInput} is {@code true}, the session checks that no incomplete group is left, after
+     * which it can be used for another input. An incomplete group is reported as a malformed result, whose length
+     * is the number of chars of the group kept in the session.</p>
+     *
+     * @param src A buffer with the next chars of the Ecoji-encoded data.
+     *
+     * @param dst A buffer which will accept the original representation of the base-1024 encoded data.
+     *
+     * @param endOfInput Whether {@code src} contains the last chars of the input.
+     *
+     * @return {@link CoderResult#UNDERFLOW} if all of the input has been consumed, {@link CoderResult#OVERFLOW}
+     * if there is not enough room in {@code dst} to continue, or a malformed result if the input is invalid.
+     */
+    public CoderResult decode(CharBuffer src, ByteBuffer dst, boolean endOfInput) {
+        return decodeIncrementally(src, null, dst, endOfInput);
+    }
+
+    /**
+     * Decodes the UTF-8 representation of Ecoji-encoded data from {@code src} into {@code dst}, keeping the bytes
+     * of an incomplete group in this session until the next call.
+     *
+     * <p>This method works exactly like {@link #decode(CharBuffer, ByteBuffer, boolean)}, except for
+     * the representation of the input: the length of a malformed result is in bytes, and a malformed UTF-8
+     * sequence which starts at the end of the previous call is discarded, with the result covering the bytes of
+     * it in {@code src}, or at least the first byte of {@code src}.</p>
+     *
+     * @param src A buffer with the next bytes of the UTF-8 representation of Ecoji-encoded data.
+     *
+     * @param dst A buffer which will accept the original representation of the base-1024 encoded data.
+     *
+     * @param endOfInput Whether {@code src} contains the last bytes of the input.
+     *
+     * @return {@link CoderResult#UNDERFLOW} if all of the input has been consumed, {@link CoderResult#OVERFLOW}
+     * if there is not enough room in {@code dst} to continue, or a malformed result if the input is invalid.
+     */
+    public CoderResult decodeUtf8(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+        return decodeIncrementally(null, src, dst, endOfInput);
+    }
+
+    /**
+     * Returns the description of the malformed input reported by the last call to
+     * {@link #decode(CharBuffer, ByteBuffer, boolean)} or {@link #decodeUtf8(ByteBuffer, ByteBuffer, boolean)},
+     * with its position in chars or bytes from the start of the input, e.g. to be used as the message of
+     * an {@link IOException}.
+     *
+     * @return The description of the malformed input, or {@code null} if the last call did not return
+     * a malformed result.
+     */
+    public String malformedInputMessage() {
+        return malformedInputMessage;
+    }
+
+    /**
+     * Discards the input of an incomplete group kept by the previous calls to
+     * {@link #decode(CharBuffer, ByteBuffer, boolean)} or {@link #decodeUtf8(ByteBuffer, ByteBuffer, boolean)},
+     * so that the session can be used for another input.
+     */
+    public void reset() {
+        carried = 0;
+        position = 0;
+        malformedInputMessage = null;
+    }
+
+    // Exactly one of src and utf8Src is set
+    private CoderResult decodeIncrementally(CharBuffer src, ByteBuffer utf8Src, ByteBuffer dst, boolean endOfInput) {
+        malformedInputMessage = null;
+        // The number of chars or bytes taken from the source by this call, to find where they start in the window
+        int taken = 0;
+        if (src != null && in == null) {
+            in = new char[WINDOW];
+        }
+        if (utf8Src != null && inUtf8 == null) {
+            inUtf8 = new byte[WINDOW];
+        }
+
+        while (true) {
+            int fromSrc;
+            if (src != null) {
+                fromSrc = Math.min(src.remaining(), in.length - carried);
+                src.get(in, carried, fromSrc);
+            } else {
+                fromSrc = Math.min(utf8Src.remaining(), inUtf8.length - carried);
+                utf8Src.get(inUtf8, carried, fromSrc);
+            }
+            int available = carried + fromSrc;
+            int srcStart = carried - Math.min(carried, taken);
+            taken += fromSrc;
+
+            byte[] output;
+            int outOff;
+            int outEnd;
+            if (dst.hasArray()) {
+                output = dst.array();
+                outOff = dst.arrayOffset() + dst.position();
+                outEnd = outOff + dst.remaining();
+            } else {
+                // large enough for the entire window, so it is only limited by the room in dst
+                if (out == null) {
+                    out = new byte[WINDOW / 4 * 5];
+                }
+                output = out;
+                outOff = 0;
+                outEnd = Math.min(dst.remaining(), out.length);
+            }
+
+            CoderResult result = src != null
+                                 ? decoding.decodeBlock(in, 0, available, output, outOff, outEnd)
+                                 : decoding.decodeBlockUtf8(inUtf8, 0, available, output, outOff, outEnd);
+
+            if (dst.hasArray()) {
+                dst.position(decoding.dstPos - dst.arrayOffset());
+            } else {
+                dst.put(out, 0, decoding.dstPos);
+            }
+
+            if (result.isMalformed()) {
+                return malformed(src, utf8Src, result.length(), srcStart, available);
+            }
+
+            int consumed = decoding.srcPos;
+            int left = available - consumed;
+            position += consumed;
+            if (result.isOverflow()) {
+                // the unconsumed input which came from src is returned to it, the rest is kept
+                int giveBack = Math.min(left, fromSrc);
+                if (src != null) {
+                    src.position(src.position() - giveBack);
+                } else {
+                    utf8Src.position(utf8Src.position() - giveBack);
+                }
+                keep(src == null, consumed, left - giveBack);
+                return CoderResult.OVERFLOW;
+            }
+
+            keep(src == null, consumed, left);
+            if (src != null ? !src.hasRemaining() : !utf8Src.hasRemaining()) {
+                break;
+            }
+        }
+
+        if (endOfInput) {
+            int incomplete = carried;
+            reset();
+            if (incomplete > 0) {
+                malformedInputMessage = EcojiDecoding.incompleteInputException().getMessage();
+                return CoderResult.malformedForLength(incomplete);
+            }
+        }
+        return CoderResult.UNDERFLOW;
+    }
+
+    // Returns the input from the malformed code point on to the source, whose data starts at srcStart in
+    // the window, and keeps the preceding code points of its group
+    private CoderResult malformed(CharBuffer src, ByteBuffer utf8Src, int length, int srcStart, int available) {
+        int codePointPos = decoding.srcPos;
+        int groupPos = decoding.groupPos;
+        malformedInputMessage = src != null
+                                ? decoding.malformedInputException(position).getMessage()
+                                : decoding.malformedUtf8InputException(position).getMessage();
+
+        int resumeAt = codePointPos;
+        if (codePointPos < srcStart) {
+            // the code point started in a previous call, so its part kept in the session is dropped
+            length = Math.max(codePointPos + length - srcStart, 1);
+            resumeAt = srcStart;
+        }
+        if (src != null) {
+            src.position(src.position() - (available - resumeAt));
+        } else {
+            utf8Src.position(utf8Src.position() - (available - resumeAt));
+        }
+        // the dropped part still counts in the positions of the following input
+        position += groupPos + resumeAt - codePointPos;
+        keep(src == null, groupPos, codePointPos - groupPos);
+        return CoderResult.malformedForLength(length);
+    }
+
+    private void keep(boolean utf8, int from, int count) {
+        if (utf8) {
+            System.arraycopy(inUtf8, from, inUtf8, 0, count);
+        } else {
+            System.arraycopy(in, from, in, 0, count);
+        }
+        carried = count;
+    }
+
+    private int finish(CoderResult result, int end, int dstOff) throws IOException {
+        if (result.isOverflow()) {
+            throw new IllegalArgumentException("Output array is too small for the decoded data");
+        }
+        if (decoding.srcPos < end) {
+            throw EcojiDecoding.incompleteInputException();
+        }
+        return decoding.dstPos - dstOff;
+    }
+}
@@ -1,101 +1,1017 @@
 package io.github.netvl.ecoji;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 class EcojiDecoding {
-    static int decode(Reader source, OutputStream destination) throws IOException {
+    // Size of the input blocks, in chars
+    static final int BLOCK_SIZE = 65536;
+
+    // Every group takes at least 4 chars and produces at most 5 bytes
+    static final int MAX_BLOCK_BYTES = BLOCK_SIZE / 4 * 5;
+
+    // Size of the windows of the input scanned by validate(), in chars
+    private static final int VALIDATION_WINDOW = 4096;
+
+    // The maximum number of chars or bytes which a group, including the ignored code points inside of it, may span;
+    // it is well below the sizes of all input windows, so that a group always fits into one
+    static final int MAX_GROUP_SPAN = 1024;
+
+    // The value of malformedCodePoint when a group spans more than MAX_GROUP_SPAN chars or bytes
+    private static final int GROUP_TOO_LONG = -2;
+
+    static int decode(Reader source, OutputStream destination, int[] ignored) throws IOException {
+        char[] in = new char[BLOCK_SIZE];
+        byte[] out = new byte[MAX_BLOCK_BYTES];
+        EcojiDecoding decoding = new EcojiDecoding(ignored);
         int bytesWritten = 0;
 
-        int[] chars = new int[4];
-        byte[] out = new byte[5];
+        // chars of an incomplete group left over from the previous block
+        int pending = 0;
+        long consumed = 0;
 
         while (true) {
-            chars[0] = checkCodePoint(readCodePoint(source));
-            if (chars[0] == -1) {
+            int n = source.read(in, pending, in.length - pending);
+
+            if (n < 0) {
                 break;
             }
 
-            for (int i = 1; i < 4; ++i) {
-                chars[i] = checkCodePoint(readCodePoint(source));
-                if (chars[i] == -1) {
-                    throw new IOException("Unexpected end of data, the number of input Unicode code points " +
-                                          "is not a multiple of 4");
-                }
+            int available = pending + n;
+            CoderResult result = decoding.decodeBlock(in, 0, available, out, 0, out.length);
+
+            if (decoding.dstPos > 0) {
+                destination.write(out, 0, decoding.dstPos);
+                bytesWritten += decoding.dstPos;
             }
 
-            int bits1 = Emojis.revMapGetOrZero(chars[0]),
-                bits2 = Emojis.revMapGetOrZero(chars[1]),
-                bits3 = Emojis.revMapGetOrZero(chars[2]),
-                bits4;
-            switch (chars[3]) {
-                case Emojis.PADDING_40:
-                    bits4 = 0;
-                    break;
-                case Emojis.PADDING_41:
-                    bits4 = 1 << 8;
+            if (result.isMalformed()) {
+                throw decoding.malformedInputException(consumed);
+            }
+
+            pending = available - decoding.srcPos;
+            consumed += decoding.srcPos;
+            System.arraycopy(in, decoding.srcPos, in, 0, pending);
+        }
+
+        if (pending > 0) {
+            throw incompleteInputException();
+        }
+
+        return bytesWritten;
+    }
+
+    static int decodeUtf8(InputStream source, OutputStream destination, int[] ignored) throws IOException {
+        byte[] in = new byte[BLOCK_SIZE];
+        byte[] out = new byte[MAX_BLOCK_BYTES];
+        EcojiDecoding decoding = new EcojiDecoding(ignored);
+        int bytesWritten = 0;
+
+        // bytes of an incomplete group left over from the previous block
+        int pending = 0;
+        long consumed = 0;
+
+        while (true) {
+            int n = source.read(in, pending, in.length - pending);
+
+            if (n < 0) {
+                break;
+            }
+
+            int available = pending + n;
+            CoderResult result = decoding.decodeBlockUtf8(in, 0, available, out, 0, out.length);
+
+            if (decoding.dstPos > 0) {
+                destination.write(out, 0, decoding.dstPos);
+                bytesWritten += decoding.dstPos;
+            }
+
+            if (result.isMalformed()) {
+                throw decoding.malformedUtf8InputException(consumed);
+            }
+
+            pending = available - decoding.srcPos;
+            consumed += decoding.srcPos;
+            System.arraycopy(in, decoding.srcPos, in, 0, pending);
+        }
+
+        if (pending > 0) {
+            throw new IOException("Unexpected end of data at byte offset " + consumed + ", the input ends with " +
+                                  "an incomplete UTF-8 sequence or the number of input Unicode code points " +
+                                  "is not a multiple of 4");
+        }
+
+        return bytesWritten;
+    }
+
+    /**
+     * Decodes a whole string into a new array. The pool, if not null, is used to decode the input in parallel if it
+     * is laid out as the encoder output; otherwise, including invalid input, decoding is repeated sequentially to
+     * produce the result or the error. Parallel decoding is strict, so inputs with ignored code points are always
+     * decoded sequentially.
+     */
+    static byte[] decodeToBytes(String source, ForkJoinPool pool, int[] ignored) throws IOException {
+        byte[] out = new byte[EcojiEncoding.arraySize(decodedLength(source))];
+        if (pool != null && source.length() > EcojiParallel.DECODE_CHUNK && EcojiParallel.decode(pool, source, out)) {
+            return out;
+        }
+
+        char[] window = new char[Math.min(BLOCK_SIZE, source.length())];
+        EcojiDecoding decoding = new EcojiDecoding(ignored);
+        int pos = 0;
+        int dp = 0;
+
+        while (pos < source.length()) {
+            int n = Math.min(window.length, source.length() - pos);
+            boolean last = pos + n == source.length();
+            source.getChars(pos, pos + n, window, 0);
+
+            CoderResult result = decoding.decodeBlock(window, 0, n, out, dp, out.length);
+            if (result.isMalformed()) {
+                throw decoding.malformedInputException(pos);
+            }
+
+            pos += decoding.srcPos;
+            dp = decoding.dstPos;
+
+            if (result.isOverflow()) {
+                // the input is not a single encoded sequence, e.g. a concatenation of several ones
+                out = grow(out);
+            } else if (last && pos < source.length()) {
+                throw incompleteInputException();
+            }
+        }
+
+        return dp == out.length ? out : Arrays.copyOf(out, dp);
+    }
+
+    /**
+     * Works like {@link #decodeToBytes(String, ForkJoinPool, int[])} for the UTF-8 representation of
+     * Ecoji-encoded data.
+     */
+    static byte[] decodeUtf8ToBytes(byte[] source, ForkJoinPool pool, int[] ignored) throws IOException {
+        byte[] out = new byte[EcojiEncoding.arraySize(decodedUtf8Length(source))];
+        if (pool != null && source.length > EcojiParallel.DECODE_CHUNK && EcojiParallel.decodeUtf8(pool, source, out)) {
+            return out;
+        }
+
+        EcojiDecoding decoding = new EcojiDecoding(ignored);
+        int sp = 0;
+        int dp = 0;
+
+        while (true) {
+            CoderResult result = decoding.decodeBlockUtf8(source, sp, source.length, out, dp, out.length);
+            if (result.isMalformed()) {
+                throw decoding.malformedUtf8InputException(0);
+            }
+
+            sp = decoding.srcPos;
+            dp = decoding.dstPos;
+
+            if (result.isOverflow()) {
+                out = grow(out);
+            } else {
+                break;
+            }
+        }
+
+        if (sp < source.length) {
+            throw incompleteInputException();
+        }
+
+        return dp == out.length ? out : Arrays.copyOf(out, dp);
+    }
+
+    private static byte[] grow(byte[] array) {
+        return Arrays.copyOf(array, EcojiEncoding.arraySize(array.length + (array.length >> 1) + 5L));
+    }
+
+    /**
+     * Returns the number of bytes which the provided Ecoji-encoded data decodes to.
+     *
+     * <p>Only the last group is inspected, and all of the preceding groups are assumed to be complete groups, as
+     * produced by the encoder. Therefore, the result is exact for the output of the encoder, and an upper bound
+     * for concatenations of several encoded sequences. For invalid input the result is unspecified.</p>
+     */
+    static long decodedLength(CharSequence encoded) {
+        int start = encoded.length();
+        int s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 3; i >= 0 && start > 0; --i) {
+            char low = encoded.charAt(--start);
+            int c = low;
+            if (Character.isLowSurrogate(low) && start > 0 && Character.isHighSurrogate(encoded.charAt(start - 1))) {
+                c = Character.toCodePoint(encoded.charAt(--start), low);
+            }
+            switch (i) {
+                case 3:
+                    s3 = Emojis.symbolOf(c);
                     break;
-                case Emojis.PADDING_42:
-                    bits4 = 2 << 8;
+                case 2:
+                    s2 = Emojis.symbolOf(c);
                     break;
-                case Emojis.PADDING_43:
-                    bits4 = 3 << 8;
+                case 1:
+                    s1 = Emojis.symbolOf(c);
                     break;
                 default:
-                    bits4 = Emojis.revMapGetOrZero(chars[3]);
-            }
-
-            out[0] = (byte) (bits1 >> 2);
-            out[1] = (byte) (((bits1 & 0x3) << 6) | (bits2 >> 4));
-            out[2] = (byte) (((bits2 & 0xf) << 4) | (bits3 >> 6));
-            out[3] = (byte) (((bits3 & 0x3f) << 2) | (bits4 >> 8));
-            out[4] = (byte) (bits4 & 0xff);
-
-            int len;
-            if (chars[1] == Emojis.PADDING) {
-                len = 1;
-            } else if (chars[2] == Emojis.PADDING) {
-                len = 2;
-            } else if (chars[3] == Emojis.PADDING) {
-                len = 3;
-            } else if (chars[3] == Emojis.PADDING_40 || chars[3] == Emojis.PADDING_41 ||
-                       chars[3] == Emojis.PADDING_42 || chars[3] == Emojis.PADDING_43) {
-                len = 4;
+            }
+        }
+
+        if (start == encoded.length()) {
+            return 0;
+        }
+        return (long) start / EcojiEncoding.MAX_GROUP_CHARS * 5 + groupLength(s1, s2, s3);
+    }
+
+    /**
+     * Checks that the provided data is valid Ecoji-encoded data and returns -1 if it is, or the index of the first
+     * invalid char otherwise.
+     *
+     * <p>Besides the alphabet, this checks the structure of every group: the first code point is a data emoji,
+     * a padding emoji may only be followed by padding emojis, and the emojis which encode the last two bits of
+     * a 4-byte group only appear in the last position. Padded groups are allowed in the middle of the input,
+     * because the decoder accepts concatenations of encoded sequences. If the last group is incomplete, the index
+     * of its first char is returned.</p>
+     *
+     * <p>The {@code ignored} code points, if not null, are skipped wherever they appear, like in
+     * {@link #decodeBlock}, with the same limit on the span of a group.</p>
+     */
+    static int validate(CharSequence encoded, int[] ignored) {
+        int len = encoded.length();
+        if (len == 0) {
+            return -1;
+        }
+
+        // the chars are scanned in windows, which is much faster than going through CharSequence.charAt()
+        char[] window = new char[Math.min(len, VALIDATION_WINDOW)];
+        int pos = 0;
+        int carried = 0;
+        while (true) {
+            int end = Math.min(window.length, len - pos);
+            if (encoded instanceof String) {
+                ((String) encoded).getChars(pos + carried, pos + end, window, carried);
             } else {
-                len = 5;
+                for (int i = carried; i < end; ++i) {
+                    window[i] = encoded.charAt(pos + i);
+                }
+            }
+
+            int p = validateBlock(window, end, ignored);
+            if (p < 0) {
+                return pos + ~p;
+            }
+            if (pos + end == len) {
+                return p == end ? -1 : pos + p;
             }
 
-            destination.write(out, 0, len);
-            bytesWritten += len;
+            carried = end - p;
+            System.arraycopy(window, p, window, 0, carried);
+            pos += p;
         }
+    }
 
-        return bytesWritten;
+    /**
+     * Validates the complete groups in {@code src[0, end)}, returning the position after the last one, or
+     * {@code ~position} of the first invalid char; ignored code points after the last group are consumed as well.
+     */
+    private static int validateBlock(char[] src, int end, int[] ignored) {
+        int p = 0;
+        while (true) {
+            // Fast path: all four code points are surrogate pairs which encode data symbols
+            if (end - p >= 8) {
+                char h0 = src[p], l0 = src[p + 1],
+                     h1 = src[p + 2], l1 = src[p + 3],
+                     h2 = src[p + 4], l2 = src[p + 5],
+                     h3 = src[p + 6], l3 = src[p + 7];
+
+                if (((h0 & 0xfc00 ^ 0xd800) | (l0 & 0xfc00 ^ 0xdc00) |
+                     (h1 & 0xfc00 ^ 0xd800) | (l1 & 0xfc00 ^ 0xdc00) |
+                     (h2 & 0xfc00 ^ 0xd800) | (l2 & 0xfc00 ^ 0xdc00) |
+                     (h3 & 0xfc00 ^ 0xd800) | (l3 & 0xfc00 ^ 0xdc00)) == 0 &&
+                    (Emojis.symbolOf(Character.toCodePoint(h0, l0)) |
+                     Emojis.symbolOf(Character.toCodePoint(h1, l1)) |
+                     Emojis.symbolOf(Character.toCodePoint(h2, l2)) |
+                     Emojis.symbolOf(Character.toCodePoint(h3, l3))) >>> 10 == 0) {
+                    p += 8;
+                    continue;
+                }
+            }
+
+            // Slow path: padding, BMP code points, errors and groups which cross the end of the block
+            int start = p;
+            boolean padding = false;
+            for (int i = 0; i < 4; ++i) {
+                if (p == end) {
+                    return start;
+                }
+
+                int c = src[p];
+                int n = 1;
+                if (Character.isHighSurrogate((char) c)) {
+                    if (p + 1 == end) {
+                        return start;
+                    }
+                    if (Character.isLowSurrogate(src[p + 1])) {
+                        c = Character.toCodePoint((char) c, src[p + 1]);
+                        n = 2;
+                    }
+                }
+
+                int symbol = Emojis.symbolOf(c);
+                if (symbol < 0 && ignored != null && Arrays.binarySearch(ignored, c) >= 0) {
+                    if (i == 0) {
+                        // ignored code points between the groups are consumed right away
+                        start = p + n;
+                    } else if (p + n - start > MAX_GROUP_SPAN) {
+                        // the group would not fit into a window
+                        return ~p;
+                    }
+                    p += n;
+                    --i;
+                    continue;
+                }
+                if (symbol < 0 ||
+                    symbol <= 0x3ff && padding ||
+                    symbol == Emojis.SYMBOL_PADDING && i == 0 ||
+                    (symbol & Emojis.SYMBOL_PADDING_4) != 0 && (i != 3 || padding)) {
+                    return ~p;
+                }
+                padding |= symbol == Emojis.SYMBOL_PADDING;
+                p += n;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes which the provided UTF-8 representation of Ecoji-encoded data decodes to.
+     *
+     * <p>The same considerations as for {@link #decodedLength(CharSequence)} apply.</p>
+     */
+    static long decodedUtf8Length(byte[] encoded) {
+        return decodedUtf8Length(encoded, 0);
+    }
+
+    /**
+     * Works like {@link #decodedUtf8Length(byte[])} for an input which ends with {@code tail}, where
+     * {@code offset} is the position of {@code tail} in the input; {@code tail} must contain at least the last
+     * 16 bytes of the input, or all of it.
+     */
+    static long decodedUtf8Length(byte[] tail, long offset) {
+        int start = tail.length;
+        int s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 3; i >= 0 && start > 0; --i) {
+            // find the start of the last sequence, and decode it leniently; invalid input will be rejected
+            // during decoding anyway
+            int end = start;
+            do {
+                --start;
+            } while (start > 0 && end - start < 4 && (tail[start] & 0xc0) == 0x80);
+
+            int c = tail[start] & (end - start == 1 ? 0x7f : 0x7f >> (end - start));
+            for (int k = start + 1; k < end; ++k) {
+                c = c << 6 | tail[k] & 0x3f;
+            }
+            switch (i) {
+                case 3:
+                    s3 = Emojis.symbolOf(c);
+                    break;
+                case 2:
+                    s2 = Emojis.symbolOf(c);
+                    break;
+                case 1:
+                    s1 = Emojis.symbolOf(c);
+                    break;
+                default:
+            }
+        }
+
+        if (start == tail.length) {
+            return 0;
+        }
+        return (offset + start) / EcojiEncoding.MAX_GROUP_UTF8_BYTES * 5 + groupLength(s1, s2, s3);
+    }
+
+    /**
+     * Decodes {@code length} bytes starting at {@code byteOffset} of the data encoded by {@code encoded}, reading
+     * only the groups which contain them.
+     *
+     * <p>The input must be laid out as the encoder produces it: a single encoded sequence, where every group but
+     * the last one takes {@code MAX_GROUP_CHARS} chars. Only the last group and the groups of the range are read,
+     * so a different layout is only detected when it makes them invalid.</p>
+     */
+    static byte[] decodeRange(CharSequence encoded, long byteOffset, int length) throws IOException {
+        checkRange(decodedLength(encoded), byteOffset, length);
+        if (length == 0) {
+            return new byte[0];
+        }
+
+        long firstGroup = byteOffset / 5;
+        long lastGroup = (byteOffset + length - 1) / 5;
+        int start = (int) (firstGroup * EcojiEncoding.MAX_GROUP_CHARS);
+        int end = (int) Math.min((lastGroup + 1) * EcojiEncoding.MAX_GROUP_CHARS, encoded.length());
+
+        char[] window = new char[end - start];
+        if (encoded instanceof String) {
+            ((String) encoded).getChars(start, end, window, 0);
+        } else {
+            for (int i = start; i < end; ++i) {
+                window[i - start] = encoded.charAt(i);
+            }
+        }
+
+        EcojiDecoding decoding = new EcojiDecoding();
+        byte[] groups = new byte[(int) (lastGroup - firstGroup + 1) * 5];
+        CoderResult result = decoding.decodeBlock(window, 0, window.length, groups, 0, groups.length);
+        if (result.isMalformed()) {
+            throw decoding.malformedInputException(start);
+        }
+        return sliceRange(groups, decoding.dstPos, byteOffset - firstGroup * 5, length);
     }
 
-    private static int checkCodePoint(int c) throws IOException {
-        if (Emojis.isValidAlphabetChar(c) || c == -1) {  // pass EOF through
-            return c;
+    /**
+     * Works like {@link #decodeRange(CharSequence, long, int)} for the UTF-8 representation of Ecoji-encoded data
+     * between the position and the limit of {@code encoded}, where every group but the last one takes
+     * {@code MAX_GROUP_UTF8_BYTES} bytes. The position of the buffer is not changed.
+     */
+    static byte[] decodeRangeUtf8(ByteBuffer encoded, long byteOffset, int length) throws IOException {
+        ByteBuffer buffer = encoded.duplicate();
+        int size = buffer.remaining();
+        byte[] tail = new byte[Math.min(EcojiEncoding.MAX_GROUP_UTF8_BYTES, size)];
+        buffer.position(buffer.limit() - tail.length);
+        buffer.get(tail);
+        checkRange(decodedUtf8Length(tail, size - tail.length), byteOffset, length);
+        if (length == 0) {
+            return new byte[0];
+        }
+
+        long firstGroup = byteOffset / 5;
+        long lastGroup = (byteOffset + length - 1) / 5;
+        int start = (int) (firstGroup * EcojiEncoding.MAX_GROUP_UTF8_BYTES);
+        int end = (int) Math.min((lastGroup + 1) * EcojiEncoding.MAX_GROUP_UTF8_BYTES, size);
+
+        byte[] window;
+        int windowOff;
+        if (buffer.hasArray()) {
+            window = buffer.array();
+            windowOff = buffer.arrayOffset() + encoded.position();
         } else {
-            throw new IOException("Input code point " + c + " is not a part of the Ecoji alphabet");
+            window = new byte[end - start];
+            windowOff = -start;
+            buffer.position(encoded.position() + start);
+            buffer.get(window);
         }
+
+        EcojiDecoding decoding = new EcojiDecoding();
+        byte[] groups = new byte[(int) (lastGroup - firstGroup + 1) * 5];
+        CoderResult result = decoding.decodeBlockUtf8(window, windowOff + start, windowOff + end,
+                                                      groups, 0, groups.length);
+        if (result.isMalformed()) {
+            // the positions of the decoding are relative to the window
+            throw decoding.malformedUtf8InputException(-windowOff);
+        }
+        return sliceRange(groups, decoding.dstPos, byteOffset - firstGroup * 5, length);
     }
 
-    private static int readCodePoint(Reader source) throws IOException {
-        int high = source.read();
-        if (high == -1) {
-            return -1;
+    private static void checkRange(long decodedLength, long byteOffset, int length) {
+        if (byteOffset < 0 || length < 0 || byteOffset > decodedLength - length) {
+            throw new IndexOutOfBoundsException("Range [" + byteOffset + ", " + byteOffset + " + " + length +
+                                                ") is out of bounds for decoded length " + decodedLength);
         }
-        char highChar = (char) high;
-        if (Character.isHighSurrogate(highChar)) {
-            int low = source.read();
-            if (low == -1) {
-                throw new IOException("Failed to read low surrogae");
+    }
+
+    // Cuts the range out of the decoded groups; fewer bytes than expected mean that a group in the middle was
+    // padded or incomplete, i.e. that the input is not laid out as a single encoded sequence
+    private static byte[] sliceRange(byte[] groups, int decoded, long skip, int length) throws IOException {
+        if (decoded < skip + length) {
+            throw new IOException("Input is not a single Ecoji-encoded sequence, the range cannot be located");
+        }
+        return Arrays.copyOfRange(groups, (int) skip, (int) skip + length);
+    }
+
+    /**
+     * Decodes a batch of values into one array. The values are the ranges of the input between consecutive
+     * {@code offsets}, and every one of them must be complete on its own. The output is sized from the lengths of
+     * the values, which bound the decoded lengths since every group takes at least 8 chars or 16 UTF-8 bytes per
+     * 5 decoded bytes, and is trimmed at the end.
+     */
+    static byte[] decodeBatch(char[] encoded, int[] offsets, int[] decodedOffsets, int[] ignored) throws IOException {
+        EcojiEncoding.checkBatchOffsets(encoded.length, offsets);
+        int count = offsets.length - 1;
+        EcojiEncoding.checkBatchIndex(count, decodedOffsets);
+
+        long bound = 0;
+        for (int i = 0; i < count; ++i) {
+            bound += (offsets[i + 1] - offsets[i] + EcojiEncoding.MAX_GROUP_CHARS - 1L) /
+                     EcojiEncoding.MAX_GROUP_CHARS * 5;
+        }
+
+        byte[] out = new byte[EcojiEncoding.arraySize(bound)];
+        EcojiDecoding decoding = new EcojiDecoding(ignored);
+        int dp = 0;
+        decodedOffsets[0] = 0;
+        for (int i = 0; i < count; ++i) {
+            CoderResult result = decoding.decodeBlock(encoded, offsets[i], offsets[i + 1], out, dp, out.length);
+            if (result.isMalformed()) {
+                throw decoding.malformedInputException(0);
+            }
+            if (!result.isUnderflow() || decoding.srcPos < offsets[i + 1]) {
+                throw incompleteBatchValueException(i);
+            }
+            dp = decoding.dstPos;
+            decodedOffsets[i + 1] = dp;
+        }
+
+        return dp == out.length ? out : Arrays.copyOf(out, dp);
+    }
+
+    /**
+     * Works like {@link #decodeBatch(char[], int[], int[], int[])} for the UTF-8 representation of the encoded
+     * values.
+     */
+    static byte[] decodeBatchUtf8(byte[] encoded, int[] offsets, int[] decodedOffsets, int[] ignored)
+            throws IOException {
+        EcojiEncoding.checkBatchOffsets(encoded.length, offsets);
+        int count = offsets.length - 1;
+        EcojiEncoding.checkBatchIndex(count, decodedOffsets);
+
+        long bound = 0;
+        for (int i = 0; i < count; ++i) {
+            bound += (offsets[i + 1] - offsets[i] + EcojiEncoding.MAX_GROUP_UTF8_BYTES - 1L) /
+                     EcojiEncoding.MAX_GROUP_UTF8_BYTES * 5;
+        }
+
+        byte[] out = new byte[EcojiEncoding.arraySize(bound)];
+        EcojiDecoding decoding = new EcojiDecoding(ignored);
+        int dp = 0;
+        decodedOffsets[0] = 0;
+        for (int i = 0; i < count; ++i) {
+            CoderResult result = decoding.decodeBlockUtf8(encoded, offsets[i], offsets[i + 1], out, dp, out.length);
+            if (result.isMalformed()) {
+                throw decoding.malformedUtf8InputException(0);
+            }
+            if (!result.isUnderflow() || decoding.srcPos < offsets[i + 1]) {
+                throw incompleteBatchValueException(i);
+            }
+            dp = decoding.dstPos;
+            decodedOffsets[i + 1] = dp;
+        }
+
+        return dp == out.length ? out : Arrays.copyOf(out, dp);
+    }
+
+    private static IOException incompleteBatchValueException(int index) {
+        return new IOException("Unexpected end of value " + index + " of the batch, the number of its Unicode code " +
+                               "points is not a multiple of 4");
+    }
+
+    static CoderResult decode(CharBuffer src, ByteBuffer dst, boolean endOfInput, int[] ignored) {
+        return new EcojiDecoding(ignored).decodeBuffer(src, dst, endOfInput);
+    }
+
+    // Decodes directly from and into the backing arrays when they are accessible, and through bounded
+    // windows otherwise
+    private CoderResult decodeBuffer(CharBuffer src, ByteBuffer dst, boolean endOfInput) {
+        char[] inWindow = null;
+        byte[] outWindow = null;
+
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), BLOCK_SIZE);
+            boolean last = n == src.remaining();
+
+            char[] in;
+            int inOff;
+            if (src.hasArray()) {
+                in = src.array();
+                inOff = src.arrayOffset() + src.position();
+            } else {
+                if (inWindow == null) {
+                    inWindow = new char[n];
+                }
+                int position = src.position();
+                src.get(inWindow, 0, n);
+                src.position(position);
+                in = inWindow;
+                inOff = 0;
+            }
+
+            byte[] out;
+            int outOff;
+            int outLen;
+            if (dst.hasArray()) {
+                out = dst.array();
+                outOff = dst.arrayOffset() + dst.position();
+                outLen = dst.remaining();
+            } else {
+                outLen = Math.min(dst.remaining(), n / 4 * 5);
+                if (outWindow == null || outWindow.length < outLen) {
+                    outWindow = new byte[outLen];
+                }
+                out = outWindow;
+                outOff = 0;
+            }
+
+            CoderResult result = decodeBlock(in, inOff, inOff + n, out, outOff, outOff + outLen);
+
+            src.position(src.position() + srcPos - inOff);
+            if (dst.hasArray()) {
+                dst.position(dst.position() + dstPos - outOff);
+            } else {
+                dst.put(out, 0, dstPos);
+            }
+
+            if (!result.isUnderflow()) {
+                return result;
+            }
+            if (last && src.hasRemaining()) {
+                // an incomplete group at the end of the input
+                return endOfInput ? CoderResult.malformedForLength(src.remaining()) : CoderResult.UNDERFLOW;
+            }
+        }
+
+        return CoderResult.UNDERFLOW;
+    }
+
+    // Input and output positions after the last decodeBlock() call
+    int srcPos;
+    int dstPos;
+
+    // The code point which made the last decodeBlock() call return a malformed result
+    int malformedCodePoint;
+    // The start of the group which contains this code point; srcPos is the start of the code point itself
+    int groupPos;
+
+    // Sorted code points which are skipped wherever they appear in the input, or null if the decoding is strict
+    private final int[] ignored;
+
+    EcojiDecoding() {
+        this(null);
+    }
+
+    EcojiDecoding(int[] ignored) {
+        this.ignored = ignored;
+    }
+
+    /**
+     * Decodes complete groups of chars from {@code src[srcOff, srcEnd)} into {@code dst[dstOff, dstEnd)}.
+     *
+     * <p>Afterwards {@link #srcPos} and {@link #dstPos} point right after the last decoded group. The result is
+     * {@link CoderResult#UNDERFLOW} if there are no complete groups left in the input, in which case the remaining
+     * chars (if any) should be decoded together with the following input, {@link CoderResult#OVERFLOW} if there
+     * is not enough room in the output for the next group, and a malformed result if the next group contains
+     * a code point outside of the alphabet or an invalid surrogate pair. In the latter case {@link #srcPos} points
+     * to the invalid code point, whose length in chars is the length of the result.</p>
+     *
+     * <p>Ignored code points are skipped; they are only looked up when a code point is not a part of the alphabet,
+     * so they do not slow down the decoding of the data emojis.</p>
+     */
+    CoderResult decodeBlock(char[] src, int srcOff, int srcEnd, byte[] dst, int dstOff, int dstEnd) {
+        int sp = srcOff;
+        int dp = dstOff;
+
+        if (EcojiVector.ENABLED) {
+            int groups = EcojiVector.decode(src, sp, srcEnd, dst, dp, dstEnd);
+            sp += groups * EcojiEncoding.MAX_GROUP_CHARS;
+            dp += groups * 5;
+        }
+
+        while (true) {
+            // Fast path: all four code points are surrogate pairs which encode data symbols
+            if (srcEnd - sp >= 8 && dstEnd - dp >= 5) {
+                char h0 = src[sp], l0 = src[sp + 1],
+                     h1 = src[sp + 2], l1 = src[sp + 3],
+                     h2 = src[sp + 4], l2 = src[sp + 5],
+                     h3 = src[sp + 6], l3 = src[sp + 7];
+
+                if (((h0 & 0xfc00 ^ 0xd800) | (l0 & 0xfc00 ^ 0xdc00) |
+                     (h1 & 0xfc00 ^ 0xd800) | (l1 & 0xfc00 ^ 0xdc00) |
+                     (h2 & 0xfc00 ^ 0xd800) | (l2 & 0xfc00 ^ 0xdc00) |
+                     (h3 & 0xfc00 ^ 0xd800) | (l3 & 0xfc00 ^ 0xdc00)) == 0) {
+                    int s0 = Emojis.symbolOf(Character.toCodePoint(h0, l0)),
+                        s1 = Emojis.symbolOf(Character.toCodePoint(h1, l1)),
+                        s2 = Emojis.symbolOf(Character.toCodePoint(h2, l2)),
+                        s3 = Emojis.symbolOf(Character.toCodePoint(h3, l3));
+
+                    if ((s0 | s1 | s2 | s3) >>> 10 == 0) {
+                        dst[dp] = (byte) (s0 >> 2);
+                        dst[dp + 1] = (byte) ((s0 & 0x3) << 6 | s1 >> 4);
+                        dst[dp + 2] = (byte) ((s1 & 0xf) << 4 | s2 >> 6);
+                        dst[dp + 3] = (byte) ((s2 & 0x3f) << 2 | s3 >> 8);
+                        dst[dp + 4] = (byte) s3;
+                        sp += 8;
+                        dp += 5;
+                        continue;
+                    }
+                }
+            }
+
+            // Slow path: padding, BMP code points, errors and groups which cross the end of the input
+            int p = sp;
+            int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            for (int i = 0; i < 4; ++i) {
+                if (p == srcEnd) {
+                    return finish(sp, dp, CoderResult.UNDERFLOW);
+                }
+
+                int c = src[p];
+                int n = 1;
+                if (Character.isHighSurrogate((char) c)) {
+                    if (p + 1 == srcEnd) {
+                        return finish(sp, dp, CoderResult.UNDERFLOW);
+                    }
+                    if (Character.isLowSurrogate(src[p + 1])) {
+                        c = Character.toCodePoint((char) c, src[p + 1]);
+                        n = 2;
+                    }
+                }
+
+                int symbol = Emojis.symbolOf(c);
+                if (symbol < 0) {
+                    if (ignored != null && Arrays.binarySearch(ignored, c) >= 0) {
+                        if (i == 0) {
+                            // ignored code points between the groups are consumed right away
+                            sp = p + n;
+                        } else if (p + n - sp > MAX_GROUP_SPAN) {
+                            malformedCodePoint = GROUP_TOO_LONG;
+                            return malformed(sp, p, dp, n);
+                        }
+                        p += n;
+                        --i;
+                        continue;
+                    }
+                    malformedCodePoint = c;
+                    return malformed(sp, p, dp, n);
+                }
+
+                switch (i) {
+                    case 0:
+                        s0 = symbol;
+                        break;
+                    case 1:
+                        s1 = symbol;
+                        break;
+                    case 2:
+                        s2 = symbol;
+                        break;
+                    default:
+                        s3 = symbol;
+                }
+                p += n;
+            }
+
+            if (dstEnd - dp < groupLength(s1, s2, s3)) {
+                return finish(sp, dp, CoderResult.OVERFLOW);
+            }
+
+            dp += decodeGroup(s0, s1, s2, s3, dst, dp);
+            sp = p;
+        }
+    }
+
+    /**
+     * Decodes complete groups of UTF-8 encoded code points from {@code src[srcOff, srcEnd)} into
+     * {@code dst[dstOff, dstEnd)}.
+     *
+     * <p>This works exactly like {@link #decodeBlock(char[], int, int, byte[], int, int)}, except that the input
+     * is UTF-8. Malformed UTF-8 sequences, including overlong encodings and encoded surrogates, produce
+     * a malformed result, in which case {@link #malformedCodePoint} is -1.</p>
+     */
+    CoderResult decodeBlockUtf8(byte[] src, int srcOff, int srcEnd, byte[] dst, int dstOff, int dstEnd) {
+        int sp = srcOff;
+        int dp = dstOff;
+
+        if (EcojiVector.ENABLED) {
+            int groups = EcojiVector.decodeUtf8(src, sp, srcEnd, dst, dp, dstEnd);
+            sp += groups * EcojiEncoding.MAX_GROUP_UTF8_BYTES;
+            dp += groups * 5;
+        }
+
+        while (true) {
+            // Fast path: all four code points are 4-byte sequences which encode data symbols; since all data
+            // emojis are outside of the BMP, overlong sequences can't be mistaken for them
+            if (srcEnd - sp >= 16 && dstEnd - dp >= 5) {
+                int s0 = symbolOfUtf8(src[sp], src[sp + 1], src[sp + 2], src[sp + 3]),
+                    s1 = symbolOfUtf8(src[sp + 4], src[sp + 5], src[sp + 6], src[sp + 7]),
+                    s2 = symbolOfUtf8(src[sp + 8], src[sp + 9], src[sp + 10], src[sp + 11]),
+                    s3 = symbolOfUtf8(src[sp + 12], src[sp + 13], src[sp + 14], src[sp + 15]);
+
+                if ((s0 | s1 | s2 | s3) >>> 10 == 0) {
+                    dst[dp] = (byte) (s0 >> 2);
+                    dst[dp + 1] = (byte) ((s0 & 0x3) << 6 | s1 >> 4);
+                    dst[dp + 2] = (byte) ((s1 & 0xf) << 4 | s2 >> 6);
+                    dst[dp + 3] = (byte) ((s2 & 0x3f) << 2 | s3 >> 8);
+                    dst[dp + 4] = (byte) s3;
+                    sp += 16;
+                    dp += 5;
+                    continue;
+                }
+            }
+
+            // Slow path: padding, 3-byte sequences, errors and groups which cross the end of the input
+            int p = sp;
+            int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            for (int i = 0; i < 4; ++i) {
+                if (p == srcEnd) {
+                    return finish(sp, dp, CoderResult.UNDERFLOW);
+                }
+
+                int b0 = src[p] & 0xff;
+                int n;
+                int min;
+                if (b0 < 0x80) {
+                    n = 1;
+                    min = 0;
+                } else if (b0 >= 0xc2 && b0 < 0xe0) {
+                    n = 2;
+                    min = 0x80;
+                } else if (b0 >= 0xe0 && b0 < 0xf0) {
+                    n = 3;
+                    min = 0x800;
+                } else if (b0 >= 0xf0 && b0 < 0xf5) {
+                    n = 4;
+                    min = 0x10000;
+                } else {
+                    malformedCodePoint = -1;
+                    return malformed(sp, p, dp, 1);
+                }
+
+                int c = n == 1 ? b0 : b0 & (0x7f >> n);
+                for (int k = 1; k < n; ++k) {
+                    if (p + k == srcEnd) {
+                        return finish(sp, dp, CoderResult.UNDERFLOW);
+                    }
+                    int b = src[p + k] & 0xff;
+                    if ((b & 0xc0) != 0x80) {
+                        malformedCodePoint = -1;
+                        return malformed(sp, p, dp, k);
+                    }
+                    c = c << 6 | b & 0x3f;
+                }
+
+                if (c < min || c > Character.MAX_CODE_POINT ||
+                    c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    malformedCodePoint = -1;
+                    return malformed(sp, p, dp, n);
+                }
+
+                int symbol = Emojis.symbolOf(c);
+                if (symbol < 0) {
+                    if (ignored != null && Arrays.binarySearch(ignored, c) >= 0) {
+                        if (i == 0) {
+                            // ignored code points between the groups are consumed right away
+                            sp = p + n;
+                        } else if (p + n - sp > MAX_GROUP_SPAN) {
+                            malformedCodePoint = GROUP_TOO_LONG;
+                            return malformed(sp, p, dp, n);
+                        }
+                        p += n;
+                        --i;
+                        continue;
+                    }
+                    malformedCodePoint = c;
+                    return malformed(sp, p, dp, n);
+                }
+
+                switch (i) {
+                    case 0:
+                        s0 = symbol;
+                        break;
+                    case 1:
+                        s1 = symbol;
+                        break;
+                    case 2:
+                        s2 = symbol;
+                        break;
+                    default:
+                        s3 = symbol;
+                }
+                p += n;
+            }
+
+            if (dstEnd - dp < groupLength(s1, s2, s3)) {
+                return finish(sp, dp, CoderResult.OVERFLOW);
             }
-            char lowChar = (char) low;
-            return Character.toCodePoint(highChar, lowChar);
+
+            dp += decodeGroup(s0, s1, s2, s3, dst, dp);
+            sp = p;
+        }
+    }
+
+    // Returns the symbol of a 4-byte UTF-8 sequence, or -1 if it is not a valid 4-byte sequence
+    private static int symbolOfUtf8(byte b0, byte b1, byte b2, byte b3) {
+        if ((b0 & 0xf8) != 0xf0 || ((b1 & 0xc0) ^ 0x80 | (b2 & 0xc0) ^ 0x80 | (b3 & 0xc0) ^ 0x80) != 0) {
+            return -1;
+        }
+        return Emojis.symbolOf((b0 & 0x07) << 18 | (b1 & 0x3f) << 12 | (b2 & 0x3f) << 6 | b3 & 0x3f);
+    }
+
+    private CoderResult malformed(int groupPos, int srcPos, int dstPos, int length) {
+        this.groupPos = groupPos;
+        return finish(srcPos, dstPos, CoderResult.malformedForLength(length));
+    }
+
+    private CoderResult finish(int srcPos, int dstPos, CoderResult result) {
+        this.srcPos = srcPos;
+        this.dstPos = dstPos;
+        return result;
+    }
+
+    static IOException incompleteInputException() {
+        return new IOException("Unexpected end of data, the number of input Unicode code points " +
+                               "is not a multiple of 4");
+    }
+
+    /**
+     * Creates an exception describing the last malformed result; {@code offset} is the number of chars of the input
+     * which were consumed before the block passed to {@link #decodeBlock}.
+     */
+    IOException malformedInputException(long offset) {
+        if (malformedCodePoint == GROUP_TOO_LONG) {
+            return groupTooLongException("position " + (offset + srcPos));
+        }
+        return new IOException("Input code point " + malformedCodePoint + " at position " + (offset + srcPos) +
+                               " is not a part of the Ecoji alphabet");
+    }
+
+    /**
+     * Creates an exception describing the last malformed result of {@link #decodeBlockUtf8}; {@code offset} is
+     * the number of bytes of the input which were consumed before the block passed to it.
+     */
+    IOException malformedUtf8InputException(long offset) {
+        if (malformedCodePoint == GROUP_TOO_LONG) {
+            return groupTooLongException("byte offset " + (offset + srcPos));
+        } else if (malformedCodePoint < 0) {
+            return new IOException("Malformed UTF-8 sequence at byte offset " + (offset + srcPos));
+        } else {
+            return new IOException("Input code point " + malformedCodePoint + " at byte offset " +
+                                   (offset + srcPos) + " is not a part of the Ecoji alphabet");
+        }
+    }
+
+    private static IOException groupTooLongException(String position) {
+        return new IOException("Too many ignored code points inside a group at " + position + ", a group may span " +
+                               "at most " + MAX_GROUP_SPAN + " chars or bytes");
+    }
+
+    /**
+     * Decodes a group of four symbols, as returned by {@link Emojis#symbolOf(int)}, into {@code dst} and returns
+     * the number of bytes written, which is less than 5 if the group is padded.
+     */
+    static int decodeGroup(int s0, int s1, int s2, int s3, byte[] dst, int off) {
+        if ((s0 | s1 | s2 | s3) <= 0x3ff) {
+            dst[off] = (byte) (s0 >> 2);
+            dst[off + 1] = (byte) ((s0 & 0x3) << 6 | s1 >> 4);
+            dst[off + 2] = (byte) ((s1 & 0xf) << 4 | s2 >> 6);
+            dst[off + 3] = (byte) ((s2 & 0x3f) << 2 | s3 >> 8);
+            dst[off + 4] = (byte) s3;
+            return 5;
+        }
+
+        int bits1 = dataBits(s0),
+            bits2 = dataBits(s1),
+            bits3 = dataBits(s2),
+            bits4 = (s3 & Emojis.SYMBOL_PADDING_4) != 0 ? (s3 & 0x3) << 8 : dataBits(s3);
+
+        int len = groupLength(s1, s2, s3);
+        switch (len) {
+            case 5:
+                dst[off + 4] = (byte) (bits4 & 0xff);
+            case 4:
+                dst[off + 3] = (byte) (((bits3 & 0x3f) << 2) | (bits4 >> 8));
+            case 3:
+                dst[off + 2] = (byte) (((bits2 & 0xf) << 4) | (bits3 >> 6));
+            case 2:
+                dst[off + 1] = (byte) (((bits1 & 0x3) << 6) | (bits2 >> 4));
+            default:
+                dst[off] = (byte) (bits1 >> 2);
+        }
+        return len;
+    }
+
+    /**
+     * Returns the number of bytes encoded by a group with the given last three symbols.
+     */
+    static int groupLength(int s1, int s2, int s3) {
+        if (s1 == Emojis.SYMBOL_PADDING) {
+            return 1;
+        } else if (s2 == Emojis.SYMBOL_PADDING) {
+            return 2;
+        } else if (s3 == Emojis.SYMBOL_PADDING) {
+            return 3;
+        } else if ((s3 & Emojis.SYMBOL_PADDING_4) != 0) {
+            return 4;
         } else {
-            return high;
+            return 5;
         }
     }
+
+    // Padding symbols which are not in the last position of a group are decoded as zero bits
+    private static int dataBits(int symbol) {
+        return symbol <= 0x3ff ? symbol : 0;
+    }
 }
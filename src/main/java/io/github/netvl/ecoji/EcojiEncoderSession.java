@@ -0,0 +1,342 @@
+package io.github.netvl.ecoji;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+
+/**
+ * A reusable encoder for small inputs which works directly on caller-owned arrays.
+ *
+ * <p>Use {@link Ecoji.Encoder#newSession()} to create a session. Unlike the {@code readFrom()} methods of
+ * {@link Ecoji.Encoder}, which allocate an intermediate object and internal buffers for every input, the methods
+ * of this class encode straight into the provided arrays and do not allocate anything, which makes them suitable
+ * for hot paths which encode many short messages, like identifiers or cache keys.</p>
+ *
+ * <p>Sessions are not thread-safe. They are cheap to create, and are meant to be kept per thread, e.g. in
+ * a {@link ThreadLocal}, or in a pool.</p>
+ *
+ * <p>For example:</p>
+ *
+ * <pre>
+ *   EcojiEncoderSession session = Ecoji.getEncoder().newSession();
+ *   char[] chars = new char[(int) Ecoji.getEncoder().encodedLength(id.length)];
+ *   int n = session.encode(id, 0, id.length, chars, 0);
+ * </pre>
+ *
+ * <p>A session can also encode a stream of bytes which arrives in arbitrary fragments, e.g. in an event loop,
+ * with {@link #encode(ByteBuffer, CharBuffer, boolean)} and {@link #encodeUtf8(ByteBuffer, ByteBuffer, boolean)}.
+ * These methods work like {@link java.nio.charset.CharsetEncoder#encode(CharBuffer, ByteBuffer, boolean)}, except
+ * that the bytes of an incomplete group are kept in the session until the rest of the group arrives, so the input
+ * buffers are always consumed completely unless the output buffer is full.</p>
+ *
+ * <p>If the encoder which created the session {@linkplain Ecoji.AbstractEncoder#wrapAt(int, String) wraps}
+ * the output, so do the methods of the session: every call of the array-based methods starts a new line, while
+ * the incremental methods continue the current line across the calls until the end of the input.</p>
+ */
+public final class EcojiEncoderSession {
+    // Scratch buffer for encodeToString(), kept between the calls unless it grows too large
+    private static final int MAX_KEPT_SCRATCH = 8192;
+    private char[] scratch = new char[0];
+
+    // Incremental encoding state: the window starts with the bytes of an incomplete group carried over from
+    // the previous calls; the windows are allocated on the first incremental call
+    private static final int WINDOW = 4095;
+    private byte[] in;
+    private char[] out;
+    private byte[] outUtf8;
+    private int carried;
+
+    // Line wrapping of the array-based calls, each of which starts a new line, and of the incremental input, or
+    // null if the output is not wrapped
+    private final EcojiWrapping wrapping;
+    private final EcojiWrapping streamWrapping;
+
+    EcojiEncoderSession(EcojiWrapping wrapping) {
+        this.wrapping = wrapping;
+        this.streamWrapping = wrapping != null ? wrapping.start() : null;
+    }
+
+    /**
+     * Encodes {@code len} bytes of {@code src} starting at {@code off}, writing the Ecoji-encoded data to
+     * {@code dst} starting at {@code dstOff}.
+     *
+     * <p>The number of chars written is at most {@link Ecoji.AbstractEncoder#encodedLength(long)} of the encoder
+     * which created this session for {@code len}.</p>
+     *
+     * @param src An array with bytes which should be encoded as emojis.
+     *
+     * @param off The index of the first byte to encode.
+     *
+     * @param len The number of bytes to encode.
+     *
+     * @param dst An array which will accept the Ecoji-encoded data.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of chars written to {@code dst}.
+     *
+     * @throws IndexOutOfBoundsException If the specified ranges are out of the bounds of the arrays.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the encoded data.
+     */
+    public int encode(byte[] src, int off, int len, char[] dst, int dstOff) {
+        checkBounds(src.length, off, len);
+        checkBounds(dst.length, dstOff, 0);
+        if (dst.length - dstOff < encodedChars(src, off, len)) {
+            throw new IllegalArgumentException("Output array is too small for the encoded data");
+        }
+
+        if (wrapping != null) {
+            wrapping.restart();
+            return wrapping.encodeBlock(src, off, len, dst, dstOff);
+        }
+        return EcojiEncoding.encodeBlock(src, off, len, dst, dstOff);
+    }
+
+    /**
+     * Encodes {@code len} bytes of {@code src} starting at {@code off}, writing the UTF-8 representation of
+     * the Ecoji-encoded data to {@code dst} starting at {@code dstOff}.
+     *
+     * <p>The number of bytes written is at most {@link Ecoji.AbstractEncoder#encodedUtf8Length(long)} of
+     * the encoder which created this session for {@code len}.</p>
+     *
+     * @param src An array with bytes which should be encoded as emojis.
+     *
+     * @param off The index of the first byte to encode.
+     *
+     * @param len The number of bytes to encode.
+     *
+     * @param dst An array which will accept the UTF-8 representation of the Ecoji-encoded data.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of bytes written to {@code dst}.
+     *
+     * @throws IndexOutOfBoundsException If the specified ranges are out of the bounds of the arrays.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the encoded data.
+     */
+    public int encodeUtf8(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        checkBounds(src.length, off, len);
+        checkBounds(dst.length, dstOff, 0);
+        int last = len == 0 ? 0 : src[off + len - 1];
+        long size = wrapping != null
+                    ? wrapping.encodedUtf8Bytes(len, last)
+                    : EcojiEncoding.encodedUtf8Bytes(len, last);
+        if (dst.length - dstOff < size) {
+            throw new IllegalArgumentException("Output array is too small for the encoded data");
+        }
+
+        if (wrapping != null) {
+            wrapping.restart();
+            return wrapping.encodeBlockUtf8(src, off, len, dst, dstOff);
+        }
+        return EcojiEncoding.encodeBlockUtf8(src, off, len, dst, dstOff);
+    }
+
+    /**
+     * Encodes {@code len} bytes of {@code src} starting at {@code off}, returning the Ecoji-encoded data as
+     * a {@link String}.
+     *
+     * <p>The data is encoded into a buffer owned by this session, so the resulting string is the only object
+     * allocated for short inputs.</p>
+     *
+     * @param src An array with bytes which should be encoded as emojis.
+     *
+     * @param off The index of the first byte to encode.
+     *
+     * @param len The number of bytes to encode.
+     *
+     * @return A {@link String} containing the base-1024 representation of the input.
+     *
+     * @throws IndexOutOfBoundsException If the specified range is out of the bounds of the array.
+     */
+    public String encodeToString(byte[] src, int off, int len) {
+        checkBounds(src.length, off, len);
+
+        int size = EcojiEncoding.arraySize(encodedChars(src, off, len));
+        char[] buffer = scratch;
+        if (buffer.length < size) {
+            buffer = new char[size];
+            if (size <= MAX_KEPT_SCRATCH) {
+                scratch = buffer;
+            }
+        }
+
+        return new String(buffer, 0, encode(src, off, len, buffer, 0));
+    }
+
+    private long encodedChars(byte[] src, int off, int len) {
+        int last = len == 0 ? 0 : src[off + len - 1];
+        return wrapping != null ? wrapping.encodedChars(len, last) : EcojiEncoding.encodedChars(len, last);
+    }
+
+    /**
+     * Encodes bytes from {@code src} into {@code dst}, keeping the bytes of an incomplete group in this session
+     * until the next call.
+     *
+     * <p>All remaining bytes of {@code src} are consumed, unless {@code dst} does not have room for the next
+     * group; in that case {@link CoderResult#OVERFLOW} is returned, and the call should be repeated with the same
+     * input once there is more room in the output. The method never blocks.</p>
+     *
+     * <p>When {@code endOfInput} is {@code true}, the bytes kept in the session are encoded as the final padded
+     * group, after which the session can be used for another input. Note that a padded group must be the last
+     * one in the output, so {@code endOfInput} must only be set on the last call for the input.</p>
+     *
+     * @param src A buffer with the next bytes of the input.
+     *
+     * @param dst A buffer which will accept the Ecoji-encoded data.
+     *
+     * @param endOfInput Whether {@code src} contains the last bytes of the input.
+     *
+     * @return {@link CoderResult#UNDERFLOW} if all of the input has been consumed, or {@link CoderResult#OVERFLOW}
+     * if there is not enough room in {@code dst} to continue.
+     */
+    public CoderResult encode(ByteBuffer src, CharBuffer dst, boolean endOfInput) {
+        return encodeIncrementally(src, dst, null, endOfInput);
+    }
+
+    /**
+     * Encodes bytes from {@code src} into the UTF-8 representation of Ecoji-encoded data in {@code dst}, keeping
+     * the bytes of an incomplete group in this session until the next call.
+     *
+     * <p>This method works exactly like {@link #encode(ByteBuffer, CharBuffer, boolean)}, except for
+     * the representation of the output.</p>
+     *
+     * @param src A buffer with the next bytes of the input.
+     *
+     * @param dst A buffer which will accept the UTF-8 representation of the Ecoji-encoded data.
+     *
+     * @param endOfInput Whether {@code src} contains the last bytes of the input.
+     *
+     * @return {@link CoderResult#UNDERFLOW} if all of the input has been consumed, or {@link CoderResult#OVERFLOW}
+     * if there is not enough room in {@code dst} to continue.
+     */
+    public CoderResult encodeUtf8(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+        return encodeIncrementally(src, null, dst, endOfInput);
+    }
+
+    /**
+     * Discards the bytes of an incomplete group kept by the previous calls to
+     * {@link #encode(ByteBuffer, CharBuffer, boolean)} or {@link #encodeUtf8(ByteBuffer, ByteBuffer, boolean)},
+     * so that the session can be used for another input.
+     */
+    public void reset() {
+        carried = 0;
+        if (streamWrapping != null) {
+            streamWrapping.restart();
+        }
+    }
+
+    // Exactly one of dst and utf8Dst is set
+    private CoderResult encodeIncrementally(ByteBuffer src, CharBuffer dst, ByteBuffer utf8Dst, boolean endOfInput) {
+        if (in == null) {
+            in = new byte[WINDOW];
+        }
+        boolean utf8 = dst == null;
+        int groupSize = utf8 ? EcojiEncoding.MAX_GROUP_UTF8_BYTES : EcojiEncoding.MAX_GROUP_CHARS;
+
+        while (true) {
+            int fromSrc = Math.min(src.remaining(), in.length - carried);
+            src.get(in, carried, fromSrc);
+            int available = carried + fromSrc;
+            int room = dst != null ? dst.remaining() : utf8Dst.remaining();
+
+            int groups = Math.min(available / 5, room / groupSize);
+            int used = groups * groupSize;
+            if (streamWrapping != null) {
+                groups = streamWrapping.fittingGroups(groups, groupSize, room, utf8);
+                used = groups * groupSize + streamWrapping.separatorsLength(groups * 4, utf8);
+            }
+            int len = groups * 5;
+            if (endOfInput && !src.hasRemaining() && groups == available / 5 && len < available) {
+                int last = in[available - 1];
+                int tail = utf8
+                           ? EcojiEncoding.tailUtf8Bytes(available - len, last)
+                           : EcojiEncoding.tailChars(available - len, last);
+                if (streamWrapping != null) {
+                    tail += streamWrapping.separatorsLength(groups * 4 + 4, utf8) -
+                            streamWrapping.separatorsLength(groups * 4, utf8);
+                }
+                if (room - used >= tail) {
+                    len = available;
+                }
+            }
+
+            if (len > 0) {
+                if (dst != null) {
+                    writeTo(dst, len);
+                } else {
+                    writeUtf8To(utf8Dst, len);
+                }
+            }
+
+            int left = available - len;
+            boolean complete = groups == available / 5 && (left == 0 || !endOfInput || src.hasRemaining());
+            if (!complete) {
+                // the unconsumed bytes which came from src are returned to it, the rest are kept
+                int giveBack = Math.min(left, fromSrc);
+                src.position(src.position() - giveBack);
+                carried = left - giveBack;
+                System.arraycopy(in, len, in, 0, carried);
+                return CoderResult.OVERFLOW;
+            }
+
+            carried = left;
+            System.arraycopy(in, len, in, 0, carried);
+            if (!src.hasRemaining()) {
+                if (endOfInput && streamWrapping != null) {
+                    streamWrapping.restart();
+                }
+                return CoderResult.UNDERFLOW;
+            }
+        }
+    }
+
+    private void writeTo(CharBuffer dst, int len) {
+        if (dst.hasArray()) {
+            int n = encodeWindow(len, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + n);
+        } else {
+            if (out == null) {
+                out = new char[streamWrapping != null
+                               ? streamWrapping.maxBlockChars(WINDOW)
+                               : WINDOW / 5 * EcojiEncoding.MAX_GROUP_CHARS];
+            }
+            dst.put(out, 0, encodeWindow(len, out, 0));
+        }
+    }
+
+    private void writeUtf8To(ByteBuffer dst, int len) {
+        if (dst.hasArray()) {
+            int n = encodeWindowUtf8(len, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + n);
+        } else {
+            if (outUtf8 == null) {
+                outUtf8 = new byte[streamWrapping != null
+                                   ? streamWrapping.maxBlockUtf8Bytes(WINDOW)
+                                   : WINDOW / 5 * EcojiEncoding.MAX_GROUP_UTF8_BYTES];
+            }
+            dst.put(outUtf8, 0, encodeWindowUtf8(len, outUtf8, 0));
+        }
+    }
+
+    private int encodeWindow(int len, char[] dst, int dstOff) {
+        return streamWrapping != null
+               ? streamWrapping.encodeBlock(in, 0, len, dst, dstOff)
+               : EcojiEncoding.encodeBlock(in, 0, len, dst, dstOff);
+    }
+
+    private int encodeWindowUtf8(int len, byte[] dst, int dstOff) {
+        return streamWrapping != null
+               ? streamWrapping.encodeBlockUtf8(in, 0, len, dst, dstOff)
+               : EcojiEncoding.encodeBlockUtf8(in, 0, len, dst, dstOff);
+    }
+
+    static void checkBounds(int length, int off, int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len + ") is out of bounds " +
+                                                "for length " + length);
+        }
+    }
+}
@@ -2,92 +2,617 @@ package io.github.netvl.ecoji;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.concurrent.ForkJoinPool;
 
 class EcojiEncoding {
-    static int encode(InputStream source, Writer destination) throws IOException {
-        byte[] buf = new byte[5];
+    // A multiple of 5, so that a full block always consists of complete groups
+    static final int BLOCK_SIZE = 13107 * 5;
+
+    // Each of the four code points of a group is at most a surrogate pair; since all data emojis are outside
+    // of the BMP, complete groups always take exactly this many chars
+    static final int MAX_GROUP_CHARS = 8;
+
+    // UTF-16 and UTF-8 representations of the mapping of the alphabet, see EcojiAlphabet. They are constants, so
+    // the main loops read them without any indirection; all of the alphabet emojis are outside of the BMP, which
+    // allows the loops to always write a pair of chars or four bytes per code point without checking
+    private static final char[] MAPPING_HIGH = EcojiAlphabet.V1.mappingHigh;
+    private static final char[] MAPPING_LOW = EcojiAlphabet.V1.mappingLow;
+    private static final int[] MAPPING_UTF8 = EcojiAlphabet.V1.mappingUtf8;
+
+    // Each of the four code points of a group takes at most 4 bytes in UTF-8; as with chars, complete groups always
+    // take exactly this many bytes
+    static final int MAX_GROUP_UTF8_BYTES = 16;
+
+    /**
+     * Encodes the whole stream in blocks of {@link #BLOCK_SIZE} bytes and returns the number of chars written;
+     * the wrapping, if not null, inserts line separators into the output.
+     */
+    static int encode(InputStream source, Writer destination, EcojiWrapping wrapping) throws IOException {
+        byte[] in = new byte[BLOCK_SIZE];
+        char[] out = new char[wrapping != null ? wrapping.maxBlockChars(BLOCK_SIZE) : BLOCK_SIZE / 5 * MAX_GROUP_CHARS];
         int charsWritten = 0;
 
         while (true) {
-            int n = source.read(buf);
+            int n = readBlock(source, in);
+
+            if (n > 0) {
+                int len = wrapping != null ? wrapping.encodeBlock(in, 0, n, out, 0) : encodeBlock(in, 0, n, out, 0);
+                destination.write(out, 0, len);
+                charsWritten += len;
+            }
 
-            if (n < 0) {
+            if (n < in.length) {
                 break;
             }
+        }
+
+        return charsWritten;
+    }
 
-            charsWritten += encodeChunk(buf, n, destination);
+    /**
+     * Works like {@link #encode(InputStream, Writer, EcojiWrapping)}, writing the UTF-8 representation of
+     * the encoded data and returning the number of bytes written.
+     */
+    static int encodeUtf8(InputStream source, OutputStream destination, EcojiWrapping wrapping) throws IOException {
+        byte[] in = new byte[BLOCK_SIZE];
+        byte[] out = new byte[wrapping != null
+                              ? wrapping.maxBlockUtf8Bytes(BLOCK_SIZE)
+                              : BLOCK_SIZE / 5 * MAX_GROUP_UTF8_BYTES];
+        int bytesWritten = 0;
+
+        while (true) {
+            int n = readBlock(source, in);
+
+            if (n > 0) {
+                int len = wrapping != null
+                          ? wrapping.encodeBlockUtf8(in, 0, n, out, 0)
+                          : encodeBlockUtf8(in, 0, n, out, 0);
+                destination.write(out, 0, len);
+                bytesWritten += len;
+            }
+
+            if (n < in.length) {
+                break;
+            }
+        }
+
+        return bytesWritten;
+    }
+
+    /**
+     * Reads from {@code source} until {@code block} is full or the end of the stream is reached, and returns
+     * the number of bytes read.
+     *
+     * <p>Streams like sockets or decompressors may return fewer bytes than requested at any time. Since only
+     * the last block can be shorter than {@code block.length}, all blocks but the last consist of complete groups,
+     * and padding is only emitted at the real end of the stream.</p>
+     */
+    static int readBlock(InputStream source, byte[] block) throws IOException {
+        int n = 0;
+        while (n < block.length) {
+            int read = source.read(block, n, block.length - n);
+            if (read < 0) {
+                break;
+            }
+            n += read;
+        }
+        return n;
+    }
+
+    /**
+     * Encodes an in-memory array and returns the number of chars written. The pool, if not null, is used to encode
+     * several blocks at once; wrapped output is always encoded sequentially, since every line depends on where
+     * the previous one has ended.
+     */
+    static int encode(byte[] source, Writer destination, ForkJoinPool pool, EcojiWrapping wrapping)
+            throws IOException {
+        if (wrapping != null) {
+            pool = null;
+        }
+        int blockSize = blockSize(pool);
+        int maxBlock = Math.min(blockSize, source.length);
+        char[] out = new char[wrapping != null
+                              ? wrapping.maxBlockChars(maxBlock)
+                              : (maxBlock + 4) / 5 * MAX_GROUP_CHARS];
+        int charsWritten = 0;
+
+        for (int off = 0; off < source.length; off += blockSize) {
+            int n = Math.min(blockSize, source.length - off);
+            int len = pool != null
+                      ? EcojiParallel.encode(pool, source, off, n, out, 0)
+                      : wrapping != null
+                        ? wrapping.encodeBlock(source, off, n, out, 0)
+                        : encodeBlock(source, off, n, out, 0);
+            destination.write(out, 0, len);
+            charsWritten += len;
         }
 
         return charsWritten;
     }
 
-    private static int encodeChunk(byte[] chunk, int len, Writer out) throws IOException {
-        if (len <= 0 || len > 5 || len > chunk.length) {
-            throw new IllegalArgumentException("Unexpected chunk length: " + chunk.length);
+    /**
+     * Works like {@link #encode(byte[], Writer, ForkJoinPool, EcojiWrapping)}, writing the UTF-8 representation of
+     * the encoded data and returning the number of bytes written.
+     */
+    static int encodeUtf8(byte[] source, OutputStream destination, ForkJoinPool pool, EcojiWrapping wrapping)
+            throws IOException {
+        if (wrapping != null) {
+            pool = null;
+        }
+        int blockSize = blockSize(pool);
+        int maxBlock = Math.min(blockSize, source.length);
+        byte[] out = new byte[wrapping != null
+                              ? wrapping.maxBlockUtf8Bytes(maxBlock)
+                              : (maxBlock + 4) / 5 * MAX_GROUP_UTF8_BYTES];
+        int bytesWritten = 0;
+
+        for (int off = 0; off < source.length; off += blockSize) {
+            int n = Math.min(blockSize, source.length - off);
+            int len = pool != null
+                      ? EcojiParallel.encodeUtf8(pool, source, off, n, out, 0)
+                      : wrapping != null
+                        ? wrapping.encodeBlockUtf8(source, off, n, out, 0)
+                        : encodeBlockUtf8(source, off, n, out, 0);
+            destination.write(out, 0, len);
+            bytesWritten += len;
+        }
+
+        return bytesWritten;
+    }
+
+    // Enough input for every worker of the pool to get a few chunks, while keeping the output buffer bounded
+    private static int blockSize(ForkJoinPool pool) {
+        if (pool == null) {
+            return BLOCK_SIZE;
+        }
+        return EcojiParallel.ENCODE_CHUNK * Math.min(pool.getParallelism() * 4, 256);
+    }
+
+    static String encodeToString(byte[] source, ForkJoinPool pool, EcojiWrapping wrapping) {
+        if (wrapping != null) {
+            char[] out = new char[arraySize(wrapping.encodedChars(source.length, lastByte(source)))];
+            wrapping.encodeBlock(source, 0, source.length, out, 0);
+            return new String(out);
+        }
+        char[] out = new char[arraySize(encodedChars(source.length, lastByte(source)))];
+        if (pool != null) {
+            EcojiParallel.encode(pool, source, 0, source.length, out, 0);
+        } else {
+            encodeBlock(source, 0, source.length, out, 0);
+        }
+        return new String(out);
+    }
+
+    static byte[] encodeToUtf8Bytes(byte[] source, ForkJoinPool pool, EcojiWrapping wrapping) {
+        if (wrapping != null) {
+            byte[] out = new byte[arraySize(wrapping.encodedUtf8Bytes(source.length, lastByte(source)))];
+            wrapping.encodeBlockUtf8(source, 0, source.length, out, 0);
+            return out;
+        }
+        byte[] out = new byte[arraySize(encodedUtf8Bytes(source.length, lastByte(source)))];
+        if (pool != null) {
+            EcojiParallel.encodeUtf8(pool, source, 0, source.length, out, 0);
+        } else {
+            encodeBlockUtf8(source, 0, source.length, out, 0);
+        }
+        return out;
+    }
+
+    private static int lastByte(byte[] source) {
+        return source.length == 0 ? 0 : source[source.length - 1];
+    }
+
+    /**
+     * Encodes a batch of values into one array. The values are either the arrays of {@code values}, or the ranges
+     * of {@code buffer} between consecutive {@code bufferOffsets}. The output is sized exactly in a first pass over
+     * the lengths, and every value is then encoded right after the previous one, with its end written to
+     * {@code offsets}. The wrapping, if not null, wraps every value on its own.
+     */
+    static char[] encodeBatch(byte[][] values, byte[] buffer, int[] bufferOffsets, int[] offsets,
+                              EcojiWrapping wrapping) {
+        int count = batchSize(values, buffer, bufferOffsets, offsets);
+
+        long total = 0;
+        for (int i = 0; i < count; ++i) {
+            byte[] src = values != null ? values[i] : buffer;
+            int off = values != null ? 0 : bufferOffsets[i];
+            int len = values != null ? src.length : bufferOffsets[i + 1] - off;
+            int lastByte = len == 0 ? 0 : src[off + len - 1];
+            total += wrapping != null ? wrapping.encodedChars(len, lastByte) : encodedChars(len, lastByte);
+        }
+
+        char[] out = new char[arraySize(total)];
+        int p = 0;
+        offsets[0] = 0;
+        for (int i = 0; i < count; ++i) {
+            byte[] src = values != null ? values[i] : buffer;
+            int off = values != null ? 0 : bufferOffsets[i];
+            int len = values != null ? src.length : bufferOffsets[i + 1] - off;
+            p += wrapping != null ? wrapping.start().encodeBlock(src, off, len, out, p)
+                                  : encodeBlock(src, off, len, out, p);
+            offsets[i + 1] = p;
+        }
+        return out;
+    }
+
+    /**
+     * Works like {@link #encodeBatch(byte[][], byte[], int[], int[], EcojiWrapping)}, writing the UTF-8
+     * representation of the encoded values.
+     */
+    static byte[] encodeBatchUtf8(byte[][] values, byte[] buffer, int[] bufferOffsets, int[] offsets,
+                                  EcojiWrapping wrapping) {
+        int count = batchSize(values, buffer, bufferOffsets, offsets);
+
+        long total = 0;
+        for (int i = 0; i < count; ++i) {
+            byte[] src = values != null ? values[i] : buffer;
+            int off = values != null ? 0 : bufferOffsets[i];
+            int len = values != null ? src.length : bufferOffsets[i + 1] - off;
+            int lastByte = len == 0 ? 0 : src[off + len - 1];
+            total += wrapping != null ? wrapping.encodedUtf8Bytes(len, lastByte) : encodedUtf8Bytes(len, lastByte);
+        }
+
+        byte[] out = new byte[arraySize(total)];
+        int p = 0;
+        offsets[0] = 0;
+        for (int i = 0; i < count; ++i) {
+            byte[] src = values != null ? values[i] : buffer;
+            int off = values != null ? 0 : bufferOffsets[i];
+            int len = values != null ? src.length : bufferOffsets[i + 1] - off;
+            p += wrapping != null ? wrapping.start().encodeBlockUtf8(src, off, len, out, p)
+                                  : encodeBlockUtf8(src, off, len, out, p);
+            offsets[i + 1] = p;
+        }
+        return out;
+    }
+
+    // Returns the number of values in the batch after checking that the offsets are in order and in bounds
+    private static int batchSize(byte[][] values, byte[] buffer, int[] bufferOffsets, int[] offsets) {
+        int count;
+        if (values != null) {
+            count = values.length;
+        } else {
+            checkBatchOffsets(buffer.length, bufferOffsets);
+            count = bufferOffsets.length - 1;
+        }
+        checkBatchIndex(count, offsets);
+        return count;
+    }
+
+    static void checkBatchOffsets(int length, int[] offsets) {
+        if (offsets.length == 0) {
+            throw new IllegalArgumentException("The offsets of a batch must contain at least one element");
+        }
+        int previous = 0;
+        for (int offset : offsets) {
+            if (offset < previous || offset > length) {
+                throw new IndexOutOfBoundsException("Offset " + offset + " is out of order or out of bounds " +
+                                                    "for length " + length);
+            }
+            previous = offset;
+        }
+    }
+
+    static void checkBatchIndex(int count, int[] index) {
+        if (index.length < count + 1) {
+            throw new IllegalArgumentException("The offset index must have room for " + (count + 1) + " elements, " +
+                                               "but has " + index.length);
+        }
+    }
+
+    static int arraySize(long size) {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("Required array size too large: " + size);
+        }
+        return (int) size;
+    }
+
+    /**
+     * Returns the exact number of chars which {@code inputBytes} bytes are encoded to, where {@code lastByte} is
+     * the last of them.
+     */
+    static long encodedChars(long inputBytes, int lastByte) {
+        int tail = (int) (inputBytes % 5);
+        return inputBytes / 5 * MAX_GROUP_CHARS + (tail == 0 ? 0 : tailChars(tail, lastByte));
+    }
+
+    /**
+     * Returns the exact number of UTF-8 bytes which {@code inputBytes} bytes are encoded to, where {@code lastByte}
+     * is the last of them.
+     */
+    static long encodedUtf8Bytes(long inputBytes, int lastByte) {
+        int tail = (int) (inputBytes % 5);
+        return inputBytes / 5 * MAX_GROUP_UTF8_BYTES + (tail == 0 ? 0 : tailUtf8Bytes(tail, lastByte));
+    }
+
+    static CoderResult encode(ByteBuffer src, CharBuffer dst, boolean endOfInput, ForkJoinPool pool) {
+        // Buffers without an accessible array are copied through windows, which are allocated once per call
+        int maxBlock = Math.min(src.remaining(), BLOCK_SIZE);
+        byte[] inWindow = src.hasArray() ? null : new byte[maxBlock];
+        char[] outWindow = dst.hasArray() ? null : new char[(maxBlock + 4) / 5 * MAX_GROUP_CHARS];
+
+        while (src.remaining() >= 5) {
+            int groups = Math.min(src.remaining() / 5, dst.remaining() / MAX_GROUP_CHARS);
+            if (groups == 0) {
+                return CoderResult.OVERFLOW;
+            }
+            if (pool != null && src.hasArray() && dst.hasArray()) {
+                int len = groups * 5;
+                EcojiParallel.encode(pool, src.array(), src.arrayOffset() + src.position(), len,
+                                     dst.array(), dst.arrayOffset() + dst.position());
+                src.position(src.position() + len);
+                dst.position(dst.position() + groups * MAX_GROUP_CHARS);
+            } else {
+                encodeBuffer(src, Math.min(groups * 5, BLOCK_SIZE), dst, inWindow, outWindow);
+            }
         }
 
-        int b0 = 0, b1 = 0, b2 = 0, b3 = 0, b4 = 0;
+        if (endOfInput && src.hasRemaining()) {
+            int len = src.remaining();
+            if (dst.remaining() < tailChars(len, src.get(src.limit() - 1))) {
+                return CoderResult.OVERFLOW;
+            }
+            encodeBuffer(src, len, dst, inWindow, outWindow);
+        }
+
+        return CoderResult.UNDERFLOW;
+    }
+
+    // Encodes exactly len bytes of src, directly from and into the backing arrays when they are accessible, and
+    // through the windows otherwise
+    private static void encodeBuffer(ByteBuffer src, int len, CharBuffer dst, byte[] inWindow, char[] outWindow) {
+        byte[] in;
+        int inOff;
+        if (src.hasArray()) {
+            in = src.array();
+            inOff = src.arrayOffset() + src.position();
+            src.position(src.position() + len);
+        } else {
+            in = inWindow;
+            inOff = 0;
+            src.get(in, 0, len);
+        }
+
+        if (dst.hasArray()) {
+            int n = encodeBlock(in, inOff, len, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + n);
+        } else {
+            int n = encodeBlock(in, inOff, len, outWindow, 0);
+            dst.put(outWindow, 0, n);
+        }
+    }
+
+    /**
+     * Returns the number of chars in the padded group which encodes the last {@code len} bytes of the input,
+     * where {@code lastByte} is the last of them.
+     */
+    static int tailChars(int len, int lastByte) {
+        // data emojis are always surrogate pairs, see the mapping tables above
         switch (len) {
-            case 5:
-                b4 = Byte.toUnsignedInt(chunk[4]);
-            case 4:
-                b3 = Byte.toUnsignedInt(chunk[3]);
-            case 3:
-                b2 = Byte.toUnsignedInt(chunk[2]);
-            case 2:
-                b1 = Byte.toUnsignedInt(chunk[1]);
             case 1:
-                b0 = Byte.toUnsignedInt(chunk[0]);
+                return 2 + 3 * Character.charCount(Emojis.PADDING);
+            case 2:
+                return 4 + 2 * Character.charCount(Emojis.PADDING);
+            case 3:
+                return 6 + Character.charCount(Emojis.PADDING);
+            case 4:
+                return 6 + Character.charCount(paddingFor4(lastByte));
             default:
+                throw new IllegalArgumentException("Unexpected tail length: " + len);
         }
+    }
 
-        int[] chars = new int[] {
-            Emojis.MAPPING[b0 << 2 | b1 >> 6],
-            Emojis.PADDING,
-            Emojis.PADDING,
-            Emojis.PADDING
-        };
-
+    /**
+     * Returns the number of UTF-8 bytes in the padded group which encodes the last {@code len} bytes of the input,
+     * where {@code lastByte} is the last of them.
+     */
+    static int tailUtf8Bytes(int len, int lastByte) {
         switch (len) {
-            case 5:
-            case 4:
-            case 3:
-                chars[2] = Emojis.MAPPING[(b2 & 0x0f) << 6 | b3 >> 2];
+            case 1:
+                return 4 + 3 * utf8Length(Emojis.PADDING);
             case 2:
-                chars[1] = Emojis.MAPPING[(b1 & 0x3f) << 4 | b2 >> 4];
+                return 8 + 2 * utf8Length(Emojis.PADDING);
+            case 3:
+                return 12 + utf8Length(Emojis.PADDING);
+            case 4:
+                return 12 + utf8Length(paddingFor4(lastByte));
+            default:
+                throw new IllegalArgumentException("Unexpected tail length: " + len);
+        }
+    }
+
+    private static int utf8Length(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    static int paddingFor4(int lastByte) {
+        switch (lastByte & 0x03) {
+            case 0:
+                return Emojis.PADDING_40;
             case 1:
+                return Emojis.PADDING_41;
+            case 2:
+                return Emojis.PADDING_42;
             default:
+                return Emojis.PADDING_43;
+        }
+    }
+
+    /**
+     * Encodes {@code len} bytes starting at {@code off} into {@code dst}, returning the number of chars written.
+     *
+     * <p>Every 5 bytes are encoded as a complete group; if {@code len} is not a multiple of 5, the remaining bytes
+     * are encoded as a final padded group. {@code dst} must have room for {@code MAX_GROUP_CHARS} chars per
+     * started group.</p>
+     */
+    static int encodeBlock(byte[] src, int off, int len, char[] dst, int dstOff) {
+        char[] high = MAPPING_HIGH;
+        char[] low = MAPPING_LOW;
+        int end = off + len;
+        int fullEnd = end - len % 5;
+        int p = dstOff;
+        int i = off;
+
+        if (EcojiVector.ENABLED) {
+            int groups = EcojiVector.encode(src, off, fullEnd, dst, dstOff);
+            i += groups * 5;
+            p += groups * MAX_GROUP_CHARS;
+        }
+
+        for (; i < fullEnd; i += 5) {
+            int b0 = src[i] & 0xff;
+            int b1 = src[i + 1] & 0xff;
+            int b2 = src[i + 2] & 0xff;
+            int b3 = src[i + 3] & 0xff;
+            int b4 = src[i + 4] & 0xff;
+
+            int s0 = b0 << 2 | b1 >> 6;
+            int s1 = (b1 & 0x3f) << 4 | b2 >> 4;
+            int s2 = (b2 & 0x0f) << 6 | b3 >> 2;
+            int s3 = (b3 & 0x03) << 8 | b4;
+
+            dst[p] = high[s0];
+            dst[p + 1] = low[s0];
+            dst[p + 2] = high[s1];
+            dst[p + 3] = low[s1];
+            dst[p + 4] = high[s2];
+            dst[p + 5] = low[s2];
+            dst[p + 6] = high[s3];
+            dst[p + 7] = low[s3];
+            p += 8;
+        }
+
+        if (fullEnd < end) {
+            p = encodeTail(src, fullEnd, end - fullEnd, dst, p);
+        }
+
+        return p - dstOff;
+    }
+
+    /**
+     * Encodes {@code len} bytes starting at {@code off} into {@code dst} as UTF-8, returning the number of bytes
+     * written.
+     *
+     * <p>This works exactly like {@link #encodeBlock(byte[], int, int, char[], int)}, except that {@code dst} must
+     * have room for {@code MAX_GROUP_UTF8_BYTES} bytes per started group.</p>
+     */
+    static int encodeBlockUtf8(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int[] utf8 = MAPPING_UTF8;
+        int end = off + len;
+        int fullEnd = end - len % 5;
+        int p = dstOff;
+        int i = off;
+
+        if (EcojiVector.ENABLED) {
+            int groups = EcojiVector.encodeUtf8(src, off, fullEnd, dst, dstOff);
+            i += groups * 5;
+            p += groups * MAX_GROUP_UTF8_BYTES;
+        }
+
+        for (; i < fullEnd; i += 5) {
+            int b0 = src[i] & 0xff;
+            int b1 = src[i + 1] & 0xff;
+            int b2 = src[i + 2] & 0xff;
+            int b3 = src[i + 3] & 0xff;
+            int b4 = src[i + 4] & 0xff;
+
+            int u0 = utf8[b0 << 2 | b1 >> 6];
+            int u1 = utf8[(b1 & 0x3f) << 4 | b2 >> 4];
+            int u2 = utf8[(b2 & 0x0f) << 6 | b3 >> 2];
+            int u3 = utf8[(b3 & 0x03) << 8 | b4];
+
+            dst[p] = (byte) (u0 >>> 24);
+            dst[p + 1] = (byte) (u0 >>> 16);
+            dst[p + 2] = (byte) (u0 >>> 8);
+            dst[p + 3] = (byte) u0;
+            dst[p + 4] = (byte) (u1 >>> 24);
+            dst[p + 5] = (byte) (u1 >>> 16);
+            dst[p + 6] = (byte) (u1 >>> 8);
+            dst[p + 7] = (byte) u1;
+            dst[p + 8] = (byte) (u2 >>> 24);
+            dst[p + 9] = (byte) (u2 >>> 16);
+            dst[p + 10] = (byte) (u2 >>> 8);
+            dst[p + 11] = (byte) u2;
+            dst[p + 12] = (byte) (u3 >>> 24);
+            dst[p + 13] = (byte) (u3 >>> 16);
+            dst[p + 14] = (byte) (u3 >>> 8);
+            dst[p + 15] = (byte) u3;
+            p += 16;
         }
 
-        if (len == 4) {
-            switch (b3 & 0x03) {
-                case 0:
-                    chars[3] = Emojis.PADDING_40;
-                    break;
-                case 1:
-                    chars[3] = Emojis.PADDING_41;
-                    break;
-                case 2:
-                    chars[3] = Emojis.PADDING_42;
-                    break;
-                case 3:
-                    chars[3] = Emojis.PADDING_43;
-                    break;
-                default:
+        if (fullEnd < end) {
+            for (int k = 0; k < 4; ++k) {
+                p = putUtf8(dst, p, tailCodePoint(src, fullEnd, end - fullEnd, k));
             }
-        } else if (len == 5) {
-            chars[3] = Emojis.MAPPING[(b3 & 0x03) << 8 | b4];
         }
 
-        char[] buf = new char[2];
-        int charsWritten = 0;
-        for (int c : chars) {
-            int n = Character.toChars(c, buf, 0);
-            out.write(buf, 0, n);
-            charsWritten += n;
+        return p - dstOff;
+    }
+
+    private static int encodeTail(byte[] chunk, int off, int len, char[] dst, int p) {
+        for (int i = 0; i < 4; ++i) {
+            p = putCodePoint(dst, p, tailCodePoint(chunk, off, len, i));
         }
+        return p;
+    }
 
-        return charsWritten;
+    /**
+     * Returns the {@code i}-th of the four code points of the padded group which encodes the last {@code len} bytes
+     * of the input.
+     */
+    static int tailCodePoint(byte[] chunk, int off, int len, int i) {
+        if (len < 1 || len > 4) {
+            throw new IllegalArgumentException("Unexpected tail length: " + len);
+        }
+
+        if (i >= len) {
+            return Emojis.PADDING;
+        }
+        if (i == 3) {
+            return paddingFor4(chunk[off + 3]);
+        }
+
+        // the symbol is made of the low bits of the i-th byte and the high bits of the next one, if any
+        int hi = chunk[off + i] & 0xff;
+        int lo = i + 1 < len ? chunk[off + i + 1] & 0xff : 0;
+        return Emojis.MAPPING[(hi << 8 | lo) >> (6 - 2 * i) & 0x3ff];
+    }
+
+    private static int putCodePoint(char[] dst, int p, int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            dst[p] = (char) codePoint;
+            return p + 1;
+        } else {
+            dst[p] = Character.highSurrogate(codePoint);
+            dst[p + 1] = Character.lowSurrogate(codePoint);
+            return p + 2;
+        }
+    }
+
+    private static int putUtf8(byte[] dst, int p, int codePoint) {
+        if (codePoint < 0x80) {
+            dst[p] = (byte) codePoint;
+            return p + 1;
+        } else if (codePoint < 0x800) {
+            dst[p] = (byte) (0xc0 | codePoint >> 6);
+            dst[p + 1] = (byte) (0x80 | codePoint & 0x3f);
+            return p + 2;
+        } else if (codePoint < 0x10000) {
+            dst[p] = (byte) (0xe0 | codePoint >> 12);
+            dst[p + 1] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            dst[p + 2] = (byte) (0x80 | codePoint & 0x3f);
+            return p + 3;
+        } else {
+            dst[p] = (byte) (0xf0 | codePoint >> 18);
+            dst[p + 1] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+            dst[p + 2] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            dst[p + 3] = (byte) (0x80 | codePoint & 0x3f);
+            return p + 4;
+        }
     }
 }
@@ -0,0 +1,268 @@
+package io.github.netvl.ecoji;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Encoding and decoding of files through memory-mapped channels.
+ *
+ * <p>The input file is mapped one segment at a time. The mapped buffers do not expose arrays, so the kernels work on
+ * bounded heap windows which are copied from the mappings with bulk operations. When encoding, the output file is
+ * sized up front and mapped together with the input, and every output mapping is forced to the file when its
+ * segment is complete. When decoding, the output size is only known if the input is laid out as the encoder
+ * output, so the windows are written to the unmapped output with positional writes, which lets the output be
+ * truncated if the input turns out to be laid out differently. With a pool, every segment is split into chunks
+ * which are processed concurrently.</p>
+ */
+class EcojiFiles {
+    // Input bytes per mapped segment; a multiple of 5 whose encoded size stays well below the 2 GiB mapping limit
+    private static final int ENCODE_SEGMENT = 5 << 24;
+
+    // Input bytes per mapped segment; a multiple of the UTF-8 size of a complete group
+    private static final int DECODE_SEGMENT = EcojiEncoding.MAX_GROUP_UTF8_BYTES << 24;
+
+    private EcojiFiles() {
+    }
+
+    static long encodeUtf8(Path source, Path destination, ForkJoinPool pool, EcojiWrapping wrapping)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            if (size == 0) {
+                return 0;
+            }
+
+            // the lines do not follow the segments, so wrapped output is encoded sequentially through streams
+            if (wrapping != null) {
+                EcojiEncoding.encodeUtf8(Channels.newInputStream(in), Channels.newOutputStream(out), wrapping);
+                return out.size();
+            }
+
+            byte[] last = new byte[1];
+            readFully(in, last, size - 1);
+            long outSize = EcojiEncoding.encodedUtf8Bytes(size, last[0]);
+
+            for (long pos = 0; pos < size; pos += ENCODE_SEGMENT) {
+                int len = (int) Math.min(ENCODE_SEGMENT, size - pos);
+                long outPos = pos / 5 * EcojiEncoding.MAX_GROUP_UTF8_BYTES;
+                long outLen = pos + len == size ? outSize - outPos : len / 5 * EcojiEncoding.MAX_GROUP_UTF8_BYTES;
+
+                MappedByteBuffer mapped = out.map(FileChannel.MapMode.READ_WRITE, outPos, outLen);
+                EncodeTask task = new EncodeTask(in.map(FileChannel.MapMode.READ_ONLY, pos, len), 0, len, mapped, 0);
+                if (pool != null) {
+                    pool.invoke(task);
+                } else {
+                    task.encodeChunk();
+                }
+                mapped.force();
+            }
+
+            return outSize;
+        }
+    }
+
+    static long decodeUtf8(Path source, Path destination, ForkJoinPool pool, int[] ignored) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            byte[] tail = new byte[(int) Math.min(EcojiEncoding.MAX_GROUP_UTF8_BYTES, size)];
+            readFully(in, tail, size - tail.length);
+            long outSize = EcojiDecoding.decodedUtf8Length(tail, size - tail.length);
+
+            // the output is split assuming the layout of the encoder output, and the decoded chunks are written to
+            // their places in it with positional writes. The output is not mapped: mappings are only released by
+            // the garbage collector, and a mapped file cannot be truncated on some platforms. If the input turns out
+            // to be laid out differently, e.g. if it contains ignored code points or is invalid, the output is
+            // truncated and the input is decoded sequentially, which produces the result or the error
+            if (!decodeSegments(in, out, size, outSize, pool)) {
+                out.truncate(0);
+                EcojiDecoding.decodeUtf8(Channels.newInputStream(in), Channels.newOutputStream(out), ignored);
+                return out.size();
+            }
+            return outSize;
+        }
+    }
+
+    // Decodes the input segment by segment into the output; returns false if the input is not laid out as
+    // the encoder output or is invalid, in which case a part of the output may have been written
+    private static boolean decodeSegments(FileChannel in, FileChannel out, long size, long outSize,
+                                          ForkJoinPool pool) throws IOException {
+        for (long pos = 0; pos < size; pos += DECODE_SEGMENT) {
+            int len = (int) Math.min(DECODE_SEGMENT, size - pos);
+            long outPos = pos / EcojiEncoding.MAX_GROUP_UTF8_BYTES * 5;
+            long outEnd = pos + len == size
+                          ? outSize
+                          : outPos + len / EcojiEncoding.MAX_GROUP_UTF8_BYTES * 5;
+            if (outEnd < outPos || outEnd > outSize) {
+                return false;
+            }
+
+            DecodeTask task = new DecodeTask(in.map(FileChannel.MapMode.READ_ONLY, pos, len), 0, len,
+                                             out, outPos, (int) (outEnd - outPos));
+            if (pool != null) {
+                try {
+                    if (!pool.invoke(task)) {
+                        return false;
+                    }
+                } catch (WriteFailure e) {
+                    throw e.error;
+                }
+            } else if (!task.decodeChunk()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static class EncodeTask extends RecursiveAction {
+        private final ByteBuffer src;
+        private final int off;
+        private final int len;
+        private final ByteBuffer dst;
+        private final int dstOff;
+
+        EncodeTask(ByteBuffer src, int off, int len, ByteBuffer dst, int dstOff) {
+            this.src = src;
+            this.off = off;
+            this.len = len;
+            this.dst = dst;
+            this.dstOff = dstOff;
+        }
+
+        @Override
+        protected void compute() {
+            if (len <= EcojiParallel.ENCODE_CHUNK) {
+                encodeChunk();
+                return;
+            }
+
+            int half = len / 2 / 5 * 5;
+            invokeAll(new EncodeTask(src, off, half, dst, dstOff),
+                      new EncodeTask(src, off + half, len - half, dst,
+                                     dstOff + half / 5 * EcojiEncoding.MAX_GROUP_UTF8_BYTES));
+        }
+
+        void encodeChunk() {
+            byte[] in = new byte[Math.min(EcojiEncoding.BLOCK_SIZE, len)];
+            byte[] out = new byte[(in.length + 4) / 5 * EcojiEncoding.MAX_GROUP_UTF8_BYTES];
+
+            // duplicates share the mapped contents, but have their own positions
+            ByteBuffer s = src.duplicate();
+            s.position(off);
+            ByteBuffer d = dst.duplicate();
+            d.position(dstOff);
+
+            for (int p = 0; p < len; p += in.length) {
+                int n = Math.min(in.length, len - p);
+                s.get(in, 0, n);
+                d.put(out, 0, EcojiEncoding.encodeBlockUtf8(in, 0, n, out, 0));
+            }
+        }
+    }
+
+    private static class DecodeTask extends RecursiveTask<Boolean> {
+        private final ByteBuffer src;
+        private final int off;
+        private final int len;
+        private final FileChannel dst;
+        private final long dstPos;
+        private final int dstLen;
+
+        DecodeTask(ByteBuffer src, int off, int len, FileChannel dst, long dstPos, int dstLen) {
+            this.src = src;
+            this.off = off;
+            this.len = len;
+            this.dst = dst;
+            this.dstPos = dstPos;
+            this.dstLen = dstLen;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (len <= EcojiParallel.DECODE_CHUNK) {
+                try {
+                    return decodeChunk();
+                } catch (IOException e) {
+                    throw new WriteFailure(e);
+                }
+            }
+
+            // all chunks but the last one consist of complete groups only and fill their region of the output
+            int half = len / 2 / EcojiEncoding.MAX_GROUP_UTF8_BYTES * EcojiEncoding.MAX_GROUP_UTF8_BYTES;
+            int halfOut = half / EcojiEncoding.MAX_GROUP_UTF8_BYTES * 5;
+            if (halfOut > dstLen) {
+                return false;
+            }
+
+            DecodeTask left = new DecodeTask(src, off, half, dst, dstPos, halfOut);
+            DecodeTask right = new DecodeTask(src, off + half, len - half, dst, dstPos + halfOut, dstLen - halfOut);
+            right.fork();
+            boolean ok = left.compute();
+            return right.join() && ok;
+        }
+
+        boolean decodeChunk() throws IOException {
+            byte[] in = new byte[Math.min(EcojiDecoding.BLOCK_SIZE, len)];
+            byte[] out = new byte[in.length / EcojiEncoding.MAX_GROUP_UTF8_BYTES * 5 + 5];
+            EcojiDecoding decoding = new EcojiDecoding();
+
+            // the duplicate shares the mapped contents, but has its own position
+            ByteBuffer s = src.duplicate();
+            s.position(off);
+            int written = 0;
+
+            for (int p = 0; p < len; p += in.length) {
+                int n = Math.min(in.length, len - p);
+                s.get(in, 0, n);
+
+                CoderResult result = decoding.decodeBlockUtf8(in, 0, n, out, 0, out.length);
+                if (result != CoderResult.UNDERFLOW || decoding.srcPos != n || written + decoding.dstPos > dstLen) {
+                    return false;
+                }
+
+                // positional writes do not move the position of the channel, so the chunks can write concurrently
+                ByteBuffer d = ByteBuffer.wrap(out, 0, decoding.dstPos);
+                while (d.hasRemaining()) {
+                    dst.write(d, dstPos + written + d.position());
+                }
+                written += decoding.dstPos;
+            }
+
+            return written == dstLen;
+        }
+    }
+
+    // Carries a failed write out of a decoding task, whose computation cannot throw checked exceptions
+    private static class WriteFailure extends RuntimeException {
+        final IOException error;
+
+        WriteFailure(IOException error) {
+            super(error);
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.netvl.ecoji;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.CoderResult;
+
+/**
+ * An input stream which reads Ecoji-encoded data from a {@link Reader} and returns the decoded bytes.
+ *
+ * <p>The reader is consumed lazily, one block at a time, so the memory used by the stream does not depend on
+ * the length of the input. If the input is invalid, the bytes decoded before the invalid code point are returned
+ * first, and the exception is thrown by the read which would need to go past it.</p>
+ */
+class EcojiInputStream extends InputStream {
+    private final Reader source;
+    private final char[] in = new char[EcojiDecoding.BLOCK_SIZE];
+    private final byte[] out = new byte[EcojiDecoding.MAX_BLOCK_BYTES];
+    private final EcojiDecoding decoding;
+
+    // chars of an incomplete group left over from the previous block
+    private int pending = 0;
+    private long consumed = 0;
+
+    private int outPos = 0;
+    private int outEnd = 0;
+
+    private boolean eof = false;
+    private IOException error = null;
+    private boolean closed = false;
+
+    EcojiInputStream(Reader source, int[] ignored) {
+        this.source = source;
+        this.decoding = new EcojiDecoding(ignored);
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (outPos == outEnd && !fill()) {
+            return -1;
+        }
+        return out[outPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        if (outPos == outEnd && !fill()) {
+            return -1;
+        }
+
+        int n = Math.min(len, outEnd - outPos);
+        System.arraycopy(out, outPos, b, off, n);
+        outPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return outEnd - outPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        source.close();
+    }
+
+    /**
+     * Decodes the next portion of the input into the output buffer; returns {@code false} if the input is
+     * exhausted.
+     */
+    private boolean fill() throws IOException {
+        outPos = 0;
+        outEnd = 0;
+
+        while (outEnd == 0) {
+            if (error != null) {
+                throw error;
+            }
+            if (eof) {
+                return false;
+            }
+
+            int n = source.read(in, pending, in.length - pending);
+
+            if (n < 0) {
+                eof = true;
+                if (pending > 0) {
+                    error = EcojiDecoding.incompleteInputException();
+                }
+                continue;
+            }
+
+            int available = pending + n;
+            CoderResult result = decoding.decodeBlock(in, 0, available, out, 0, out.length);
+            outEnd = decoding.dstPos;
+
+            if (result.isMalformed()) {
+                error = decoding.malformedInputException(consumed);
+                continue;
+            }
+
+            pending = available - decoding.srcPos;
+            consumed += decoding.srcPos;
+            System.arraycopy(in, decoding.srcPos, in, 0, pending);
+        }
+
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
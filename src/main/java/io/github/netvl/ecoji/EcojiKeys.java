@@ -0,0 +1,210 @@
+package io.github.netvl.ecoji;
+
+import java.util.Comparator;
+
+/**
+ * Ordering of Ecoji-encoded keys, for storing them in sorted collections and scanning ranges of them without
+ * decoding.
+ *
+ * <p>The Ecoji encoding preserves the order of its input: the alphabet is sorted by code point, all of the data
+ * emojis are outside of the Basic Multilingual Plane, the padding emoji is below all of them, and the padding emoji
+ * of a 4-byte tail with the top two bits {@code k} is placed right before the data emojis {@code k << 8}, whose
+ * input it is a prefix of. Therefore comparing the encoded forms by code points, or equivalently by UTF-16 code
+ * units, gives the unsigned lexicographic order of the decoded bytes. {@link #comparator()} does that for any
+ * {@link CharSequence}, without converting it to a {@link String}.</p>
+ *
+ * <p>For example, all keys starting with a given byte prefix can be scanned in a sorted map of encoded keys with:</p>
+ *
+ * <pre>
+ *   NavigableMap&lt;String, V&gt; map = new TreeMap&lt;&gt;(EcojiKeys.comparator());
+ *   String from = EcojiKeys.lowerBound(prefix);
+ *   String to = EcojiKeys.upperBound(prefix);
+ *   Map&lt;String, V&gt; range = to == null ? map.tailMap(from, true) : map.subMap(from, true, to, false);
+ * </pre>
+ *
+ * <p>The methods of this class do not allocate anything, except for the ones which return strings.</p>
+ */
+public final class EcojiKeys {
+    private EcojiKeys() {
+    }
+
+    private static final Comparator<CharSequence> COMPARATOR = new Comparator<CharSequence>() {
+        @Override
+        public int compare(CharSequence a, CharSequence b) {
+            return EcojiKeys.compare(a, b);
+        }
+    };
+
+    /**
+     * Returns a comparator of Ecoji-encoded data which agrees with the unsigned lexicographic order of the decoded
+     * bytes.
+     *
+     * <p>The order is defined for the output of the encoder without {@linkplain Ecoji.Encoder#wrapAt(int, String)
+     * line wrapping}. For any character sequences, the comparator orders them by their UTF-16 code units, like
+     * {@link String#compareTo(String)}.</p>
+     *
+     * @return A comparator of Ecoji-encoded data.
+     *
+     * @see #compare(CharSequence, CharSequence)
+     */
+    public static Comparator<CharSequence> comparator() {
+        return COMPARATOR;
+    }
+
+    /**
+     * Compares two Ecoji-encoded sequences in the order of their decoded bytes.
+     *
+     * @param a The first Ecoji-encoded sequence.
+     *
+     * @param b The second Ecoji-encoded sequence.
+     *
+     * @return A negative number, zero or a positive number if the data encoded by {@code a} is less than, equal to
+     * or greater than the data encoded by {@code b}, respectively.
+     *
+     * @see #comparator()
+     */
+    public static int compare(CharSequence a, CharSequence b) {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; ++i) {
+            char ac = a.charAt(i);
+            char bc = b.charAt(i);
+            if (ac != bc) {
+                return ac - bc;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Returns the smallest Ecoji-encoded key which starts with the given bytes when decoded.
+     *
+     * <p>This is the encoded form of the prefix itself.</p>
+     *
+     * @param prefix A prefix of the keys in the range.
+     *
+     * @return The inclusive lower bound of the encoded keys with the given prefix.
+     *
+     * @see #lowerBound(byte[], int, int, char[], int)
+     */
+    public static String lowerBound(byte[] prefix) {
+        char[] dst = new char[EcojiEncoding.arraySize(EcojiEncoding.encodedChars(prefix.length, 0xff))];
+        return new String(dst, 0, lowerBound(prefix, 0, prefix.length, dst, 0));
+    }
+
+    /**
+     * Returns the smallest Ecoji-encoded key which is greater than all of the keys which start with the given bytes
+     * when decoded, or {@code null} if there is no such key, i.e. if the prefix is empty or consists of
+     * {@code 0xff} bytes only.
+     *
+     * @param prefix A prefix of the keys in the range.
+     *
+     * @return The exclusive upper bound of the encoded keys with the given prefix, or {@code null} if the range
+     * is not bounded from above.
+     *
+     * @see #upperBound(byte[], int, int, char[], int)
+     */
+    public static String upperBound(byte[] prefix) {
+        char[] dst = new char[EcojiEncoding.arraySize(EcojiEncoding.encodedChars(prefix.length, 0xff))];
+        int n = upperBound(prefix, 0, prefix.length, dst, 0);
+        return n < 0 ? null : new String(dst, 0, n);
+    }
+
+    /**
+     * Writes the smallest Ecoji-encoded key which starts with {@code len} bytes of {@code prefix} starting at
+     * {@code off} when decoded to {@code dst} starting at {@code dstOff}.
+     *
+     * <p>The number of chars written is at most {@link Ecoji.Encoder#encodedLength(long)} for {@code len}.</p>
+     *
+     * @param prefix An array with the prefix of the keys in the range.
+     *
+     * @param off The index of the first byte of the prefix.
+     *
+     * @param len The length of the prefix.
+     *
+     * @param dst An array which will accept the bound.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of chars written to {@code dst}.
+     *
+     * @throws IndexOutOfBoundsException If the specified ranges are out of the bounds of the arrays.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the bound.
+     */
+    public static int lowerBound(byte[] prefix, int off, int len, char[] dst, int dstOff) {
+        checkArguments(prefix, off, len, dst, dstOff);
+        return EcojiEncoding.encodeBlock(prefix, off, len, dst, dstOff);
+    }
+
+    /**
+     * Writes the smallest Ecoji-encoded key which is greater than all of the keys which start with {@code len} bytes
+     * of {@code prefix} starting at {@code off} when decoded to {@code dst} starting at {@code dstOff}.
+     *
+     * <p>The bound is the encoded form of the smallest byte sequence of the same or a smaller length which is
+     * greater than the prefix: the trailing {@code 0xff} bytes of the prefix are dropped, and the last byte left is
+     * incremented. The number of chars written is at most {@link Ecoji.Encoder#encodedLength(long)} for
+     * {@code len}.</p>
+     *
+     * @param prefix An array with the prefix of the keys in the range.
+     *
+     * @param off The index of the first byte of the prefix.
+     *
+     * @param len The length of the prefix.
+     *
+     * @param dst An array which will accept the bound.
+     *
+     * @param dstOff The index in {@code dst} to start writing at.
+     *
+     * @return The number of chars written to {@code dst}, or -1 if the range is not bounded from above, in which
+     * case nothing is written.
+     *
+     * @throws IndexOutOfBoundsException If the specified ranges are out of the bounds of the arrays.
+     *
+     * @throws IllegalArgumentException If there is not enough room in {@code dst} for the bound.
+     */
+    public static int upperBound(byte[] prefix, int off, int len, char[] dst, int dstOff) {
+        checkArguments(prefix, off, len, dst, dstOff);
+
+        int last = off + len - 1;
+        while (last >= off && prefix[last] == (byte) 0xff) {
+            --last;
+        }
+        if (last < off) {
+            return -1;
+        }
+
+        // the complete groups before the incremented byte are the same as in the prefix
+        int groupStart = off + (last - off) / 5 * 5;
+        int p = dstOff + EcojiEncoding.encodeBlock(prefix, off, groupStart - off, dst, dstOff);
+
+        int groupLength = last - groupStart + 1;
+        long bits = 0;
+        for (int i = groupStart; i < last; ++i) {
+            bits = bits << 8 | prefix[i] & 0xff;
+        }
+        int lastByte = (prefix[last] & 0xff) + 1;
+        bits = (bits << 8 | lastByte) << 8 * (5 - groupLength);
+
+        for (int i = 0; i < 4; ++i) {
+            int codePoint;
+            if (groupLength < 5 && i >= groupLength) {
+                codePoint = Emojis.PADDING;
+            } else if (groupLength == 4 && i == 3) {
+                codePoint = EcojiEncoding.paddingFor4(lastByte);
+            } else {
+                codePoint = Emojis.MAPPING[(int) (bits >>> 30 - 10 * i) & 0x3ff];
+            }
+            p += Character.toChars(codePoint, dst, p);
+        }
+
+        return p - dstOff;
+    }
+
+    private static void checkArguments(byte[] prefix, int off, int len, char[] dst, int dstOff) {
+        EcojiEncoderSession.checkBounds(prefix.length, off, len);
+        EcojiEncoderSession.checkBounds(dst.length, dstOff, 0);
+        if (dst.length - dstOff < EcojiEncoding.encodedChars(len, 0xff)) {
+            throw new IllegalArgumentException("Output array is too small for the bound");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.netvl.ecoji;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * An output stream which encodes the bytes written to it and writes the result to a {@link Writer}.
+ *
+ * <p>Bytes are accumulated in a block of a fixed size and encoded when the block is full, so the memory used by
+ * the stream does not depend on the amount of data written to it. Since padding may only appear at the end of
+ * the encoded data, an incomplete group is kept in the buffer until more bytes are written or the stream is
+ * closed.</p>
+ *
+ * <p>If a wrapping is provided, the line separators are inserted as the blocks are encoded, continuing the line
+ * across blocks.</p>
+ */
+class EcojiOutputStream extends OutputStream {
+    private final Writer destination;
+    private final EcojiWrapping wrapping;
+    private final byte[] in = new byte[EcojiEncoding.BLOCK_SIZE];
+    private final char[] out;
+
+    private int buffered = 0;
+    private boolean closed = false;
+
+    EcojiOutputStream(Writer destination, EcojiWrapping wrapping) {
+        this.destination = destination;
+        this.wrapping = wrapping;
+        this.out = new char[wrapping != null
+                            ? wrapping.maxBlockChars(in.length)
+                            : in.length / 5 * EcojiEncoding.MAX_GROUP_CHARS];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        in[buffered++] = (byte) b;
+        if (buffered == in.length) {
+            encodeBuffered();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (buffered == 0 && len >= in.length) {
+                // encode full blocks directly from the caller's array
+                int n = encodeBlock(b, off, in.length);
+                destination.write(out, 0, n);
+                off += in.length;
+                len -= in.length;
+                continue;
+            }
+
+            int n = Math.min(len, in.length - buffered);
+            System.arraycopy(b, off, in, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+
+            if (buffered == in.length) {
+                encodeBuffered();
+            }
+        }
+    }
+
+    /**
+     * Encodes all complete groups written so far and flushes the underlying writer. Bytes of an incomplete group
+     * are kept until more bytes are written or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        encodeBuffered();
+        destination.flush();
+    }
+
+    /**
+     * Encodes the remaining bytes, terminating the encoded data with padding if necessary, and closes the
+     * underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (buffered > 0) {
+                int n = encodeBlock(in, 0, buffered);
+                buffered = 0;
+                destination.write(out, 0, n);
+            }
+        } finally {
+            destination.close();
+        }
+    }
+
+    private void encodeBuffered() throws IOException {
+        int complete = buffered - buffered % 5;
+        if (complete == 0) {
+            return;
+        }
+
+        int n = encodeBlock(in, 0, complete);
+        destination.write(out, 0, n);
+
+        buffered -= complete;
+        System.arraycopy(in, complete, in, 0, buffered);
+    }
+
+    private int encodeBlock(byte[] src, int off, int len) {
+        return wrapping != null
+               ? wrapping.encodeBlock(src, off, len, out, 0)
+               : EcojiEncoding.encodeBlock(src, off, len, out, 0);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.netvl.ecoji;
+
+import java.nio.charset.CoderResult;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join encoding and decoding of in-memory data.
+ *
+ * <p>Every 5 input bytes are encoded to exactly 8 chars, or 16 UTF-8 bytes, so an input split on a 5-byte
+ * boundary can be encoded by independent tasks into disjoint regions of the output. Decoding relies on the same
+ * property of the encoder output: all groups but the last one are 8 chars long, so the input is split on 8-char
+ * boundaries. Input which does not follow this layout, e.g. a concatenation of several encoded sequences, is
+ * detected and reported to the caller, which then falls back to sequential decoding.</p>
+ */
+class EcojiParallel {
+    // Tasks are not split further below this many input bytes; a multiple of 5
+    static final int ENCODE_CHUNK = EcojiEncoding.BLOCK_SIZE * 4;
+
+    // Tasks are not split further below this many input chars; a multiple of MAX_GROUP_CHARS
+    static final int DECODE_CHUNK = EcojiDecoding.BLOCK_SIZE * 4;
+
+    private EcojiParallel() {
+    }
+
+    /**
+     * Encodes {@code len} bytes of {@code src} into {@code dst}, which must have room for all of them; returns the
+     * number of chars written.
+     */
+    static int encode(ForkJoinPool pool, byte[] src, int off, int len, char[] dst, int dstOff) {
+        if (len <= ENCODE_CHUNK) {
+            return EcojiEncoding.encodeBlock(src, off, len, dst, dstOff);
+        }
+        return pool.invoke(new EncodeTask(src, off, len, dst, null, dstOff));
+    }
+
+    /**
+     * Encodes {@code len} bytes of {@code src} into {@code dst} as UTF-8, which must have room for all of them;
+     * returns the number of bytes written.
+     */
+    static int encodeUtf8(ForkJoinPool pool, byte[] src, int off, int len, byte[] dst, int dstOff) {
+        if (len <= ENCODE_CHUNK) {
+            return EcojiEncoding.encodeBlockUtf8(src, off, len, dst, dstOff);
+        }
+        return pool.invoke(new EncodeTask(src, off, len, null, dst, dstOff));
+    }
+
+    /**
+     * Decodes {@code source} into {@code dst}, whose length must be the {@linkplain EcojiDecoding#decodedLength
+     * decoded length} of the source. Returns {@code false} if the input is invalid or is not laid out as
+     * the encoder output; in that case the contents of {@code dst} are unspecified.
+     */
+    static boolean decode(ForkJoinPool pool, String source, byte[] dst) {
+        return pool.invoke(new DecodeTask(source, null, 0, source.length(), dst, 0));
+    }
+
+    /**
+     * Decodes UTF-8 {@code source} into {@code dst}; see {@link #decode(ForkJoinPool, String, byte[])}.
+     */
+    static boolean decodeUtf8(ForkJoinPool pool, byte[] source, byte[] dst) {
+        return pool.invoke(new DecodeTask(null, source, 0, source.length, dst, 0));
+    }
+
+    private static class EncodeTask extends RecursiveTask<Integer> {
+        private final byte[] src;
+        private final int off;
+        private final int len;
+        // exactly one of these is set
+        private final char[] dst;
+        private final byte[] utf8Dst;
+        private final int dstOff;
+
+        EncodeTask(byte[] src, int off, int len, char[] dst, byte[] utf8Dst, int dstOff) {
+            this.src = src;
+            this.off = off;
+            this.len = len;
+            this.dst = dst;
+            this.utf8Dst = utf8Dst;
+            this.dstOff = dstOff;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (len <= ENCODE_CHUNK) {
+                return dst != null
+                       ? EcojiEncoding.encodeBlock(src, off, len, dst, dstOff)
+                       : EcojiEncoding.encodeBlockUtf8(src, off, len, utf8Dst, dstOff);
+            }
+
+            // only the right half may contain the padded tail, so the left half is encoded to an exact length
+            int half = len / 2 / 5 * 5;
+            int groupSize = dst != null ? EcojiEncoding.MAX_GROUP_CHARS : EcojiEncoding.MAX_GROUP_UTF8_BYTES;
+            EncodeTask left = new EncodeTask(src, off, half, dst, utf8Dst, dstOff);
+            EncodeTask right = new EncodeTask(src, off + half, len - half, dst, utf8Dst,
+                                              dstOff + half / 5 * groupSize);
+
+            right.fork();
+            int n = left.compute();
+            return n + right.join();
+        }
+    }
+
+    private static class DecodeTask extends RecursiveTask<Boolean> {
+        // exactly one of these is set
+        private final String src;
+        private final byte[] utf8Src;
+        private final int off;
+        private final int end;
+        private final byte[] dst;
+        private final int dstOff;
+
+        DecodeTask(String src, byte[] utf8Src, int off, int end, byte[] dst, int dstOff) {
+            this.src = src;
+            this.utf8Src = utf8Src;
+            this.off = off;
+            this.end = end;
+            this.dst = dst;
+            this.dstOff = dstOff;
+        }
+
+        @Override
+        protected Boolean compute() {
+            int groupSize = src != null ? EcojiEncoding.MAX_GROUP_CHARS : EcojiEncoding.MAX_GROUP_UTF8_BYTES;
+            int len = end - off;
+
+            if (len > DECODE_CHUNK) {
+                int half = len / 2 / groupSize * groupSize;
+                DecodeTask left = new DecodeTask(src, utf8Src, off, off + half, dst, dstOff);
+                DecodeTask right = new DecodeTask(src, utf8Src, off + half, end, dst,
+                                                  dstOff + half / groupSize * 5);
+
+                right.fork();
+                boolean ok = left.compute();
+                return right.join() && ok;
+            }
+
+            // all chunks but the last one consist of complete groups only and fill their region of the output
+            int dstEnd = end == length() ? dst.length : dstOff + len / groupSize * 5;
+            if (dstEnd < dstOff || dstEnd > dst.length) {
+                return false;
+            }
+
+            EcojiDecoding decoding = new EcojiDecoding();
+            int dp;
+            if (src != null) {
+                char[] window = new char[Math.min(EcojiDecoding.BLOCK_SIZE, len)];
+                dp = dstOff;
+                for (int p = off; p < end; p += window.length) {
+                    int n = Math.min(window.length, end - p);
+                    src.getChars(p, p + n, window, 0);
+                    CoderResult result = decoding.decodeBlock(window, 0, n, dst, dp, dstEnd);
+                    if (result != CoderResult.UNDERFLOW || decoding.srcPos != n) {
+                        return false;
+                    }
+                    dp = decoding.dstPos;
+                }
+            } else {
+                CoderResult result = decoding.decodeBlockUtf8(utf8Src, off, end, dst, dstOff, dstEnd);
+                if (result != CoderResult.UNDERFLOW || decoding.srcPos != end) {
+                    return false;
+                }
+                dp = decoding.dstPos;
+            }
+
+            return dp == dstEnd;
+        }
+
+        private int length() {
+            return src != null ? src.length() : utf8Src.length;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package io.github.netvl.ecoji;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Encoding and decoding of fixed-width values, like identifiers, without intermediate byte arrays.
+ *
+ * <p>The values are encoded as their big-endian bytes would be by {@link Ecoji.Encoder}, and the results are
+ * identical. Since the number of bytes is fixed, so is the layout of the groups and the padding, and the emojis are
+ * computed straight from the bits of the value, with no loops over the input and no allocations besides the
+ * resulting strings:</p>
+ *
+ * <ul>
+ *   <li>an {@code int} is a single group with a 4-byte tail, {@value #INT_MAX_LENGTH} chars at most;</li>
+ *   <li>a {@code long} is a complete group followed by a group with a 3-byte tail, {@value #LONG_LENGTH} chars;</li>
+ *   <li>a {@link UUID} is three complete groups followed by a group with a 1-byte tail, {@value #UUID_LENGTH}
+ *   chars.</li>
+ * </ul>
+ *
+ * <p>The decoding methods accept exactly these layouts, at any offset of a character sequence, so that
+ * identifiers can be decoded in place, e.g. from a part of a larger string.</p>
+ */
+public final class EcojiPrimitives {
+    /**
+     * The maximum number of chars in the Ecoji representation of an {@code int}; the representation is one char
+     * shorter if the two lowest bits of the value are zero.
+     */
+    public static final int INT_MAX_LENGTH = 8;
+
+    /**
+     * The number of chars in the Ecoji representation of a {@code long}.
+     */
+    public static final int LONG_LENGTH = 15;
+
+    /**
+     * The number of chars in the Ecoji representation of a {@link UUID}.
+     */
+    public static final int UUID_LENGTH = 29;
+
+    static {
+        if (!Character.isBmpCodePoint(Emojis.PADDING) || !Character.isBmpCodePoint(Emojis.PADDING_40)) {
+            throw new AssertionError("Unexpected padding code points outside of the BMP");
+        }
+    }
+
+    private EcojiPrimitives() {
+    }
+
+    /**
+     * Encodes the big-endian bytes of {@code value} into {@code dst} starting at {@code off}.
+     *
+     * @param value A value to encode.
+     *
+     * @param dst An array which will accept the Ecoji-encoded data; it must have room for {@link #INT_MAX_LENGTH}
+     *            chars.
+     *
+     * @param off The index in {@code dst} to start writing at.
+     *
+     * @return The number of chars written to {@code dst}.
+     *
+     * @throws IndexOutOfBoundsException If there is not enough room in {@code dst}.
+     */
+    public static int encodeInt(int value, char[] dst, int off) {
+        checkRoom(dst, off, INT_MAX_LENGTH);
+        putSymbol(dst, off, value >>> 22);
+        putSymbol(dst, off + 2, value >>> 12 & 0x3ff);
+        putSymbol(dst, off + 4, value >>> 2 & 0x3ff);
+        return 6 + Character.toChars(EcojiEncoding.paddingFor4(value), dst, off + 6);
+    }
+
+    /**
+     * Encodes the big-endian bytes of {@code value}.
+     *
+     * @param value A value to encode.
+     *
+     * @return A {@link String} containing the Ecoji-encoded value.
+     */
+    public static String encodeInt(int value) {
+        char[] chars = new char[INT_MAX_LENGTH];
+        return new String(chars, 0, encodeInt(value, chars, 0));
+    }
+
+    /**
+     * Encodes the big-endian bytes of {@code value} and appends the result to {@code dst}.
+     *
+     * @param value A value to encode.
+     *
+     * @param dst An {@link Appendable} which will accept the Ecoji-encoded data.
+     *
+     * @throws IOException If {@code dst} throws it.
+     */
+    public static void encodeInt(int value, Appendable dst) throws IOException {
+        appendSymbol(dst, value >>> 22);
+        appendSymbol(dst, value >>> 12 & 0x3ff);
+        appendSymbol(dst, value >>> 2 & 0x3ff);
+        appendCodePoint(dst, EcojiEncoding.paddingFor4(value));
+    }
+
+    /**
+     * Encodes the big-endian bytes of {@code value} into {@code dst} starting at {@code off}.
+     *
+     * @param value A value to encode.
+     *
+     * @param dst An array which will accept the Ecoji-encoded data; it must have room for {@link #LONG_LENGTH}
+     *            chars.
+     *
+     * @param off The index in {@code dst} to start writing at.
+     *
+     * @return The number of chars written to {@code dst}, which is always {@link #LONG_LENGTH}.
+     *
+     * @throws IndexOutOfBoundsException If there is not enough room in {@code dst}.
+     */
+    public static int encodeLong(long value, char[] dst, int off) {
+        checkRoom(dst, off, LONG_LENGTH);
+        putGroup(dst, off, value >>> 24);
+        // the low 24 bits, padded with zeros to 30 bits
+        putSymbol(dst, off + 8, (int) (value >>> 14) & 0x3ff);
+        putSymbol(dst, off + 10, (int) (value >>> 4) & 0x3ff);
+        putSymbol(dst, off + 12, (int) (value << 6) & 0x3ff);
+        dst[off + 14] = (char) Emojis.PADDING;
+        return LONG_LENGTH;
+    }
+
+    /**
+     * Encodes the big-endian bytes of {@code value}.
+     *
+     * @param value A value to encode.
+     *
+     * @return A {@link String} containing the Ecoji-encoded value.
+     */
+    public static String encodeLong(long value) {
+        char[] chars = new char[LONG_LENGTH];
+        encodeLong(value, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encodes the big-endian bytes of {@code value} and appends the result to {@code dst}.
+     *
+     * @param value A value to encode.
+     *
+     * @param dst An {@link Appendable} which will accept the Ecoji-encoded data.
+     *
+     * @throws IOException If {@code dst} throws it.
+     */
+    public static void encodeLong(long value, Appendable dst) throws IOException {
+        appendGroup(dst, value >>> 24);
+        appendSymbol(dst, (int) (value >>> 14) & 0x3ff);
+        appendSymbol(dst, (int) (value >>> 4) & 0x3ff);
+        appendSymbol(dst, (int) (value << 6) & 0x3ff);
+        dst.append((char) Emojis.PADDING);
+    }
+
+    /**
+     * Encodes the 16 bytes of {@code value}, the most significant bits first, into {@code dst} starting at
+     * {@code off}.
+     *
+     * @param value A value to encode.
+     *
+     * @param dst An array which will accept the Ecoji-encoded data; it must have room for {@link #UUID_LENGTH}
+     *            chars.
+     *
+     * @param off The index in {@code dst} to start writing at.
+     *
+     * @return The number of chars written to {@code dst}, which is always {@link #UUID_LENGTH}.
+     *
+     * @throws IndexOutOfBoundsException If there is not enough room in {@code dst}.
+     */
+    public static int encodeUuid(UUID value, char[] dst, int off) {
+        checkRoom(dst, off, UUID_LENGTH);
+        long msb = value.getMostSignificantBits();
+        long lsb = value.getLeastSignificantBits();
+        putGroup(dst, off, msb >>> 24);
+        putGroup(dst, off + 8, (msb & 0xffffff) << 16 | lsb >>> 48);
+        putGroup(dst, off + 16, lsb >>> 8 & 0xffffffffffL);
+        putSymbol(dst, off + 24, (int) (lsb & 0xff) << 2);
+        dst[off + 26] = (char) Emojis.PADDING;
+        dst[off + 27] = (char) Emojis.PADDING;
+        dst[off + 28] = (char) Emojis.PADDING;
+        return UUID_LENGTH;
+    }
+
+    /**
+     * Encodes the 16 bytes of {@code value}, the most significant bits first.
+     *
+     * @param value A value to encode.
+     *
+     * @return A {@link String} containing the Ecoji-encoded value.
+     */
+    public static String encodeUuid(UUID value) {
+        char[] chars = new char[UUID_LENGTH];
+        encodeUuid(value, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encodes the 16 bytes of {@code value}, the most significant bits first, and appends the result to
+     * {@code dst}.
+     *
+     * @param value A value to encode.
+     *
+     * @param dst An {@link Appendable} which will accept the Ecoji-encoded data.
+     *
+     * @throws IOException If {@code dst} throws it.
+     */
+    public static void encodeUuid(UUID value, Appendable dst) throws IOException {
+        long msb = value.getMostSignificantBits();
+        long lsb = value.getLeastSignificantBits();
+        appendGroup(dst, msb >>> 24);
+        appendGroup(dst, (msb & 0xffffff) << 16 | lsb >>> 48);
+        appendGroup(dst, lsb >>> 8 & 0xffffffffffL);
+        appendSymbol(dst, (int) (lsb & 0xff) << 2);
+        dst.append((char) Emojis.PADDING).append((char) Emojis.PADDING).append((char) Emojis.PADDING);
+    }
+
+    /**
+     * Decodes an {@code int} encoded by {@link #encodeInt(int)} at {@code offset} of {@code encoded}.
+     *
+     * <p>The encoded value takes 8 chars, or 7 if the two lowest bits of the value are zero; the chars after it
+     * are not read.</p>
+     *
+     * @param encoded A sequence which contains the Ecoji-encoded value.
+     *
+     * @param offset The index of the first char of the encoded value.
+     *
+     * @return The decoded value.
+     *
+     * @throws IndexOutOfBoundsException If {@code offset} is out of the bounds of {@code encoded}.
+     *
+     * @throws IOException If the chars at {@code offset} are not an Ecoji-encoded {@code int}.
+     */
+    public static int decodeInt(CharSequence encoded, int offset) throws IOException {
+        checkOffset(encoded, offset);
+        int s0 = dataSymbolAt(encoded, offset, "int");
+        int s1 = dataSymbolAt(encoded, offset + 2, "int");
+        int s2 = dataSymbolAt(encoded, offset + 4, "int");
+        int s3 = symbolAt(encoded, offset + 6, "int");
+        if ((s3 & ~0x3) != Emojis.SYMBOL_PADDING_4) {
+            throw unexpectedInput(offset + 6, "int");
+        }
+        return s0 << 22 | s1 << 12 | s2 << 2 | s3 & 0x3;
+    }
+
+    /**
+     * Decodes a {@code long} encoded by {@link #encodeLong(long)} at {@code offset} of {@code encoded}.
+     *
+     * <p>The encoded value takes {@link #LONG_LENGTH} chars; the chars after it are not read.</p>
+     *
+     * @param encoded A sequence which contains the Ecoji-encoded value.
+     *
+     * @param offset The index of the first char of the encoded value.
+     *
+     * @return The decoded value.
+     *
+     * @throws IndexOutOfBoundsException If {@code offset} is out of the bounds of {@code encoded}.
+     *
+     * @throws IOException If the chars at {@code offset} are not an Ecoji-encoded {@code long}.
+     */
+    public static long decodeLong(CharSequence encoded, int offset) throws IOException {
+        checkOffset(encoded, offset);
+        long group = groupAt(encoded, offset, "long");
+        int s0 = dataSymbolAt(encoded, offset + 8, "long");
+        int s1 = dataSymbolAt(encoded, offset + 10, "long");
+        int s2 = dataSymbolAt(encoded, offset + 12, "long");
+        paddingAt(encoded, offset + 14, "long");
+        return group << 24 | s0 << 14 | s1 << 4 | s2 >> 6;
+    }
+
+    /**
+     * Decodes a {@link UUID} encoded by {@link #encodeUuid(UUID)} at {@code offset} of {@code encoded}.
+     *
+     * <p>The encoded value takes {@link #UUID_LENGTH} chars; the chars after it are not read.</p>
+     *
+     * @param encoded A sequence which contains the Ecoji-encoded value.
+     *
+     * @param offset The index of the first char of the encoded value.
+     *
+     * @return The decoded value.
+     *
+     * @throws IndexOutOfBoundsException If {@code offset} is out of the bounds of {@code encoded}.
+     *
+     * @throws IOException If the chars at {@code offset} are not an Ecoji-encoded {@link UUID}.
+     */
+    public static UUID decodeUuid(CharSequence encoded, int offset) throws IOException {
+        checkOffset(encoded, offset);
+        long g0 = groupAt(encoded, offset, "UUID");
+        long g1 = groupAt(encoded, offset + 8, "UUID");
+        long g2 = groupAt(encoded, offset + 16, "UUID");
+        int s = dataSymbolAt(encoded, offset + 24, "UUID");
+        paddingAt(encoded, offset + 26, "UUID");
+        paddingAt(encoded, offset + 27, "UUID");
+        paddingAt(encoded, offset + 28, "UUID");
+        return new UUID(g0 << 24 | g1 >>> 16, g1 << 48 | g2 << 8 | s >> 2);
+    }
+
+    private static void putGroup(char[] dst, int off, long bits) {
+        putSymbol(dst, off, (int) (bits >>> 30) & 0x3ff);
+        putSymbol(dst, off + 2, (int) (bits >>> 20) & 0x3ff);
+        putSymbol(dst, off + 4, (int) (bits >>> 10) & 0x3ff);
+        putSymbol(dst, off + 6, (int) bits & 0x3ff);
+    }
+
+    // Data emojis are always surrogate pairs, see EcojiEncoding
+    private static void putSymbol(char[] dst, int off, int symbol) {
+        int codePoint = Emojis.MAPPING[symbol];
+        dst[off] = Character.highSurrogate(codePoint);
+        dst[off + 1] = Character.lowSurrogate(codePoint);
+    }
+
+    private static void appendGroup(Appendable dst, long bits) throws IOException {
+        appendSymbol(dst, (int) (bits >>> 30) & 0x3ff);
+        appendSymbol(dst, (int) (bits >>> 20) & 0x3ff);
+        appendSymbol(dst, (int) (bits >>> 10) & 0x3ff);
+        appendSymbol(dst, (int) bits & 0x3ff);
+    }
+
+    private static void appendSymbol(Appendable dst, int symbol) throws IOException {
+        appendCodePoint(dst, Emojis.MAPPING[symbol]);
+    }
+
+    private static void appendCodePoint(Appendable dst, int codePoint) throws IOException {
+        if (Character.isBmpCodePoint(codePoint)) {
+            dst.append((char) codePoint);
+        } else {
+            dst.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    private static long groupAt(CharSequence encoded, int off, String type) throws IOException {
+        return (long) dataSymbolAt(encoded, off, type) << 30 |
+               (long) dataSymbolAt(encoded, off + 2, type) << 20 |
+               dataSymbolAt(encoded, off + 4, type) << 10 |
+               dataSymbolAt(encoded, off + 6, type);
+    }
+
+    private static int dataSymbolAt(CharSequence encoded, int off, String type) throws IOException {
+        int symbol = symbolAt(encoded, off, type);
+        if (symbol > 0x3ff) {
+            throw unexpectedInput(off, type);
+        }
+        return symbol;
+    }
+
+    private static void paddingAt(CharSequence encoded, int off, String type) throws IOException {
+        if (off >= encoded.length()) {
+            throw incompleteInput(type);
+        }
+        if (encoded.charAt(off) != Emojis.PADDING) {
+            throw unexpectedInput(off, type);
+        }
+    }
+
+    private static int symbolAt(CharSequence encoded, int off, String type) throws IOException {
+        if (off >= encoded.length()) {
+            throw incompleteInput(type);
+        }
+        char high = encoded.charAt(off);
+        int codePoint = high;
+        if (Character.isHighSurrogate(high)) {
+            if (off + 1 >= encoded.length()) {
+                throw incompleteInput(type);
+            }
+            char low = encoded.charAt(off + 1);
+            if (Character.isLowSurrogate(low)) {
+                codePoint = Character.toCodePoint(high, low);
+            }
+        }
+        int symbol = Emojis.symbolOf(codePoint);
+        if (symbol < 0) {
+            throw new IOException("Input code point " + codePoint + " at position " + off + " is not a part of " +
+                                  "the Ecoji alphabet");
+        }
+        return symbol;
+    }
+
+    private static IOException unexpectedInput(int off, String type) {
+        return new IOException("Unexpected code point at position " + off + " of an Ecoji-encoded " + type);
+    }
+
+    private static IOException incompleteInput(String type) {
+        return new IOException("Input ends in the middle of an Ecoji-encoded " + type);
+    }
+
+    private static void checkOffset(CharSequence encoded, int offset) {
+        if (offset < 0 || offset >= encoded.length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is out of bounds for length " +
+                                                encoded.length());
+        }
+    }
+
+    private static void checkRoom(char[] dst, int off, int length) {
+        if (off < 0 || off > dst.length - length) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + length + ") is out of " +
+                                                "bounds for length " + dst.length);
+        }
+    }
+}
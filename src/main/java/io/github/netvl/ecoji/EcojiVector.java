@@ -0,0 +1,39 @@
+package io.github.netvl.ecoji;
+
+/**
+ * SIMD kernels for runs of complete groups.
+ *
+ * <p>This is the version for JDKs without the Vector API, where the kernels are disabled. The multi-release JAR
+ * contains a version of this class for Java 17 and newer, which enables them when the {@code jdk.incubator.vector}
+ * module is available.</p>
+ *
+ * <p>All of the kernels process a prefix of the input consisting of complete groups which take the fast path of
+ * the scalar loops, and return the number of groups processed; the caller continues from there.</p>
+ */
+class EcojiVector {
+    // Not a compile time constant, so that it is not inlined into the callers compiled against this version
+    static final boolean ENABLED = enabled();
+
+    private EcojiVector() {
+    }
+
+    private static boolean enabled() {
+        return false;
+    }
+
+    static int encode(byte[] src, int off, int end, char[] dst, int dstOff) {
+        return 0;
+    }
+
+    static int encodeUtf8(byte[] src, int off, int end, byte[] dst, int dstOff) {
+        return 0;
+    }
+
+    static int decode(char[] src, int off, int end, byte[] dst, int dstOff, int dstEnd) {
+        return 0;
+    }
+
+    static int decodeUtf8(byte[] src, int off, int end, byte[] dst, int dstOff, int dstEnd) {
+        return 0;
+    }
+}
@@ -0,0 +1,206 @@
+package io.github.netvl.ecoji;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line wrapping of the encoded data.
+ *
+ * <p>Separators are inserted by the encoding loop itself: the complete groups which fit into the current line are
+ * encoded by the regular kernels directly into the destination array, right after the separator, and only a group
+ * which is split by the end of a line goes through a small scratch buffer. A separator is written before the first
+ * emoji of every line but the first one, so the output never ends with a separator, and its length is known
+ * exactly up front.</p>
+ *
+ * <p>An instance tracks the position in the current line, so it can only be used for one encoding operation;
+ * {@link #start()} returns a new instance with the same settings.</p>
+ */
+class EcojiWrapping {
+    private final int emojisPerLine;
+    private final char[] separator;
+    private final byte[] separatorUtf8;
+    private final int separatorCodePoints;
+
+    // Emojis written to the current line, and the buffers for a group which spans a line break
+    private int column;
+    private char[] scratch;
+    private byte[] scratchUtf8;
+
+    EcojiWrapping(int emojisPerLine, String separator) {
+        this.emojisPerLine = emojisPerLine;
+        this.separator = separator.toCharArray();
+        this.separatorUtf8 = separator.getBytes(StandardCharsets.UTF_8);
+        this.separatorCodePoints = separator.codePointCount(0, separator.length());
+    }
+
+    private EcojiWrapping(EcojiWrapping settings) {
+        this.emojisPerLine = settings.emojisPerLine;
+        this.separator = settings.separator;
+        this.separatorUtf8 = settings.separatorUtf8;
+        this.separatorCodePoints = settings.separatorCodePoints;
+    }
+
+    /**
+     * Returns a new instance with the same settings, positioned at the start of the first line.
+     */
+    EcojiWrapping start() {
+        return new EcojiWrapping(this);
+    }
+
+    /**
+     * Moves back to the start of the first line, for another encoding operation.
+     */
+    void restart() {
+        column = 0;
+    }
+
+    /**
+     * Returns the number of chars, or UTF-8 bytes if {@code utf8} is set, of the separators which are written
+     * before the next {@code emojis} emojis, continuing the current line.
+     */
+    int separatorsLength(int emojis, boolean utf8) {
+        int separators = emojis == 0 ? 0 : (column + emojis - 1) / emojisPerLine;
+        return separators * (utf8 ? separatorUtf8.length : separator.length);
+    }
+
+    /**
+     * Returns how many of the next {@code groups} complete groups of {@code groupSize} chars, or UTF-8 bytes if
+     * {@code utf8} is set, fit into {@code room} together with their separators, continuing the current line.
+     */
+    int fittingGroups(int groups, int groupSize, int room, boolean utf8) {
+        int separatorLength = utf8 ? separatorUtf8.length : separator.length;
+        while (groups > 0) {
+            int excess = groups * groupSize + separatorsLength(groups * 4, utf8) - room;
+            if (excess <= 0) {
+                break;
+            }
+            // a group takes at most 4 separators, so this never drops a group which fits
+            groups -= Math.max(1, excess / (groupSize + 4 * separatorLength));
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the number of separators in the encoded representation of {@code inputBytes} bytes.
+     */
+    long separators(long inputBytes) {
+        long emojis = (inputBytes + 4) / 5 * 4;
+        return emojis == 0 ? 0 : (emojis - 1) / emojisPerLine;
+    }
+
+    long encodedChars(long inputBytes, int lastByte) {
+        return EcojiEncoding.encodedChars(inputBytes, lastByte) + separators(inputBytes) * separator.length;
+    }
+
+    long encodedUtf8Bytes(long inputBytes, int lastByte) {
+        return EcojiEncoding.encodedUtf8Bytes(inputBytes, lastByte) + separators(inputBytes) * separatorUtf8.length;
+    }
+
+    long encodedCodePoints(long inputBytes) {
+        return (inputBytes + 4) / 5 * 4 + separators(inputBytes) * separatorCodePoints;
+    }
+
+    // A block may start with a separator wherever the line is, hence the extra one
+
+    int maxBlockChars(int len) {
+        int emojis = (len + 4) / 5 * 4;
+        return emojis * 2 + (emojis / emojisPerLine + 1) * separator.length;
+    }
+
+    int maxBlockUtf8Bytes(int len) {
+        int emojis = (len + 4) / 5 * 4;
+        return emojis * 4 + (emojis / emojisPerLine + 1) * separatorUtf8.length;
+    }
+
+    /**
+     * Encodes {@code len} bytes like {@link EcojiEncoding#encodeBlock(byte[], int, int, char[], int)}, continuing
+     * the current line, and returns the number of chars written.
+     */
+    int encodeBlock(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int end = off + len;
+        int p = dstOff;
+
+        while (off < end) {
+            if (column == emojisPerLine) {
+                System.arraycopy(separator, 0, dst, p, separator.length);
+                p += separator.length;
+                column = 0;
+            }
+
+            int n = Math.min((emojisPerLine - column) / 4 * 5, end - off);
+            if (n > 0) {
+                p += EcojiEncoding.encodeBlock(src, off, n, dst, p);
+                column += (n + 4) / 5 * 4;
+                off += n;
+                continue;
+            }
+
+            // the line ends inside of the next group
+            if (scratch == null) {
+                scratch = new char[EcojiEncoding.MAX_GROUP_CHARS];
+            }
+            n = Math.min(5, end - off);
+            int chars = EcojiEncoding.encodeBlock(src, off, n, scratch, 0);
+            for (int q = 0; q < chars; ++column) {
+                if (column == emojisPerLine) {
+                    System.arraycopy(separator, 0, dst, p, separator.length);
+                    p += separator.length;
+                    column = 0;
+                }
+                if (Character.isHighSurrogate(scratch[q])) {
+                    dst[p++] = scratch[q++];
+                }
+                dst[p++] = scratch[q++];
+            }
+            off += n;
+        }
+
+        return p - dstOff;
+    }
+
+    /**
+     * Encodes {@code len} bytes like {@link EcojiEncoding#encodeBlockUtf8(byte[], int, int, byte[], int)},
+     * continuing the current line, and returns the number of bytes written.
+     */
+    int encodeBlockUtf8(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int end = off + len;
+        int p = dstOff;
+
+        while (off < end) {
+            if (column == emojisPerLine) {
+                System.arraycopy(separatorUtf8, 0, dst, p, separatorUtf8.length);
+                p += separatorUtf8.length;
+                column = 0;
+            }
+
+            int n = Math.min((emojisPerLine - column) / 4 * 5, end - off);
+            if (n > 0) {
+                p += EcojiEncoding.encodeBlockUtf8(src, off, n, dst, p);
+                column += (n + 4) / 5 * 4;
+                off += n;
+                continue;
+            }
+
+            // the line ends inside of the next group
+            if (scratchUtf8 == null) {
+                scratchUtf8 = new byte[EcojiEncoding.MAX_GROUP_UTF8_BYTES];
+            }
+            n = Math.min(5, end - off);
+            int bytes = EcojiEncoding.encodeBlockUtf8(src, off, n, scratchUtf8, 0);
+            for (int q = 0; q < bytes; ++column) {
+                if (column == emojisPerLine) {
+                    System.arraycopy(separatorUtf8, 0, dst, p, separatorUtf8.length);
+                    p += separatorUtf8.length;
+                    column = 0;
+                }
+                // the emojis take 4 bytes, except for the padding ones from the BMP, which take 3
+                int size = (scratchUtf8[q] & 0xf8) == 0xf0 ? 4 : 3;
+                System.arraycopy(scratchUtf8, q, dst, p, size);
+                p += size;
+                q += size;
+            }
+            off += n;
+        }
+
+        return p - dstOff;
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.netvl.ecoji;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SIMD kernels for runs of complete groups.
+ *
+ * <p>This is the version for Java 17 and newer. The kernels are enabled if the {@code jdk.incubator.vector} module
+ * is available (e.g. with {@code --add-modules jdk.incubator.vector}), the platform is supported, and the kernels
+ * agree with the scalar code on a sample input. They can be disabled explicitly by setting the
+ * {@code io.github.netvl.ecoji.vector} system property to {@code false}.</p>
+ *
+ * <p>The Vector API types are only referenced from {@link EcojiVectorKernels}, which is not loaded unless
+ * the kernels are enabled.</p>
+ */
+class EcojiVector {
+    static final boolean ENABLED = enabled();
+
+    private EcojiVector() {
+    }
+
+    private static boolean enabled() {
+        if (!Boolean.parseBoolean(System.getProperty("io.github.netvl.ecoji.vector", "true"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+
+        try {
+            return EcojiVectorKernels.isSupported() && agreesWithScalar();
+        } catch (LinkageError | RuntimeException e) {
+            // the incubating API has changed in an incompatible way
+            return false;
+        }
+    }
+
+    // While this class is being initialized, ENABLED reads as false, so the block functions are scalar here
+    private static boolean agreesWithScalar() {
+        byte[] bytes = new byte[EcojiVectorKernels.MIN_BYTES * 4];
+        new Random(1024).nextBytes(bytes);
+        int groups = bytes.length / 5;
+
+        char[] chars = new char[groups * EcojiEncoding.MAX_GROUP_CHARS];
+        char[] vectorChars = new char[chars.length];
+        EcojiEncoding.encodeBlock(bytes, 0, groups * 5, chars, 0);
+        int n = EcojiVectorKernels.encode(bytes, 0, groups * 5, vectorChars, 0);
+
+        byte[] utf8 = new byte[groups * EcojiEncoding.MAX_GROUP_UTF8_BYTES];
+        byte[] vectorUtf8 = new byte[utf8.length];
+        EcojiEncoding.encodeBlockUtf8(bytes, 0, groups * 5, utf8, 0);
+        int m = EcojiVectorKernels.encodeUtf8(bytes, 0, groups * 5, vectorUtf8, 0);
+
+        byte[] decoded = new byte[groups * 5];
+        int k = EcojiVectorKernels.decode(chars, 0, chars.length, decoded, 0, decoded.length);
+        byte[] decodedUtf8 = new byte[groups * 5];
+        int l = EcojiVectorKernels.decodeUtf8(utf8, 0, utf8.length, decodedUtf8, 0, decodedUtf8.length);
+
+        return n > 0 && Arrays.equals(Arrays.copyOf(chars, n * EcojiEncoding.MAX_GROUP_CHARS),
+                                      Arrays.copyOf(vectorChars, n * EcojiEncoding.MAX_GROUP_CHARS)) &&
+               m > 0 && Arrays.equals(Arrays.copyOf(utf8, m * EcojiEncoding.MAX_GROUP_UTF8_BYTES),
+                                      Arrays.copyOf(vectorUtf8, m * EcojiEncoding.MAX_GROUP_UTF8_BYTES)) &&
+               k > 0 && Arrays.equals(Arrays.copyOf(bytes, k * 5), Arrays.copyOf(decoded, k * 5)) &&
+               l > 0 && Arrays.equals(Arrays.copyOf(bytes, l * 5), Arrays.copyOf(decodedUtf8, l * 5));
+    }
+
+    static int encode(byte[] src, int off, int end, char[] dst, int dstOff) {
+        return EcojiVectorKernels.encode(src, off, end, dst, dstOff);
+    }
+
+    static int encodeUtf8(byte[] src, int off, int end, byte[] dst, int dstOff) {
+        return EcojiVectorKernels.encodeUtf8(src, off, end, dst, dstOff);
+    }
+
+    static int decode(char[] src, int off, int end, byte[] dst, int dstOff, int dstEnd) {
+        return EcojiVectorKernels.decode(src, off, end, dst, dstOff, dstEnd);
+    }
+
+    static int decodeUtf8(byte[] src, int off, int end, byte[] dst, int dstOff, int dstEnd) {
+        return EcojiVectorKernels.decodeUtf8(src, off, end, dst, dstOff, dstEnd);
+    }
+}
@@ -0,0 +1,233 @@
+package io.github.netvl.ecoji;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteOrder;
+
+/**
+ * Vector API implementations of the {@link EcojiVector} kernels.
+ *
+ * <p>Every int lane holds one code point of a group, so a vector of {@code L} ints covers {@code L / 4} groups.
+ * Encoding extracts the 10-bit symbols of all lanes at once with a byte shuffle and per-lane shifts, and gathers
+ * the UTF-16 or UTF-8 representations of the emojis from tables laid out in the native (little-endian) byte
+ * order, so that the gathered ints can be stored directly. Decoding validates and decodes the surrogate pairs or
+ * 4-byte UTF-8 sequences of all lanes at once, and gathers the symbols from a table which covers the range of
+ * the alphabet; packing the symbols into bytes is left to scalar code.</p>
+ *
+ * <p>Vectors are never passed to or returned from helper methods: when C2 does not inline such a method, e.g. when it
+ * has already been compiled on its own into a large method, the vectors crossing the call are boxed, which makes
+ * every call allocate.</p>
+ */
+class EcojiVectorKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = INTS.length();
+    private static final int GROUPS = LANES / 4;
+
+    // Enough bytes for the shuffles, which read 5 bytes per group plus the first byte of the next group
+    private static final VectorSpecies<Byte> ENCODE_BYTES =
+        VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 2)));
+    private static final VectorSpecies<Byte> DECODE_BYTES =
+        VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.vectorBitSize()));
+    private static final VectorSpecies<Short> DECODE_CHARS =
+        VectorSpecies.of(short.class, VectorShape.forBitSize(INTS.vectorBitSize()));
+
+    // The kernels are not worth it for shorter inputs
+    static final int MIN_BYTES = ENCODE_BYTES.length() * 4;
+
+    // Lane i takes the bytes which contain the high and the low bits of its symbol, respectively, and shifts
+    // the 16-bit combination of them right by the corresponding amount
+    private static final VectorShuffle<Byte> HIGH_BYTES;
+    private static final VectorShuffle<Byte> LOW_BYTES;
+    private static final IntVector SHIFTS;
+
+    // Indices for the gathers; the gathers take them from an array, which is kept per thread, so that the kernels
+    // do not allocate anything
+    private static final ThreadLocal<int[]> INDICES = ThreadLocal.withInitial(() -> new int[LANES]);
+
+    private static final int[] MAPPING_UTF16 = new int[Emojis.MAPPING.length];
+    private static final int[] MAPPING_UTF8 = new int[Emojis.MAPPING.length];
+
+    // Symbols of the code points in [SYMBOLS_BASE, SYMBOLS_BASE + SYMBOLS.length), which covers all data emojis
+    private static final int SYMBOLS_BASE;
+    private static final int[] SYMBOLS;
+
+    static {
+        int[] high = new int[ENCODE_BYTES.length()];
+        int[] low = new int[ENCODE_BYTES.length()];
+        int[] shifts = new int[LANES];
+        for (int i = 0; i < LANES; ++i) {
+            high[i] = i / 4 * 5 + i % 4;
+            low[i] = high[i] + 1;
+            shifts[i] = 6 - 2 * (i % 4);
+        }
+        HIGH_BYTES = VectorShuffle.fromArray(ENCODE_BYTES, high, 0);
+        LOW_BYTES = VectorShuffle.fromArray(ENCODE_BYTES, low, 0);
+        SHIFTS = IntVector.fromArray(INTS, shifts, 0);
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < Emojis.MAPPING.length; ++i) {
+            int c = Emojis.MAPPING[i];
+            MAPPING_UTF16[i] = Character.highSurrogate(c) | Character.lowSurrogate(c) << 16;
+            MAPPING_UTF8[i] = (0xf0 | c >> 18) |
+                              (0x80 | c >> 12 & 0x3f) << 8 |
+                              (0x80 | c >> 6 & 0x3f) << 16 |
+                              (0x80 | c & 0x3f) << 24;
+            min = Math.min(min, c);
+            max = Math.max(max, c);
+        }
+
+        SYMBOLS_BASE = min;
+        SYMBOLS = new int[max - min + 1];
+        for (int i = 0; i < SYMBOLS.length; ++i) {
+            SYMBOLS[i] = Emojis.symbolOf(SYMBOLS_BASE + i);
+        }
+    }
+
+    private EcojiVectorKernels() {
+    }
+
+    static boolean isSupported() {
+        return ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN && LANES >= 4 && LANES % 4 == 0;
+    }
+
+    static int encode(byte[] src, int off, int end, char[] dst, int dstOff) {
+        if (end - off < MIN_BYTES) {
+            return 0;
+        }
+
+        int[] indices = INDICES.get();
+        int groups = 0;
+        for (int p = off; end - p >= ENCODE_BYTES.length(); p += GROUPS * 5) {
+            // the 10-bit symbols of all lanes
+            ByteVector bytes = ByteVector.fromArray(ENCODE_BYTES, src, p);
+            IntVector high = (IntVector) bytes.rearrange(HIGH_BYTES).convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector low = (IntVector) bytes.rearrange(LOW_BYTES).convertShape(VectorOperators.B2I, INTS, 0);
+            high.and(0xff).lanewise(VectorOperators.LSHL, 8).or(low.and(0xff))
+                .lanewise(VectorOperators.LSHR, SHIFTS).and(0x3ff)
+                .intoArray(indices, 0);
+
+            IntVector.fromArray(INTS, MAPPING_UTF16, 0, indices, 0)
+                     .reinterpretAsShorts()
+                     .intoCharArray(dst, dstOff + groups * EcojiEncoding.MAX_GROUP_CHARS);
+            groups += GROUPS;
+        }
+        return groups;
+    }
+
+    static int encodeUtf8(byte[] src, int off, int end, byte[] dst, int dstOff) {
+        if (end - off < MIN_BYTES) {
+            return 0;
+        }
+
+        int[] indices = INDICES.get();
+        int groups = 0;
+        for (int p = off; end - p >= ENCODE_BYTES.length(); p += GROUPS * 5) {
+            // the 10-bit symbols of all lanes
+            ByteVector bytes = ByteVector.fromArray(ENCODE_BYTES, src, p);
+            IntVector high = (IntVector) bytes.rearrange(HIGH_BYTES).convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector low = (IntVector) bytes.rearrange(LOW_BYTES).convertShape(VectorOperators.B2I, INTS, 0);
+            high.and(0xff).lanewise(VectorOperators.LSHL, 8).or(low.and(0xff))
+                .lanewise(VectorOperators.LSHR, SHIFTS).and(0x3ff)
+                .intoArray(indices, 0);
+
+            IntVector.fromArray(INTS, MAPPING_UTF8, 0, indices, 0)
+                     .reinterpretAsBytes()
+                     .intoArray(dst, dstOff + groups * EcojiEncoding.MAX_GROUP_UTF8_BYTES);
+            groups += GROUPS;
+        }
+        return groups;
+    }
+
+    static int decode(char[] src, int off, int end, byte[] dst, int dstOff, int dstEnd) {
+        int step = LANES * 2;
+        if (end - off < step || dstEnd - dstOff < GROUPS * 5) {
+            return 0;
+        }
+
+        int[] buffer = INDICES.get();
+        int groups = 0;
+        for (int p = off; end - p >= step && dstEnd - (dstOff + groups * 5) >= GROUPS * 5; p += step) {
+            // high surrogates in the low halves of the lanes, low surrogates in the high halves
+            IntVector pairs = ShortVector.fromCharArray(DECODE_CHARS, src, p).reinterpretAsInts();
+            if (pairs.and(0xfc00fc00).compare(VectorOperators.NE, 0xdc00d800).anyTrue()) {
+                break;
+            }
+
+            IntVector codePoints = pairs.and(0x3ff).lanewise(VectorOperators.LSHL, 10)
+                                        .or(pairs.lanewise(VectorOperators.LSHR, 16).and(0x3ff))
+                                        .add(0x10000);
+            // the symbols of the code points, unless some of them are not data symbols
+            IntVector indices = codePoints.sub(SYMBOLS_BASE);
+            if (indices.compare(VectorOperators.UNSIGNED_GE, SYMBOLS.length).anyTrue()) {
+                break;
+            }
+            indices.intoArray(buffer, 0);
+            IntVector symbols = IntVector.fromArray(INTS, SYMBOLS, 0, buffer, 0);
+            if (symbols.compare(VectorOperators.UNSIGNED_GT, 0x3ff).anyTrue()) {
+                break;
+            }
+            symbols.intoArray(buffer, 0);
+
+            packSymbols(buffer, dst, dstOff + groups * 5);
+            groups += GROUPS;
+        }
+        return groups;
+    }
+
+    static int decodeUtf8(byte[] src, int off, int end, byte[] dst, int dstOff, int dstEnd) {
+        int step = LANES * 4;
+        if (end - off < step || dstEnd - dstOff < GROUPS * 5) {
+            return 0;
+        }
+
+        int[] buffer = INDICES.get();
+        int groups = 0;
+        for (int p = off; end - p >= step && dstEnd - (dstOff + groups * 5) >= GROUPS * 5; p += step) {
+            // a 4-byte sequence in every lane, with the lead byte in the lowest bits
+            IntVector sequences = ByteVector.fromArray(DECODE_BYTES, src, p).reinterpretAsInts();
+            if (sequences.and(0xc0c0c0f8).compare(VectorOperators.NE, 0x808080f0).anyTrue()) {
+                break;
+            }
+
+            IntVector codePoints = sequences.and(0x07).lanewise(VectorOperators.LSHL, 18)
+                                            .or(sequences.lanewise(VectorOperators.LSHL, 4).and(0x3f << 12))
+                                            .or(sequences.lanewise(VectorOperators.LSHR, 10).and(0x3f << 6))
+                                            .or(sequences.lanewise(VectorOperators.LSHR, 24).and(0x3f));
+            // the symbols of the code points, unless some of them are not data symbols
+            IntVector indices = codePoints.sub(SYMBOLS_BASE);
+            if (indices.compare(VectorOperators.UNSIGNED_GE, SYMBOLS.length).anyTrue()) {
+                break;
+            }
+            indices.intoArray(buffer, 0);
+            IntVector symbols = IntVector.fromArray(INTS, SYMBOLS, 0, buffer, 0);
+            if (symbols.compare(VectorOperators.UNSIGNED_GT, 0x3ff).anyTrue()) {
+                break;
+            }
+            symbols.intoArray(buffer, 0);
+
+            packSymbols(buffer, dst, dstOff + groups * 5);
+            groups += GROUPS;
+        }
+        return groups;
+    }
+
+    // Packs the symbols of all lanes into dst
+    private static void packSymbols(int[] buffer, byte[] dst, int dp) {
+        for (int i = 0; i < LANES; i += 4) {
+            int s0 = buffer[i], s1 = buffer[i + 1], s2 = buffer[i + 2], s3 = buffer[i + 3];
+            dst[dp] = (byte) (s0 >> 2);
+            dst[dp + 1] = (byte) ((s0 & 0x3) << 6 | s1 >> 4);
+            dst[dp + 2] = (byte) ((s1 & 0xf) << 4 | s2 >> 6);
+            dst[dp + 3] = (byte) ((s2 & 0x3f) << 2 | s3 >> 8);
+            dst[dp + 4] = (byte) s3;
+            dp += 5;
+        }
+    }
+}
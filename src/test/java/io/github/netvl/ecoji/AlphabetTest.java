@@ -0,0 +1,67 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlphabetTest {
+    @Test
+    void testV1Tables() {
+        EcojiAlphabet alphabet = EcojiAlphabet.V1;
+        assertEquals(1, alphabet.version());
+        assertEquals("Ecoji v1", alphabet.toString());
+        assertEquals(1024, alphabet.mapping.length);
+
+        for (int i = 0; i < alphabet.mapping.length; ++i) {
+            int c = alphabet.mapping[i];
+            assertEquals(i, alphabet.symbolOf(c));
+            assertEquals(c, Character.toCodePoint(alphabet.mappingHigh[i], alphabet.mappingLow[i]));
+
+            byte[] utf8 = new String(Character.toChars(c)).getBytes(StandardCharsets.UTF_8);
+            assertEquals((utf8[0] & 0xff) << 24 | (utf8[1] & 0xff) << 16 | (utf8[2] & 0xff) << 8 | utf8[3] & 0xff,
+                         alphabet.mappingUtf8[i]);
+        }
+
+        assertEquals(Emojis.SYMBOL_PADDING, alphabet.symbolOf(alphabet.padding));
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(Emojis.SYMBOL_PADDING_4 | i, alphabet.symbolOf(alphabet.paddings4[i]));
+        }
+
+        assertTrue(alphabet.contains(0x2615));
+        assertFalse(alphabet.contains('a'));
+        assertFalse(alphabet.contains(-1));
+        assertFalse(alphabet.contains(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testDetect() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abc").writeToString();
+        assertSame(EcojiAlphabet.V1, EcojiAlphabet.detect(encoded));
+        assertSame(EcojiAlphabet.V1, EcojiAlphabet.detect(" \n" + encoded));
+        assertSame(EcojiAlphabet.V1, EcojiAlphabet.detect(""));
+        assertSame(EcojiAlphabet.V1, EcojiAlphabet.detect("abc"));
+
+        byte[] utf8 = ("\n" + encoded).getBytes(StandardCharsets.UTF_8);
+        assertSame(EcojiAlphabet.V1, EcojiAlphabet.detectUtf8(utf8, 0, utf8.length));
+        assertSame(EcojiAlphabet.V1, EcojiAlphabet.detectUtf8(new byte[]{(byte) 0xf0, (byte) 0x9f}, 0, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> EcojiAlphabet.detectUtf8(utf8, 1, utf8.length));
+    }
+
+    @Test
+    void testSelection() throws IOException {
+        assertSame(Ecoji.getEncoder(), Ecoji.getEncoder(EcojiAlphabet.V1));
+        assertSame(Ecoji.getDecoder(), Ecoji.getDecoder(EcojiAlphabet.V1));
+        assertThrows(NullPointerException.class, () -> Ecoji.getEncoder(null));
+        assertThrows(NullPointerException.class, () -> Ecoji.getDecoder(null));
+
+        String encoded = Ecoji.getEncoder(EcojiAlphabet.V1).readFrom("abcdef").writeToString();
+        assertEquals("abcdef", Ecoji.getDecoder(EcojiAlphabet.detect(encoded)).readFrom(encoded).writeToString());
+    }
+}
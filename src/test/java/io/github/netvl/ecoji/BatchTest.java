@@ -0,0 +1,143 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchTest {
+    @Test
+    void testRoundTrip() throws IOException {
+        List<byte[]> values = randomValues(200);
+        Ecoji.Encoder encoder = Ecoji.getEncoder();
+
+        int[] offsets = new int[values.size() + 1];
+        char[] chars = encoder.encodeBatch(values, offsets);
+        int[] utf8Offsets = new int[values.size() + 1];
+        byte[] utf8 = encoder.encodeBatchUtf8(values, utf8Offsets);
+
+        assertEquals(chars.length, offsets[values.size()]);
+        assertEquals(utf8.length, utf8Offsets[values.size()]);
+        for (int i = 0; i < values.size(); ++i) {
+            String expected = encoder.readFrom(values.get(i)).writeToString();
+            assertEquals(expected, new String(chars, offsets[i], offsets[i + 1] - offsets[i]));
+            assertEquals(expected, new String(utf8, utf8Offsets[i], utf8Offsets[i + 1] - utf8Offsets[i],
+                                              StandardCharsets.UTF_8));
+        }
+
+        int[] decodedOffsets = new int[values.size() + 1];
+        assertDecoded(values, Ecoji.getDecoder().decodeBatch(chars, offsets, decodedOffsets), decodedOffsets);
+        Arrays.fill(decodedOffsets, -1);
+        assertDecoded(values, Ecoji.getDecoder().decodeBatchUtf8(utf8, utf8Offsets, decodedOffsets), decodedOffsets);
+    }
+
+    @Test
+    void testBuffer() throws IOException {
+        List<byte[]> values = randomValues(50);
+        int[] bufferOffsets = new int[values.size() + 1];
+        for (int i = 0; i < values.size(); ++i) {
+            bufferOffsets[i + 1] = bufferOffsets[i] + values.get(i).length;
+        }
+        byte[] buffer = new byte[bufferOffsets[values.size()]];
+        for (int i = 0; i < values.size(); ++i) {
+            System.arraycopy(values.get(i), 0, buffer, bufferOffsets[i], values.get(i).length);
+        }
+
+        Ecoji.Encoder encoder = Ecoji.getEncoder();
+        int[] offsets = new int[values.size() + 1];
+        int[] bufferResultOffsets = new int[values.size() + 1];
+        assertArrayEquals(encoder.encodeBatch(values, offsets),
+                          encoder.encodeBatch(buffer, bufferOffsets, bufferResultOffsets));
+        assertArrayEquals(offsets, bufferResultOffsets);
+        assertArrayEquals(encoder.encodeBatchUtf8(values, offsets),
+                          encoder.encodeBatchUtf8(buffer, bufferOffsets, bufferResultOffsets));
+        assertArrayEquals(offsets, bufferResultOffsets);
+
+        // the decoded values are laid out like the buffer
+        char[] chars = encoder.encodeBatch(buffer, bufferOffsets, offsets);
+        int[] decodedOffsets = new int[values.size() + 1];
+        assertArrayEquals(buffer, Ecoji.getDecoder().decodeBatch(chars, offsets, decodedOffsets));
+        assertArrayEquals(bufferOffsets, decodedOffsets);
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        int[] offsets = {-1};
+        assertEquals(0, Ecoji.getEncoder().encodeBatch(new ArrayList<byte[]>(), offsets).length);
+        assertArrayEquals(new int[]{0}, offsets);
+        assertEquals(0, Ecoji.getDecoder().decodeBatch(new char[0], new int[]{0}, new int[1]).length);
+    }
+
+    @Test
+    void testWrapped() throws IOException {
+        List<byte[]> values = randomValues(30);
+        Ecoji.WrappingEncoder encoder = Ecoji.getEncoder().wrapAt(3, "\n");
+        int[] offsets = new int[values.size() + 1];
+        char[] chars = encoder.encodeBatch(values, offsets);
+        for (int i = 0; i < values.size(); ++i) {
+            assertEquals(encoder.readFrom(values.get(i)).writeToString(),
+                         new String(chars, offsets[i], offsets[i + 1] - offsets[i]));
+        }
+
+        int[] decodedOffsets = new int[values.size() + 1];
+        assertDecoded(values, Ecoji.getDecoder().lenient().decodeBatch(chars, offsets, decodedOffsets),
+                      decodedOffsets);
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().decodeBatch(chars, offsets, new int[offsets.length]));
+    }
+
+    @Test
+    void testInvalid() throws IOException {
+        List<byte[]> values = Arrays.asList("abcdef".getBytes(StandardCharsets.US_ASCII),
+                                            "ghi".getBytes(StandardCharsets.US_ASCII));
+        int[] offsets = new int[3];
+        char[] chars = Ecoji.getEncoder().encodeBatch(values, offsets);
+
+        // every value must be complete on its own
+        int[] split = {0, offsets[1] - 2, offsets[2]};
+        IOException e = assertThrows(IOException.class,
+                                     () -> Ecoji.getDecoder().decodeBatch(chars, split, new int[3]));
+        assertTrue(e.getMessage().startsWith("Unexpected end of value 0 of the batch"));
+
+        char[] corrupted = chars.clone();
+        corrupted[offsets[1]] = 'x';
+        e = assertThrows(IOException.class, () -> Ecoji.getDecoder().decodeBatch(corrupted, offsets, new int[3]));
+        assertEquals("Input code point 120 at position " + offsets[1] + " is not a part of the Ecoji alphabet",
+                     e.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.getEncoder().encodeBatch(values, new int[2]));
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.getDecoder().decodeBatch(chars, offsets, new int[2]));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Ecoji.getEncoder().encodeBatch(new byte[1], new int[0], new int[1]));
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> Ecoji.getEncoder().encodeBatch(new byte[4], new int[]{0, 3, 2}, new int[3]));
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> Ecoji.getDecoder().decodeBatch(chars, new int[]{0, chars.length + 1}, new int[2]));
+    }
+
+    private static List<byte[]> randomValues(int count) {
+        Random random = new Random(42);
+        List<byte[]> values = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            byte[] value = new byte[random.nextInt(24)];
+            random.nextBytes(value);
+            values.add(value);
+        }
+        return values;
+    }
+
+    private static void assertDecoded(List<byte[]> values, byte[] decoded, int[] decodedOffsets) {
+        assertEquals(decoded.length, decodedOffsets[values.size()]);
+        for (int i = 0; i < values.size(); ++i) {
+            assertArrayEquals(values.get(i), Arrays.copyOfRange(decoded, decodedOffsets[i], decodedOffsets[i + 1]));
+        }
+    }
+}
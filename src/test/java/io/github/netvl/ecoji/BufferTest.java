@@ -0,0 +1,168 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferTest {
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void testEncodeHeapBuffers() throws IOException {
+        byte[] bytes = randomBytes(1003);
+        CharBuffer dst = CharBuffer.allocate(2000);
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getEncoder().encode(ByteBuffer.wrap(bytes), dst));
+
+        dst.flip();
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), dst.toString());
+    }
+
+    @Test
+    void testEncodeDirectBuffer() throws IOException {
+        byte[] bytes = randomBytes(1003);
+        ByteBuffer src = ByteBuffer.allocateDirect(bytes.length);
+        src.put(bytes).flip();
+        CharBuffer dst = CharBuffer.allocate(2000);
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getEncoder().encode(src, dst));
+
+        dst.flip();
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), dst.toString());
+    }
+
+    @Test
+    void testEncodeWithoutArraysInBlocks() throws IOException {
+        // both buffers go through the windows, for several blocks and the padded tail
+        byte[] bytes = randomBytes(EcojiEncoding.BLOCK_SIZE * 2 + 3);
+        ByteBuffer src = ByteBuffer.allocateDirect(bytes.length);
+        src.put(bytes).flip();
+        int length = (int) Ecoji.getEncoder().encodedLength(bytes.length);
+        CharBuffer dst = ByteBuffer.allocateDirect(length * 2).asCharBuffer();
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getEncoder().encode(src.asReadOnlyBuffer(), dst));
+
+        dst.flip();
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), dst.toString());
+    }
+
+    @Test
+    void testEncodeLeavesIncompleteGroup() {
+        ByteBuffer src = ByteBuffer.wrap(randomBytes(13));
+        CharBuffer dst = CharBuffer.allocate(100);
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getEncoder().encode(src, dst, false));
+        assertEquals(10, src.position());
+        assertEquals(16, dst.position());
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getEncoder().encode(src, dst, true));
+        assertFalse(src.hasRemaining());
+    }
+
+    @Test
+    void testEncodeOverflow() throws IOException {
+        byte[] bytes = randomBytes(12);
+        ByteBuffer src = ByteBuffer.wrap(bytes);
+        CharBuffer dst = CharBuffer.allocate(12);
+        StringBuilder result = new StringBuilder();
+
+        assertEquals(CoderResult.OVERFLOW, Ecoji.getEncoder().encode(src, dst));
+        assertEquals(5, src.position());
+        dst.flip();
+        result.append(dst);
+        dst.clear();
+
+        assertEquals(CoderResult.OVERFLOW, Ecoji.getEncoder().encode(src, dst));
+        assertEquals(10, src.position());
+        dst.flip();
+        result.append(dst);
+        dst.clear();
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getEncoder().encode(src, dst));
+        dst.flip();
+        result.append(dst);
+
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), result.toString());
+    }
+
+    @Test
+    void testDecodeHeapBuffers() throws IOException {
+        byte[] bytes = randomBytes(1003);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+        ByteBuffer dst = ByteBuffer.allocate(bytes.length);
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getDecoder().decode(CharBuffer.wrap(encoded.toCharArray()), dst));
+
+        assertFalse(dst.hasRemaining());
+        assertArrayEquals(bytes, dst.array());
+    }
+
+    @Test
+    void testDecodeDirectBuffer() throws IOException {
+        byte[] bytes = randomBytes(1003);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+        ByteBuffer dst = ByteBuffer.allocateDirect(bytes.length);
+
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getDecoder().decode(CharBuffer.wrap(encoded), dst));
+
+        dst.flip();
+        byte[] decoded = new byte[dst.remaining()];
+        dst.get(decoded);
+        assertArrayEquals(bytes, decoded);
+    }
+
+    @Test
+    void testDecodeSplitInput() throws IOException {
+        byte[] bytes = randomBytes(10);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+        ByteBuffer dst = ByteBuffer.allocate(10);
+
+        // the first group and a half of the first surrogate pair of the second group
+        CharBuffer src = CharBuffer.allocate(encoded.length());
+        src.append(encoded, 0, 9).flip();
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getDecoder().decode(src, dst, false));
+        assertEquals(8, src.position());
+        assertEquals(5, dst.position());
+
+        src.compact().append(encoded, 9, encoded.length()).flip();
+        assertEquals(CoderResult.UNDERFLOW, Ecoji.getDecoder().decode(src, dst, true));
+        assertArrayEquals(bytes, dst.array());
+    }
+
+    @Test
+    void testDecodeIncompleteInput() {
+        CharBuffer src = CharBuffer.wrap("👖📸🎈");
+
+        CoderResult result = Ecoji.getDecoder().decode(src, ByteBuffer.allocate(5));
+
+        assertTrue(result.isMalformed());
+        assertEquals(6, result.length());
+        assertEquals(0, src.position());
+    }
+
+    @Test
+    void testDecodeMalformedInput() {
+        CharBuffer src = CharBuffer.wrap("👖📸🎈☕👖📸a☕");
+        ByteBuffer dst = ByteBuffer.allocate(10);
+
+        CoderResult result = Ecoji.getDecoder().decode(src, dst);
+
+        assertTrue(result.isMalformed());
+        assertEquals(1, result.length());
+        assertEquals(11, src.position());
+        assertEquals(3, dst.position());
+    }
+}
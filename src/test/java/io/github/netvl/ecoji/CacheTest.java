@@ -0,0 +1,139 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheTest {
+    @Test
+    void testResultsAndStats() throws IOException {
+        EcojiCache cache = Ecoji.newCache(100, 64);
+        byte[] bytes = "token".getBytes(StandardCharsets.US_ASCII);
+        String expected = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+        assertEquals(expected, cache.encode(bytes));
+        assertEquals(expected, cache.encode(bytes.clone()));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        byte[] decoded = cache.decode(expected);
+        assertArrayEquals(bytes, decoded);
+        // the cached result is not shared with the caller
+        decoded[0] = 0;
+        assertArrayEquals(bytes, cache.decode(expected));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.size());
+
+        // neither is the cached key
+        bytes[0] = 0;
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), cache.encode(bytes));
+        assertEquals(3, cache.missCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.missCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        EcojiCache cache = new EcojiCache(2, 64, 1);
+        byte[] a = {1};
+        byte[] b = {2};
+        byte[] c = {3};
+
+        cache.encode(a);
+        cache.encode(b);
+        cache.encode(a);
+        cache.encode(c);
+        assertEquals(2, cache.size());
+
+        // b was the least recently used one
+        long misses = cache.missCount();
+        cache.encode(a);
+        cache.encode(c);
+        assertEquals(misses, cache.missCount());
+        cache.encode(b);
+        assertEquals(misses + 1, cache.missCount());
+    }
+
+    @Test
+    void testBounds() throws IOException {
+        EcojiCache cache = Ecoji.newCache(10, 8);
+        Random random = new Random(42);
+        for (int i = 0; i < 100; ++i) {
+            byte[] bytes = new byte[random.nextInt(9)];
+            random.nextBytes(bytes);
+            cache.encode(bytes);
+            assertTrue(cache.size() <= 10);
+        }
+
+        // inputs above the limit are not cached nor counted
+        cache.clear();
+        long hits = cache.hitCount();
+        long misses = cache.missCount();
+        byte[] large = new byte[9];
+        String encoded = cache.encode(large);
+        assertEquals(encoded, cache.encode(large));
+        assertArrayEquals(large, cache.decode(encoded));
+        assertEquals(0, cache.size());
+        assertEquals(hits, cache.hitCount());
+        assertEquals(misses, cache.missCount());
+
+        assertThrows(IOException.class, () -> cache.decode("x"));
+        assertEquals(0, cache.size());
+
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.newCache(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.newCache(10, -1));
+    }
+
+    @Test
+    void testConcurrentAccess() throws Exception {
+        final EcojiCache cache = Ecoji.newCache(50, 64);
+        final List<byte[]> values = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100; ++i) {
+            byte[] value = new byte[random.nextInt(20)];
+            random.nextBytes(value);
+            values.add(value);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random r = new Random(seed);
+                    for (int i = 0; i < 10000; ++i) {
+                        byte[] value = values.get(r.nextInt(values.size()));
+                        String encoded = cache.encode(value);
+                        assertEquals(Ecoji.getEncoder().readFrom(value).writeToString(), encoded);
+                        assertArrayEquals(value, cache.decode(encoded));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(80000, cache.hitCount() + cache.missCount());
+        assertTrue(cache.size() <= 50);
+    }
+}
@@ -2,10 +2,20 @@ package io.github.netvl.ecoji;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class DecodingTest {
     @Test
@@ -88,6 +98,94 @@ class DecodingTest {
         ).isDecodedAs(0xAB, 0xCD, 0xEF, 0x01, 0x23);
     }
 
+    @Test
+    void testSplitReads() throws IOException {
+        byte[] bytes = new byte[EcojiDecoding.BLOCK_SIZE + 3];
+        new Random(42).nextBytes(bytes);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+        // returns an odd number of chars per call, so that both surrogate pairs and groups are split between reads
+        Reader trickle = new FilterReader(new StringReader(encoded)) {
+            private final Random random = new Random(42);
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1 + 2 * random.nextInt(8)));
+            }
+        };
+
+        assertArrayEquals(bytes, Ecoji.getDecoder().readFrom(trickle).writeToBytes());
+    }
+
+    @Test
+    void testInvalidCodePoint() {
+        IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom("👖📸a☕").writeToBytes());
+        assertEquals("Input code point 97 at position 4 is not a part of the Ecoji alphabet", e.getMessage());
+    }
+
+    @Test
+    void testUnpairedSurrogate() {
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom("👖📸\ud83c☕").writeToBytes());
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom("👖📸\udf88☕").writeToBytes());
+    }
+
+    @Test
+    void testIncompleteGroup() {
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom("👖📸🎈").writeToBytes());
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom("👖📸🎈\ud83c").writeToBytes());
+    }
+
+    @Test
+    void testUtf8SplitReads() throws IOException {
+        byte[] bytes = new byte[EcojiDecoding.BLOCK_SIZE + 3];
+        new Random(42).nextBytes(bytes);
+        byte[] encoded = Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+
+        // returns at most 7 bytes per call, so that both UTF-8 sequences and groups are split between reads
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(encoded)) {
+            private final Random random = new Random(42);
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+            }
+        };
+
+        assertArrayEquals(bytes, Ecoji.getDecoder().readFromUtf8(trickle).writeToBytes());
+    }
+
+    @Test
+    void testUtf8InvalidCodePoint() {
+        byte[] encoded = "👖📸a☕".getBytes(StandardCharsets.UTF_8);
+        IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFromUtf8(encoded).writeToBytes());
+        assertEquals("Input code point 97 at byte offset 8 is not a part of the Ecoji alphabet", e.getMessage());
+    }
+
+    @Test
+    void testUtf8MalformedSequence() {
+        byte[] truncated = "👖📸🎈☕".getBytes(StandardCharsets.UTF_8);
+        truncated[6] = 'x';
+        IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFromUtf8(truncated).writeToBytes());
+        assertEquals("Malformed UTF-8 sequence at byte offset 4", e.getMessage());
+
+        // an overlong 4-byte encoding of U+2615, which is the padding emoji
+        byte[] overlong = new byte[] {
+            (byte) 0xf0, (byte) 0x9f, (byte) 0x91, (byte) 0x96,
+            (byte) 0xf0, (byte) 0x82, (byte) 0x98, (byte) 0x95,
+            (byte) 0xe2, (byte) 0x98, (byte) 0x95,
+            (byte) 0xe2, (byte) 0x98, (byte) 0x95
+        };
+        e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFromUtf8(overlong).writeToBytes());
+        assertEquals("Malformed UTF-8 sequence at byte offset 4", e.getMessage());
+    }
+
+    @Test
+    void testUtf8IncompleteSequence() {
+        byte[] encoded = "👖📸🎈☕".getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().readFromUtf8(truncated).writeToBytes());
+    }
+
     private Checker checkThat(int... codePoints) {
         StringBuilder sb = new StringBuilder();
         for (int c : codePoints) {
@@ -110,6 +208,9 @@ class DecodingTest {
                 expected[i] = (byte) ints[i];
             }
             assertArrayEquals(expected, decoded);
+
+            byte[] decodedUtf8 = Ecoji.getDecoder().readFromUtf8(string.getBytes(StandardCharsets.UTF_8)).writeToBytes();
+            assertArrayEquals(expected, decodedUtf8);
         }
     }
 }
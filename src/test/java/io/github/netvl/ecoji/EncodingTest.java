@@ -2,8 +2,16 @@ package io.github.netvl.ecoji;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -92,6 +100,45 @@ class EncodingTest {
         );
     }
 
+    @Test
+    void testMultipleBlocks() throws IOException {
+        byte[] bytes = new byte[EcojiEncoding.BLOCK_SIZE * 3 + 3];
+        new Random(42).nextBytes(bytes);
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < bytes.length; i += 5) {
+            byte[] group = Arrays.copyOfRange(bytes, i, Math.min(i + 5, bytes.length));
+            expected.append(Ecoji.getEncoder().readFrom(group).writeToString());
+        }
+
+        assertEquals(expected.toString(), Ecoji.getEncoder().readFrom(bytes).writeToString());
+        assertArrayEquals(
+            expected.toString().getBytes(StandardCharsets.UTF_8),
+            Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes()
+        );
+    }
+
+    @Test
+    void testShortReads() throws IOException {
+        byte[] bytes = new byte[EcojiEncoding.BLOCK_SIZE * 2 + 4];
+        new Random(42).nextBytes(bytes);
+
+        // returns at most 7 bytes per call, like a slow network stream would
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            private final Random random = new Random(42);
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+            }
+        };
+
+        StringWriter writer = new StringWriter();
+        Ecoji.getEncoder().readFrom(trickle).writeTo(writer);
+
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), writer.toString());
+    }
+
     private Checker checkThat(int... ints) {
         byte[] bytes = new byte[ints.length];
         for (int i = 0; i < ints.length; ++i) {
@@ -115,6 +162,9 @@ class EncodingTest {
                 expected.appendCodePoint(c);
             }
             assertEquals(expected.toString(), encoded);
+
+            byte[] encodedUtf8 = Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+            assertArrayEquals(expected.toString().getBytes(StandardCharsets.UTF_8), encodedUtf8);
         }
     }
 }
@@ -0,0 +1,124 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileTest {
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void checkRoundTrip(byte[] bytes, Ecoji.Encoder encoder, Ecoji.Decoder decoder) throws IOException {
+        Path original = Files.createTempFile("ecoji", ".bin");
+        Path encoded = Files.createTempFile("ecoji", ".txt");
+        Path decoded = Files.createTempFile("ecoji", ".bin");
+        try {
+            Files.write(original, bytes);
+
+            byte[] expected = Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+            assertEquals(expected.length, encoder.encodeFile(original, encoded));
+            assertArrayEquals(expected, Files.readAllBytes(encoded));
+
+            assertEquals(bytes.length, decoder.decodeFile(encoded, decoded));
+            assertArrayEquals(bytes, Files.readAllBytes(decoded));
+        } finally {
+            Files.delete(original);
+            Files.delete(encoded);
+            Files.delete(decoded);
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        for (int size : new int[]{0, 1, 4, 5, 1003, EcojiParallel.ENCODE_CHUNK * 3 + 2}) {
+            checkRoundTrip(randomBytes(size), Ecoji.getEncoder(), Ecoji.getDecoder());
+            checkRoundTrip(randomBytes(size), Ecoji.getEncoder().parallel(pool), Ecoji.getDecoder().parallel(pool));
+        }
+    }
+
+    @Test
+    void testDecodeConcatenation() throws IOException {
+        String concatenated = Ecoji.getEncoder().readFrom("abc").writeToString() +
+                              Ecoji.getEncoder().readFrom("defghijklmn").writeToString();
+        Path encoded = Files.createTempFile("ecoji", ".txt");
+        Path decoded = Files.createTempFile("ecoji", ".bin");
+        try {
+            Files.write(encoded, concatenated.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(14, Ecoji.getDecoder().decodeFile(encoded, decoded));
+            assertArrayEquals("abcdefghijklmn".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(decoded));
+        } finally {
+            Files.delete(encoded);
+            Files.delete(decoded);
+        }
+    }
+
+    @Test
+    void testDecodeWrappedInput() throws IOException {
+        byte[] bytes = randomBytes(EcojiParallel.DECODE_CHUNK + 3);
+        Path encoded = Files.createTempFile("ecoji", ".txt");
+        Path decoded = Files.createTempFile("ecoji", ".bin");
+        try {
+            Files.write(encoded, Ecoji.getEncoder().wrapAt(76, "\n").readFrom(bytes).writeToUtf8Bytes());
+            // the previous contents are longer than the result
+            Files.write(decoded, new byte[bytes.length * 2]);
+
+            assertEquals(bytes.length, Ecoji.getDecoder().lenient().parallel(pool).decodeFile(encoded, decoded));
+            assertArrayEquals(bytes, Files.readAllBytes(decoded));
+        } finally {
+            Files.delete(encoded);
+            Files.delete(decoded);
+        }
+    }
+
+    @Test
+    void testDecodeLateLayoutMismatch() throws IOException {
+        byte[] bytes = randomBytes(EcojiParallel.DECODE_CHUNK * 3 + 2);
+        // the line break before the last group is only found after the preceding chunks have been written
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+        String input = encoded.substring(0, encoded.length() - 8) + "\n" + encoded.substring(encoded.length() - 8);
+        Path source = Files.createTempFile("ecoji", ".txt");
+        Path decoded = Files.createTempFile("ecoji", ".bin");
+        try {
+            Files.write(source, input.getBytes(StandardCharsets.UTF_8));
+
+            for (Ecoji.Decoder decoder : new Ecoji.Decoder[]{Ecoji.getDecoder().lenient(),
+                                                             Ecoji.getDecoder().lenient().parallel(pool)}) {
+                assertEquals(bytes.length, decoder.decodeFile(source, decoded));
+                assertArrayEquals(bytes, Files.readAllBytes(decoded));
+            }
+        } finally {
+            Files.delete(source);
+            Files.delete(decoded);
+        }
+    }
+
+    @Test
+    void testDecodeInvalidInput() throws IOException {
+        Path encoded = Files.createTempFile("ecoji", ".txt");
+        Path decoded = Files.createTempFile("ecoji", ".bin");
+        try {
+            Files.write(encoded, "👖📸🎈☕👖a🎈☕".getBytes(StandardCharsets.UTF_8));
+
+            IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().decodeFile(encoded, decoded));
+            assertEquals("Input code point 97 at byte offset 19 is not a part of the Ecoji alphabet", e.getMessage());
+        } finally {
+            Files.delete(encoded);
+            Files.delete(decoded);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalTest {
+    @Test
+    void testEncodeFragments() throws IOException {
+        EcojiEncoderSession session = Ecoji.getEncoder().newSession();
+        Random random = new Random(42);
+
+        for (int size : new int[]{0, 1, 4, 5, 9, 10, 123, 5000, 10001}) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            String expected = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+            for (boolean direct : new boolean[]{false, true}) {
+                assertEquals(expected, encode(session, bytes, random, direct));
+                assertEquals(expected, new String(encodeUtf8(session, bytes, random, direct), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void testDecodeFragments() throws IOException {
+        EcojiDecoderSession session = Ecoji.getDecoder().newSession();
+        Random random = new Random(42);
+
+        for (int size : new int[]{0, 1, 4, 5, 9, 10, 123, 5000, 10001}) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+            for (boolean direct : new boolean[]{false, true}) {
+                assertArrayEquals(bytes, decode(session, encoded, random, direct));
+                assertArrayEquals(bytes, decodeUtf8(session, encoded.getBytes(StandardCharsets.UTF_8), random, direct));
+            }
+        }
+    }
+
+    @Test
+    void testSplitSurrogatePair() throws IOException {
+        EcojiDecoderSession session = Ecoji.getDecoder().newSession();
+        String encoded = Ecoji.getEncoder().readFrom("abcdefgh").writeToString();
+        ByteBuffer dst = ByteBuffer.allocate(10);
+
+        assertEquals(CoderResult.UNDERFLOW, session.decode(CharBuffer.wrap(encoded, 0, 9), dst, false));
+        assertEquals(5, dst.position());
+        assertEquals(CoderResult.UNDERFLOW, session.decode(CharBuffer.wrap(encoded, 9, 10), dst, false));
+        assertEquals(CoderResult.UNDERFLOW, session.decode(CharBuffer.wrap(encoded, 10, encoded.length()), dst, true));
+        assertEquals("abcdefgh", new String(dst.array(), 0, dst.position(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void testEncodeOverflow() throws IOException {
+        EcojiEncoderSession session = Ecoji.getEncoder().newSession();
+        ByteBuffer src = ByteBuffer.wrap("abcdefg".getBytes(StandardCharsets.US_ASCII));
+        CharBuffer dst = CharBuffer.allocate(10);
+
+        assertEquals(CoderResult.OVERFLOW, session.encode(src, dst, true));
+        assertEquals(8, dst.position());
+        // the bytes of the incomplete group are returned to the source
+        assertEquals(5, src.position());
+
+        CharBuffer rest = CharBuffer.allocate(8);
+        assertEquals(CoderResult.UNDERFLOW, session.encode(src, rest, true));
+        assertFalse(src.hasRemaining());
+
+        dst.flip();
+        rest.flip();
+        assertEquals(Ecoji.getEncoder().readFrom("abcdefg").writeToString(), dst.toString() + rest.toString());
+    }
+
+    @Test
+    void testDecodeErrors() {
+        EcojiDecoderSession session = Ecoji.getDecoder().newSession();
+        ByteBuffer dst = ByteBuffer.allocate(20);
+
+        assertEquals(CoderResult.UNDERFLOW, session.decode(CharBuffer.wrap("👖📸"), dst, false));
+        CharBuffer src = CharBuffer.wrap("🎈a☕");
+        CoderResult result = session.decode(src, dst, false);
+        assertTrue(result.isMalformed());
+        assertEquals(1, result.length());
+        assertEquals(2, src.position());
+        assertEquals("Input code point 97 at position 6 is not a part of the Ecoji alphabet",
+                     session.malformedInputMessage());
+
+        // the session keeps the start of the group, so decoding can continue after the malformed input
+        src.position(src.position() + result.length());
+        assertEquals(CoderResult.UNDERFLOW, session.decode(src, dst, true));
+        assertNull(session.malformedInputMessage());
+        assertEquals(3, dst.position());
+
+        // an incomplete group at the end of the input
+        result = session.decode(CharBuffer.wrap("👖📸"), dst, true);
+        assertTrue(result.isMalformed());
+        assertEquals(4, result.length());
+        assertTrue(session.malformedInputMessage().startsWith("Unexpected end of data"));
+        dst.clear();
+        assertEquals(CoderResult.UNDERFLOW, session.decode(CharBuffer.wrap("👖📸🎈☕"), dst, true));
+        assertEquals(3, dst.position());
+    }
+
+    @Test
+    void testSplitMalformedInput() {
+        EcojiDecoderSession session = Ecoji.getDecoder().newSession();
+        ByteBuffer dst = ByteBuffer.allocate(20);
+
+        // a high surrogate from the previous call which is not followed by a low surrogate
+        assertEquals(CoderResult.UNDERFLOW, session.decode(CharBuffer.wrap("👖\uD83D"), dst, false));
+        CharBuffer src = CharBuffer.wrap("x📸🎈☕");
+        CoderResult result = session.decode(src, dst, false);
+        assertTrue(result.isMalformed());
+        assertEquals(1, result.length());
+        assertEquals(0, src.position());
+        assertEquals("Input code point 55357 at position 2 is not a part of the Ecoji alphabet",
+                     session.malformedInputMessage());
+        src.position(1);
+        assertEquals(CoderResult.UNDERFLOW, session.decode(src, dst, true));
+        assertEquals(3, dst.position());
+
+        // an incomplete UTF-8 sequence from the previous call
+        dst.clear();
+        assertEquals(CoderResult.UNDERFLOW,
+                     session.decodeUtf8(ByteBuffer.wrap(new byte[]{(byte) 0xf0, (byte) 0x9f}), dst, false));
+        ByteBuffer utf8Src = ByteBuffer.wrap("a".getBytes(StandardCharsets.US_ASCII));
+        result = session.decodeUtf8(utf8Src, dst, true);
+        assertTrue(result.isMalformed());
+        assertEquals(1, result.length());
+        assertEquals(0, utf8Src.position());
+        assertEquals("Malformed UTF-8 sequence at byte offset 0", session.malformedInputMessage());
+        assertEquals(0, dst.position());
+    }
+
+    // The helpers feed the input in random fragments and drain the output through small buffers
+
+    private static String encode(EcojiEncoderSession session, byte[] bytes, Random random, boolean direct) {
+        StringBuilder result = new StringBuilder();
+        CharBuffer dst = CharBuffer.allocate(8 + random.nextInt(20));
+        for (int p = 0; p < bytes.length || p == 0; ) {
+            int n = Math.min(bytes.length - p, random.nextInt(12));
+            ByteBuffer src = buffer(Arrays.copyOfRange(bytes, p, p + n), direct);
+            p += n;
+            boolean last = p == bytes.length;
+            while (session.encode(src, dst, last) == CoderResult.OVERFLOW) {
+                dst.flip();
+                result.append(dst);
+                dst.clear();
+            }
+            if (last) {
+                break;
+            }
+        }
+        dst.flip();
+        return result.append(dst).toString();
+    }
+
+    private static byte[] encodeUtf8(EcojiEncoderSession session, byte[] bytes, Random random, boolean direct) {
+        ByteBuffer result = ByteBuffer.allocate(bytes.length * 4 + 16);
+        ByteBuffer dst = buffer(new byte[16 + random.nextInt(40)], direct);
+        for (int p = 0; p < bytes.length || p == 0; ) {
+            int n = Math.min(bytes.length - p, random.nextInt(12));
+            ByteBuffer src = buffer(Arrays.copyOfRange(bytes, p, p + n), direct);
+            p += n;
+            boolean last = p == bytes.length;
+            while (session.encodeUtf8(src, dst, last) == CoderResult.OVERFLOW) {
+                dst.flip();
+                result.put(dst);
+                dst.clear();
+            }
+            if (last) {
+                break;
+            }
+        }
+        dst.flip();
+        result.put(dst);
+        return Arrays.copyOf(result.array(), result.position());
+    }
+
+    private static byte[] decode(EcojiDecoderSession session, String encoded, Random random, boolean direct)
+        throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(encoded.length());
+        ByteBuffer dst = buffer(new byte[5 + random.nextInt(10)], direct);
+        for (int p = 0; p < encoded.length() || p == 0; ) {
+            int n = Math.min(encoded.length() - p, random.nextInt(20));
+            CharBuffer src = CharBuffer.wrap(encoded.substring(p, p + n).toCharArray());
+            p += n;
+            boolean last = p == encoded.length();
+            while (session.decode(src, dst, last) == CoderResult.OVERFLOW) {
+                dst.flip();
+                result.put(dst);
+                dst.clear();
+            }
+            if (last) {
+                break;
+            }
+        }
+        dst.flip();
+        result.put(dst);
+        return Arrays.copyOf(result.array(), result.position());
+    }
+
+    private static byte[] decodeUtf8(EcojiDecoderSession session, byte[] encoded, Random random, boolean direct)
+        throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(encoded.length);
+        ByteBuffer dst = buffer(new byte[5 + random.nextInt(10)], direct);
+        for (int p = 0; p < encoded.length || p == 0; ) {
+            int n = Math.min(encoded.length - p, random.nextInt(40));
+            ByteBuffer src = buffer(Arrays.copyOfRange(encoded, p, p + n), direct);
+            p += n;
+            boolean last = p == encoded.length;
+            while (session.decodeUtf8(src, dst, last) == CoderResult.OVERFLOW) {
+                dst.flip();
+                result.put(dst);
+                dst.clear();
+            }
+            if (last) {
+                break;
+            }
+        }
+        dst.flip();
+        result.put(dst);
+        return Arrays.copyOf(result.array(), result.position());
+    }
+
+    private static ByteBuffer buffer(byte[] bytes, boolean direct) {
+        if (!direct) {
+            return ByteBuffer.wrap(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysTest {
+    private static final Comparator<byte[]> UNSIGNED = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            for (int i = 0; i < Math.min(a.length, b.length); ++i) {
+                int c = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(a.length, b.length);
+        }
+    };
+
+    @Test
+    void testComparatorAgreesWithDecodedOrder() throws IOException {
+        List<byte[]> keys = randomKeys(new Random(42), 2000);
+        List<String> encoded = new ArrayList<>();
+        for (byte[] key : keys) {
+            encoded.add(Ecoji.getEncoder().readFrom(key).writeToString());
+        }
+
+        Collections.sort(keys, UNSIGNED);
+        Collections.sort(encoded, EcojiKeys.comparator());
+        for (int i = 0; i < keys.size(); ++i) {
+            assertEquals(0, UNSIGNED.compare(keys.get(i), Ecoji.getDecoder().readFrom(encoded.get(i)).writeToBytes()));
+        }
+    }
+
+    @Test
+    void testAlphabetOrder() {
+        // the comparator relies on the alphabet being sorted by code point, with the padding emojis in between
+        for (int i = 1; i < Emojis.MAPPING.length; ++i) {
+            assertTrue(Emojis.MAPPING[i - 1] < Emojis.MAPPING[i]);
+        }
+        assertTrue(Emojis.PADDING < Emojis.PADDING_40 && Emojis.PADDING_40 < Emojis.MAPPING[0]);
+        assertTrue(Emojis.MAPPING[255] < Emojis.PADDING_41 && Emojis.PADDING_41 < Emojis.MAPPING[256]);
+        assertTrue(Emojis.MAPPING[511] < Emojis.PADDING_42 && Emojis.PADDING_42 < Emojis.MAPPING[512]);
+        assertTrue(Emojis.MAPPING[767] < Emojis.PADDING_43 && Emojis.PADDING_43 < Emojis.MAPPING[768]);
+        assertTrue(Character.isSupplementaryCodePoint(Emojis.MAPPING[0]));
+    }
+
+    @Test
+    void testPaddingOrder() throws IOException {
+        String four = Ecoji.getEncoder().readFrom(new byte[]{1, 2, 3, 5}).writeToString();
+        String five = Ecoji.getEncoder().readFrom(new byte[]{1, 2, 3, 5, 0}).writeToString();
+        String smaller = Ecoji.getEncoder().readFrom(new byte[]{1, 2, 3, 4, (byte) 0xff}).writeToString();
+        assertTrue(EcojiKeys.compare(four, five) < 0);
+        assertTrue(EcojiKeys.compare(smaller, four) < 0);
+        assertEquals(0, EcojiKeys.compare(five, new StringBuilder(five)));
+        assertTrue(EcojiKeys.compare("", four) < 0);
+    }
+
+    @Test
+    void testBounds() throws IOException {
+        Random random = new Random(42);
+        List<byte[]> keys = randomKeys(random, 500);
+        for (byte[] prefix : randomKeys(random, 200)) {
+            String lower = EcojiKeys.lowerBound(prefix);
+            String upper = EcojiKeys.upperBound(prefix);
+            for (byte[] key : keys) {
+                String encoded = Ecoji.getEncoder().readFrom(key).writeToString();
+                boolean inRange = EcojiKeys.compare(lower, encoded) <= 0 &&
+                                  (upper == null || EcojiKeys.compare(encoded, upper) < 0);
+                assertEquals(startsWith(key, prefix), inRange);
+            }
+        }
+
+        assertNull(EcojiKeys.upperBound(new byte[0]));
+        assertNull(EcojiKeys.upperBound(new byte[]{(byte) 0xff, (byte) 0xff}));
+        assertEquals(Ecoji.getEncoder().readFrom(new byte[]{1, 2, 3, 4, 5, 7}).writeToString(),
+                     EcojiKeys.upperBound(new byte[]{1, 2, 3, 4, 5, 6, (byte) 0xff}));
+
+        char[] dst = new char[8];
+        assertEquals(8, EcojiKeys.upperBound(new byte[]{1, 2, 3, 4, 5}, 0, 5, dst, 0));
+        assertThrows(IllegalArgumentException.class, () -> EcojiKeys.lowerBound(new byte[6], 0, 6, dst, 0));
+    }
+
+    // Short keys, with many common prefixes and the extreme byte values
+    private static List<byte[]> randomKeys(Random random, int count) {
+        byte[] alphabet = {0, 1, 2, 0x3f, 0x40, 0x7f, (byte) 0x80, (byte) 0xc0, (byte) 0xfe, (byte) 0xff};
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            byte[] key = new byte[random.nextInt(13)];
+            for (int j = 0; j < key.length; ++j) {
+                key[j] = random.nextInt(4) == 0 ? (byte) random.nextInt() : alphabet[random.nextInt(alphabet.length)];
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
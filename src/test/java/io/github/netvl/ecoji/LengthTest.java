@@ -0,0 +1,62 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LengthTest {
+    @Test
+    void testEncodedLength() throws IOException {
+        Random random = new Random(42);
+        for (int size = 0; size < 64; ++size) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            for (int last = 0; last < 4 && size > 0; ++last) {
+                bytes[size - 1] = (byte) (bytes[size - 1] & ~3 | last);
+
+                String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+                byte[] utf8 = Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+
+                assertTrue(encoded.length() <= Ecoji.getEncoder().encodedLength(size));
+                assertTrue(encoded.length() >= Ecoji.getEncoder().encodedLength(size) - 1);
+                assertTrue(utf8.length <= Ecoji.getEncoder().encodedUtf8Length(size));
+                assertEquals(encoded.codePointCount(0, encoded.length()),
+                             Ecoji.getEncoder().encodedCodePointCount(size));
+                assertArrayEquals(encoded.getBytes(StandardCharsets.UTF_8), utf8);
+
+                assertEquals(size, Ecoji.getDecoder().decodedLength(encoded));
+                assertEquals(size, Ecoji.getDecoder().decodedUtf8Length(utf8));
+            }
+        }
+        assertEquals(0, Ecoji.getEncoder().encodedLength(0));
+        assertEquals(0, Ecoji.getDecoder().decodedLength(""));
+    }
+
+    @Test
+    void testDecodeConcatenation() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abc").writeToString() +
+                         Ecoji.getEncoder().readFrom("defghij").writeToString();
+
+        assertArrayEquals("abcdefghij".getBytes(StandardCharsets.UTF_8),
+                          Ecoji.getDecoder().readFrom(encoded).writeToBytes());
+        assertArrayEquals("abcdefghij".getBytes(StandardCharsets.UTF_8),
+                          Ecoji.getDecoder().readFromUtf8(encoded.getBytes(StandardCharsets.UTF_8)).writeToBytes());
+    }
+
+    @Test
+    void testDecodeInvalidString() {
+        IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom("👖📸🎈").writeToBytes());
+        assertTrue(e.getMessage().startsWith("Unexpected end of data"));
+
+        byte[] utf8 = "👖a🎈☕".getBytes(StandardCharsets.UTF_8);
+        e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFromUtf8(utf8).writeToBytes());
+        assertEquals("Input code point 97 at byte offset 4 is not a part of the Ecoji alphabet", e.getMessage());
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LenientTest {
+    @Test
+    void testWrappedInput() throws IOException {
+        byte[] bytes = new byte[EcojiDecoding.BLOCK_SIZE + 3];
+        new Random(42).nextBytes(bytes);
+        String wrapped = wrap(Ecoji.getEncoder().readFrom(bytes).writeToString(), 7);
+        byte[] wrappedUtf8 = wrapped.getBytes(StandardCharsets.UTF_8);
+        Ecoji.Decoder decoder = Ecoji.getDecoder().lenient();
+
+        assertArrayEquals(bytes, decoder.readFrom(wrapped).writeToBytes());
+        assertArrayEquals(bytes, decoder.readFrom(new StringReader(wrapped)).writeToBytes());
+        assertArrayEquals(bytes, decoder.readFromUtf8(wrappedUtf8).writeToBytes());
+        assertArrayEquals(bytes, decoder.readFromUtf8(new ByteArrayInputStream(wrappedUtf8)).writeToBytes());
+
+        InputStream stream = decoder.wrap(new StringReader(wrapped));
+        byte[] streamed = new byte[bytes.length];
+        int n = 0;
+        for (int k; (k = stream.read(streamed, n, streamed.length - n)) > 0; ) {
+            n += k;
+        }
+        assertEquals(bytes.length, n);
+        assertArrayEquals(bytes, streamed);
+
+        ByteBuffer dst = ByteBuffer.allocate(bytes.length);
+        assertTrue(decoder.decode(CharBuffer.wrap(wrapped), dst).isUnderflow());
+        assertArrayEquals(bytes, dst.array());
+
+        byte[] decoded = new byte[bytes.length];
+        assertEquals(bytes.length, decoder.newSession().decode(wrapped, decoded, 0));
+        assertArrayEquals(bytes, decoded);
+    }
+
+    @Test
+    void testStrictByDefault() throws IOException {
+        String wrapped = wrap(Ecoji.getEncoder().readFrom("abcdefghij").writeToString(), 3);
+        IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().readFrom(wrapped).writeToBytes());
+        assertEquals("Input code point 10 at position 6 is not a part of the Ecoji alphabet", e.getMessage());
+    }
+
+    @Test
+    void testCustomIgnoredCodePoints() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abcdefghij").writeToString();
+        // U+E0001 is outside of the BMP, like the emojis
+        String dotted = "." + encoded.substring(0, 4) + "..\udb40\udc01" + encoded.substring(4) + "\udb40\udc01";
+        Ecoji.Decoder decoder = Ecoji.getDecoder().ignoring(".\udb40\udc01");
+
+        assertEquals("abcdefghij", decoder.readFrom(dotted).writeToString(StandardCharsets.US_ASCII));
+
+        IOException e = assertThrows(IOException.class, () -> decoder.readFrom(dotted + " ").writeToBytes());
+        assertEquals("Input code point 32 at position " + dotted.length() + " is not a part of the Ecoji alphabet",
+                     e.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.getDecoder().ignoring("a" + encoded.substring(0, 2)));
+    }
+
+    @Test
+    void testLongRunInsideGroup() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abcde").writeToString();
+        char[] spaces = new char[EcojiDecoding.MAX_GROUP_SPAN];
+        Arrays.fill(spaces, ' ');
+        String input = encoded.substring(0, 2) + new String(spaces) + encoded.substring(2);
+
+        IOException e = assertThrows(IOException.class,
+                                     () -> Ecoji.getDecoder().lenient().readFrom(input).writeToBytes());
+        assertTrue(e.getMessage().startsWith("Too many ignored code points inside a group"));
+    }
+
+    @Test
+    void testLongRunBetweenGroups() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abcdefghij").writeToString();
+        char[] spaces = new char[EcojiDecoding.BLOCK_SIZE * 2];
+        Arrays.fill(spaces, '\n');
+        String input = encoded.substring(0, 8) + new String(spaces) + encoded.substring(8) + new String(spaces);
+
+        assertArrayEquals("abcdefghij".getBytes(StandardCharsets.US_ASCII),
+                          Ecoji.getDecoder().lenient().readFrom(new StringReader(input)).writeToBytes());
+    }
+
+    // Inserts a line break after every `emojis` code points
+    private static String wrap(String encoded, int emojis) {
+        StringBuilder result = new StringBuilder();
+        int count = 0;
+        for (int i = 0; i < encoded.length(); i += Character.charCount(encoded.codePointAt(i))) {
+            result.appendCodePoint(encoded.codePointAt(i));
+            if (++count % emojis == 0) {
+                result.append(count % (emojis * 2) == 0 ? "\r\n" : "\n");
+            }
+        }
+        return result.toString();
+    }
+}
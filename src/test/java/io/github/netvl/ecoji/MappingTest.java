@@ -8,9 +8,30 @@ class MappingTest {
     @Test
     void testMapping() {
         assertEquals(1024, Emojis.MAPPING.length);
-        assertEquals(1024, Emojis.MAPPING_REV.size());
         for (int i = 0; i < Emojis.MAPPING.length; ++i) {
-            assertEquals(i, (int) Emojis.MAPPING_REV.get(Emojis.MAPPING[i]));
+            assertEquals(i, Emojis.symbolOf(Emojis.MAPPING[i]));
         }
     }
+
+    @Test
+    void testPaddingSymbols() {
+        assertEquals(Emojis.SYMBOL_PADDING, Emojis.symbolOf(Emojis.PADDING));
+        assertEquals(Emojis.SYMBOL_PADDING_4, Emojis.symbolOf(Emojis.PADDING_40));
+        assertEquals(Emojis.SYMBOL_PADDING_4 | 1, Emojis.symbolOf(Emojis.PADDING_41));
+        assertEquals(Emojis.SYMBOL_PADDING_4 | 2, Emojis.symbolOf(Emojis.PADDING_42));
+        assertEquals(Emojis.SYMBOL_PADDING_4 | 3, Emojis.symbolOf(Emojis.PADDING_43));
+    }
+
+    @Test
+    void testNonAlphabetCodePoints() {
+        int alphabetSize = 0;
+        for (int c = 0; c <= Character.MAX_CODE_POINT; ++c) {
+            if (Emojis.symbolOf(c) >= 0) {
+                alphabetSize++;
+            }
+        }
+        assertEquals(1024 + 5, alphabetSize);
+        assertEquals(-1, Emojis.symbolOf(-1));
+        assertEquals(-1, Emojis.symbolOf(Integer.MAX_VALUE));
+    }
 }
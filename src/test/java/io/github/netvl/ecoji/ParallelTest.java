@@ -0,0 +1,86 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelTest {
+    // worker threads are daemon threads, so the pool does not need to be shut down
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void testEncode() throws IOException {
+        // large enough to be split several times, with a padded tail
+        for (int size : new int[]{EcojiParallel.ENCODE_CHUNK * 5 + 3, EcojiParallel.ENCODE_CHUNK * 3 + 4}) {
+            byte[] bytes = randomBytes(size);
+            Ecoji.Encoder parallel = Ecoji.getEncoder().parallel(pool);
+            String expected = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+            assertEquals(expected, parallel.readFrom(bytes).writeToString());
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), parallel.readFrom(bytes).writeToUtf8Bytes());
+
+            StringWriter writer = new StringWriter();
+            assertEquals(expected.length(), parallel.readFrom(bytes).writeTo(writer));
+            assertEquals(expected, writer.toString());
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            parallel.readFrom(bytes).writeTo(outputStream);
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), outputStream.toByteArray());
+
+            CharBuffer dst = CharBuffer.allocate(expected.length());
+            assertEquals(CoderResult.UNDERFLOW, parallel.encode(ByteBuffer.wrap(bytes), dst));
+            dst.flip();
+            assertEquals(expected, dst.toString());
+        }
+    }
+
+    @Test
+    void testDecode() throws IOException {
+        byte[] bytes = randomBytes(EcojiParallel.DECODE_CHUNK * 3 + 2);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+        Ecoji.Decoder parallel = Ecoji.getDecoder().parallel(pool);
+
+        assertArrayEquals(bytes, parallel.readFrom(encoded).writeToBytes());
+        assertArrayEquals(bytes, parallel.readFromUtf8(encoded.getBytes(StandardCharsets.UTF_8)).writeToBytes());
+    }
+
+    @Test
+    void testDecodeConcatenation() throws IOException {
+        // the first sequence ends with a padded group, so the groups of the second one are not aligned
+        byte[] first = randomBytes(3);
+        byte[] second = randomBytes(EcojiParallel.DECODE_CHUNK);
+        String encoded = Ecoji.getEncoder().readFrom(first).writeToString() +
+                         Ecoji.getEncoder().readFrom(second).writeToString();
+
+        assertArrayEquals(Ecoji.getDecoder().readFrom(encoded).writeToBytes(),
+                          Ecoji.getDecoder().parallel(pool).readFrom(encoded).writeToBytes());
+    }
+
+    @Test
+    void testDecodeInvalidInput() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom(randomBytes(EcojiParallel.DECODE_CHUNK * 3)).writeToString();
+        String invalid = encoded.substring(0, 800000) + "a" + encoded.substring(800002);
+
+        IOException e = assertThrows(IOException.class,
+                                     () -> Ecoji.getDecoder().parallel(pool).readFrom(invalid).writeToBytes());
+        assertEquals("Input code point 97 at position 800000 is not a part of the Ecoji alphabet", e.getMessage());
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrimitivesTest {
+    @Test
+    void testInts() throws IOException {
+        Random random = new Random(42);
+        int[] special = {0, 1, 2, 3, 4, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (int i = 0; i < 10000; ++i) {
+            int value = i < special.length ? special[i] : random.nextInt();
+            String expected = Ecoji.getEncoder().readFrom(ByteBuffer.allocate(4).putInt(value).array()).writeToString();
+
+            assertEquals(expected, EcojiPrimitives.encodeInt(value));
+            StringBuilder sb = new StringBuilder("x");
+            EcojiPrimitives.encodeInt(value, sb);
+            assertEquals("x" + expected, sb.toString());
+            assertEquals(value, EcojiPrimitives.decodeInt(sb, 1));
+        }
+    }
+
+    @Test
+    void testLongs() throws IOException {
+        Random random = new Random(42);
+        char[] chars = new char[EcojiPrimitives.LONG_LENGTH + 3];
+        for (int i = 0; i < 10000; ++i) {
+            long value = i < 4 ? new long[]{0, -1, Long.MIN_VALUE, Long.MAX_VALUE}[i] : random.nextLong();
+            String expected = Ecoji.getEncoder().readFrom(ByteBuffer.allocate(8).putLong(value).array())
+                                   .writeToString();
+
+            assertEquals(expected, EcojiPrimitives.encodeLong(value));
+            assertEquals(EcojiPrimitives.LONG_LENGTH, EcojiPrimitives.encodeLong(value, chars, 3));
+            assertEquals(expected, new String(chars, 3, EcojiPrimitives.LONG_LENGTH));
+            StringBuilder sb = new StringBuilder();
+            EcojiPrimitives.encodeLong(value, sb);
+            assertEquals(expected, sb.toString());
+            assertEquals(value, EcojiPrimitives.decodeLong(expected + "tail", 0));
+        }
+    }
+
+    @Test
+    void testUuids() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; ++i) {
+            UUID value = i == 0 ? new UUID(-1, -1) : new UUID(random.nextLong(), random.nextLong());
+            byte[] bytes = ByteBuffer.allocate(16)
+                                     .putLong(value.getMostSignificantBits())
+                                     .putLong(value.getLeastSignificantBits())
+                                     .array();
+            String expected = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+            assertEquals(expected, EcojiPrimitives.encodeUuid(value));
+            assertEquals(EcojiPrimitives.UUID_LENGTH, expected.length());
+            StringBuilder sb = new StringBuilder();
+            EcojiPrimitives.encodeUuid(value, sb);
+            assertEquals(expected, sb.toString());
+            assertEquals(value, EcojiPrimitives.decodeUuid("ab" + expected, 2));
+        }
+    }
+
+    @Test
+    void testInvalidInput() {
+        String encoded = EcojiPrimitives.encodeLong(42);
+
+        IOException e = assertThrows(IOException.class,
+                                     () -> EcojiPrimitives.decodeLong(encoded.substring(0, 14), 0));
+        assertEquals("Input ends in the middle of an Ecoji-encoded long", e.getMessage());
+
+        e = assertThrows(IOException.class, () -> EcojiPrimitives.decodeLong(encoded.substring(0, 2) + "a", 0));
+        assertEquals("Input code point 97 at position 2 is not a part of the Ecoji alphabet", e.getMessage());
+
+        // an int where a long is expected
+        e = assertThrows(IOException.class, () -> EcojiPrimitives.decodeLong(EcojiPrimitives.encodeInt(5), 0));
+        assertEquals("Unexpected code point at position 6 of an Ecoji-encoded long", e.getMessage());
+
+        assertThrows(IOException.class, () -> EcojiPrimitives.decodeInt(encoded, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> EcojiPrimitives.decodeUuid(encoded, 15));
+        assertThrows(IndexOutOfBoundsException.class, () -> EcojiPrimitives.encodeLong(1, new char[14], 0));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangeTest {
+    @Test
+    void testAllRanges() throws IOException {
+        Random random = new Random(42);
+        for (int size = 0; size <= 16; ++size) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+            byte[] utf8 = Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+            ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+            direct.put(utf8).flip();
+
+            for (int from = 0; from <= size; ++from) {
+                for (int to = from; to <= size; ++to) {
+                    byte[] expected = Arrays.copyOfRange(bytes, from, to);
+                    assertArrayEquals(expected, Ecoji.getDecoder().decodeRange(encoded, from, to - from));
+                    assertArrayEquals(expected, Ecoji.getDecoder().decodeRange(new StringBuilder(encoded), from,
+                                                                               to - from));
+                    assertArrayEquals(expected, Ecoji.getDecoder().decodeRange(ByteBuffer.wrap(utf8), from, to - from));
+                    assertArrayEquals(expected, Ecoji.getDecoder().decodeRange(direct, from, to - from));
+                }
+            }
+            assertEquals(0, direct.position());
+        }
+    }
+
+    @Test
+    void testSliceOfLargeInput() throws IOException {
+        byte[] bytes = new byte[1000003];
+        new Random(42).nextBytes(bytes);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+        byte[] utf8 = Ecoji.getEncoder().readFrom(bytes).writeToUtf8Bytes();
+
+        // a buffer which starts in the middle of an array
+        byte[] shifted = new byte[utf8.length + 10];
+        System.arraycopy(utf8, 0, shifted, 7, utf8.length);
+        ByteBuffer buffer = ByteBuffer.wrap(shifted, 7, utf8.length).slice();
+
+        for (long offset : new long[]{0, 123457, 999990, 999999}) {
+            byte[] expected = Arrays.copyOfRange(bytes, (int) offset, (int) offset + 4);
+            assertArrayEquals(expected, Ecoji.getDecoder().decodeRange(encoded, offset, 4));
+            assertArrayEquals(expected, Ecoji.getDecoder().decodeRange(buffer, offset, 4));
+        }
+    }
+
+    @Test
+    void testInvalidRanges() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abcdefgh").writeToString();
+        assertThrows(IndexOutOfBoundsException.class, () -> Ecoji.getDecoder().decodeRange(encoded, 5, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> Ecoji.getDecoder().decodeRange(encoded, -1, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> Ecoji.getDecoder().decodeRange(encoded, 0, -1));
+    }
+
+    @Test
+    void testInvalidInput() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abcdefghijklmno").writeToString();
+        String invalid = encoded.substring(0, 8) + "a" + encoded.substring(9);
+        IOException e = assertThrows(IOException.class, () -> Ecoji.getDecoder().decodeRange(invalid, 6, 2));
+        assertEquals("Input code point 97 at position 8 is not a part of the Ecoji alphabet", e.getMessage());
+        // the groups before the range are not read
+        assertArrayEquals("klm".getBytes("US-ASCII"), Ecoji.getDecoder().decodeRange(invalid, 10, 3));
+
+        // a padded group in the middle of a concatenation
+        String concatenated = Ecoji.getEncoder().readFrom("abc").writeToString() + encoded;
+        assertThrows(IOException.class, () -> Ecoji.getDecoder().decodeRange(concatenated, 0, 5));
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionTest {
+    @Test
+    void testRoundTrip() throws IOException {
+        EcojiEncoderSession encoder = Ecoji.getEncoder().newSession();
+        EcojiDecoderSession decoder = Ecoji.getDecoder().newSession();
+        Random random = new Random(42);
+
+        char[] chars = new char[100];
+        byte[] utf8 = new byte[200];
+        byte[] decoded = new byte[50];
+
+        for (int size = 0; size <= 40; ++size) {
+            byte[] bytes = new byte[size + 6];
+            random.nextBytes(bytes);
+            String expected = Ecoji.getEncoder().readFrom(Arrays.copyOfRange(bytes, 3, 3 + size)).writeToString();
+
+            int n = encoder.encode(bytes, 3, size, chars, 1);
+            assertEquals(expected, new String(chars, 1, n));
+            assertEquals(expected, encoder.encodeToString(bytes, 3, size));
+
+            int m = encoder.encodeUtf8(bytes, 3, size, utf8, 2);
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), Arrays.copyOfRange(utf8, 2, 2 + m));
+
+            assertEquals(size, decoder.decode(chars, 1, n, decoded, 5));
+            assertArrayEquals(Arrays.copyOfRange(bytes, 3, 3 + size), Arrays.copyOfRange(decoded, 5, 5 + size));
+
+            assertEquals(size, decoder.decode(expected, decoded, 0));
+            assertArrayEquals(Arrays.copyOfRange(bytes, 3, 3 + size), Arrays.copyOf(decoded, size));
+
+            assertEquals(size, decoder.decodeUtf8(utf8, 2, m, decoded, 1));
+            assertArrayEquals(Arrays.copyOfRange(bytes, 3, 3 + size), Arrays.copyOfRange(decoded, 1, 1 + size));
+        }
+    }
+
+    @Test
+    void testOutputTooSmall() {
+        EcojiEncoderSession encoder = Ecoji.getEncoder().newSession();
+        byte[] bytes = new byte[10];
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(bytes, 0, 10, new char[15], 0));
+        assertThrows(IllegalArgumentException.class, () -> encoder.encodeUtf8(bytes, 0, 10, new byte[32], 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> encoder.encode(bytes, 5, 6, new char[16], 0));
+
+        String encoded = encoder.encodeToString(bytes, 0, 10);
+        assertThrows(IllegalArgumentException.class,
+                     () -> Ecoji.getDecoder().newSession().decode(encoded, new byte[9], 0));
+    }
+
+    @Test
+    void testInvalidInput() {
+        EcojiDecoderSession decoder = Ecoji.getDecoder().newSession();
+        char[] chars = "xx👖📸a☕".toCharArray();
+
+        IOException e = assertThrows(IOException.class, () -> decoder.decode(chars, 2, chars.length - 2, new byte[5], 0));
+        assertEquals("Input code point 97 at position 4 is not a part of the Ecoji alphabet", e.getMessage());
+
+        assertThrows(IOException.class, () -> decoder.decode("👖📸🎈", new byte[5], 0));
+    }
+
+    @Test
+    void testNoAllocations() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        // small inputs only take the scalar loops, while the larger ones go through the vector kernels when
+        // they are enabled
+        for (int size : new int[]{12, 640}) {
+            EcojiEncoderSession encoder = Ecoji.getEncoder().newSession();
+            EcojiDecoderSession decoder = Ecoji.getDecoder().newSession();
+            byte[] bytes = new byte[size];
+            new Random(42).nextBytes(bytes);
+            char[] chars = new char[(int) Ecoji.getEncoder().encodedLength(size)];
+            byte[] utf8 = new byte[(int) Ecoji.getEncoder().encodedUtf8Length(size)];
+            byte[] decoded = new byte[size];
+
+            // interpreted code, and the vector kernels until they are compiled, allocate temporary objects, so
+            // the best of several rounds is taken while the compilation catches up
+            long threadId = Thread.currentThread().getId();
+            long allocated = Long.MAX_VALUE;
+            for (int round = 0; round < 50 && allocated >= 1024; ++round) {
+                long before = threads.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < 10000; ++i) {
+                    roundTrip(encoder, decoder, bytes, chars, utf8, decoded);
+                }
+                allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+            }
+
+            // a single allocation per call would take at least 16 bytes per iteration; the margin is for
+            // the measurement itself
+            assertTrue(allocated < 1024, "Allocated " + allocated + " bytes for inputs of " + size + " bytes");
+            assertArrayEquals(bytes, decoded);
+        }
+    }
+
+    private static void roundTrip(EcojiEncoderSession encoder, EcojiDecoderSession decoder, byte[] bytes,
+                                  char[] chars, byte[] utf8, byte[] decoded) throws IOException {
+        int n = encoder.encode(bytes, 0, bytes.length, chars, 0);
+        decoder.decode(chars, 0, n, decoded, 0);
+        int m = encoder.encodeUtf8(bytes, 0, bytes.length, utf8, 0);
+        decoder.decodeUtf8(utf8, 0, m, decoded, 0);
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamTest {
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void testOutputStream() throws IOException {
+        byte[] bytes = randomBytes(EcojiEncoding.BLOCK_SIZE * 3 + 17);
+        StringWriter writer = new StringWriter();
+
+        try (OutputStream os = Ecoji.getEncoder().wrap(writer)) {
+            // mix single bytes, short chunks, and chunks larger than the internal buffer
+            os.write(bytes[0]);
+            os.write(bytes, 1, 6);
+            os.write(bytes, 7, EcojiEncoding.BLOCK_SIZE * 2);
+            for (int i = 7 + EcojiEncoding.BLOCK_SIZE * 2; i < bytes.length; i += 1000) {
+                os.write(bytes, i, Math.min(1000, bytes.length - i));
+            }
+        }
+
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), writer.toString());
+    }
+
+    @Test
+    void testOutputStreamFlush() throws IOException {
+        StringWriter writer = new StringWriter();
+        OutputStream os = Ecoji.getEncoder().wrap(writer);
+
+        os.write(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        os.flush();
+        assertEquals(Ecoji.getEncoder().readFrom(new byte[]{1, 2, 3, 4, 5}).writeToString(), writer.toString());
+
+        os.close();
+        assertEquals(Ecoji.getEncoder().readFrom(new byte[]{1, 2, 3, 4, 5, 6, 7}).writeToString(), writer.toString());
+        assertThrows(IOException.class, () -> os.write(1));
+    }
+
+    @Test
+    void testInputStream() throws IOException {
+        byte[] bytes = randomBytes(EcojiDecoding.BLOCK_SIZE + 17);
+        String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream is = Ecoji.getDecoder().wrap(new TrickleReader(encoded))) {
+            decoded.write(is.read());
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = is.read(buffer)) >= 0) {
+                decoded.write(buffer, 0, n);
+            }
+            assertEquals(-1, is.read());
+        }
+
+        assertArrayEquals(bytes, decoded.toByteArray());
+    }
+
+    @Test
+    void testInputStreamInvalidInput() throws IOException {
+        InputStream is = Ecoji.getDecoder().wrap(new StringReader("👖📸🎈☕👖📸a☕"));
+
+        byte[] buffer = new byte[10];
+        assertEquals(3, is.read(buffer));
+        IOException e = assertThrows(IOException.class, () -> is.read(buffer));
+        assertEquals("Input code point 97 at position 11 is not a part of the Ecoji alphabet", e.getMessage());
+
+        InputStream incomplete = Ecoji.getDecoder().wrap(new StringReader("👖📸🎈☕👖📸"));
+        assertEquals(3, incomplete.read(buffer));
+        assertThrows(IOException.class, () -> incomplete.read(buffer));
+    }
+
+    // returns at most 7 chars per read, splitting surrogate pairs and groups
+    private static class TrickleReader extends Reader {
+        private final String source;
+        private int pos = 0;
+
+        TrickleReader(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (pos == source.length()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, 7), source.length() - pos);
+            source.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
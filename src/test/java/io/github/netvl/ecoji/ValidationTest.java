@@ -0,0 +1,116 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidationTest {
+    @Test
+    void testEncoderOutput() throws IOException {
+        Random random = new Random(42);
+        for (int size = 0; size <= 100; ++size) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+            assertEquals(-1, Ecoji.getDecoder().validate(encoded));
+            assertTrue(Ecoji.getDecoder().isValid(new StringBuilder(encoded)));
+            assertArrayEquals(bytes, Ecoji.getDecoder().readFrom(encoded).writeToBytes());
+        }
+    }
+
+    @Test
+    void testLargeInput() throws IOException {
+        // the groups cross the boundaries of the internal windows
+        byte[] bytes = new byte[EcojiDecoding.BLOCK_SIZE + 3];
+        new Random(42).nextBytes(bytes);
+        String encoded = Ecoji.getEncoder().readFrom("abc").writeToString() +
+                         Ecoji.getEncoder().readFrom(bytes).writeToString();
+
+        assertEquals(-1, Ecoji.getDecoder().validate(encoded));
+        assertEquals(-1, Ecoji.getDecoder().validate(new StringBuilder(encoded)));
+        assertEquals(encoded.length() - 8, Ecoji.getDecoder().validate(encoded.substring(0, encoded.length() - 3)));
+
+        String invalid = encoded.substring(0, 50001) + "a" + encoded.substring(50002);
+        assertEquals(50001, Ecoji.getDecoder().validate(invalid));
+    }
+
+    @Test
+    void testIgnoredCodePoints() throws IOException {
+        // the lines cross the boundaries of the internal windows
+        byte[] bytes = new byte[20003];
+        new Random(42).nextBytes(bytes);
+        String wrapped = Ecoji.getEncoder().wrapAt(7, "\r\n").readFrom(bytes).writeToString() + "\n";
+        Ecoji.Decoder lenient = Ecoji.getDecoder().lenient();
+
+        assertEquals(-1, lenient.validate(wrapped));
+        assertTrue(lenient.isValid(new StringBuilder(wrapped)));
+        assertArrayEquals(bytes, lenient.readFrom(wrapped).writeToBytes());
+        assertEquals(wrapped.indexOf('\r'), Ecoji.getDecoder().validate(wrapped));
+
+        // an incomplete last group is reported at its first emoji, which may be on the previous line
+        String truncated = wrapped.substring(0, wrapped.length() - 3);
+        int emojis = 0;
+        int lastGroup = 0;
+        for (int i = 0; i < truncated.length(); i += Character.charCount(truncated.codePointAt(i))) {
+            if (truncated.charAt(i) != '\r' && truncated.charAt(i) != '\n' && emojis++ % 4 == 0) {
+                lastGroup = i;
+            }
+        }
+        assertEquals(lastGroup, lenient.validate(truncated));
+
+        String encoded = Ecoji.getEncoder().readFrom("abcdefghij").writeToString();
+        String dotted = "." + encoded.substring(0, 4) + "..\udb40\udc01" + encoded.substring(4) + ".";
+        Ecoji.Decoder ignoring = Ecoji.getDecoder().ignoring(".\udb40\udc01");
+        assertEquals(-1, ignoring.validate(dotted));
+        assertEquals(dotted.length(), ignoring.validate(dotted + " "));
+        assertEquals(0, lenient.validate(dotted));
+
+        char[] spaces = new char[EcojiDecoding.MAX_GROUP_SPAN];
+        Arrays.fill(spaces, ' ');
+        String longGroup = encoded.substring(0, 2) + new String(spaces) + encoded.substring(2);
+        assertFalse(lenient.isValid(longGroup));
+    }
+
+    @Test
+    void testConcatenation() throws IOException {
+        String encoded = Ecoji.getEncoder().readFrom("abc").writeToString() +
+                         Ecoji.getEncoder().readFrom("defg").writeToString();
+        assertEquals(-1, Ecoji.getDecoder().validate(encoded));
+    }
+
+    @Test
+    void testInvalidCodePoint() {
+        assertEquals(4, Ecoji.getDecoder().validate("👖📸a☕"));
+        assertEquals(4, Ecoji.getDecoder().validate("👖📸\ud83c☕"));
+        assertEquals(11, Ecoji.getDecoder().validate("👖📸🎈☕👖📸\udf88☕"));
+        assertFalse(Ecoji.getDecoder().isValid("👖📸a☕"));
+    }
+
+    @Test
+    void testIncompleteGroup() {
+        assertEquals(7, Ecoji.getDecoder().validate("👖📸🎈☕👖📸🎈"));
+        assertEquals(0, Ecoji.getDecoder().validate("\ud83d"));
+    }
+
+    @Test
+    void testPaddingPlacement() {
+        assertEquals(0, validate(Emojis.PADDING, Emojis.PADDING, Emojis.PADDING, Emojis.PADDING));
+        assertEquals(3, validate(Emojis.MAPPING[0], Emojis.PADDING, Emojis.MAPPING[1], Emojis.PADDING));
+        assertEquals(4, validate(Emojis.MAPPING[0], Emojis.MAPPING[1], Emojis.PADDING_41, Emojis.MAPPING[2]));
+        assertEquals(5, validate(Emojis.MAPPING[0], Emojis.MAPPING[1], Emojis.PADDING, Emojis.PADDING_42));
+        assertEquals(-1, validate(Emojis.MAPPING[0], Emojis.PADDING, Emojis.PADDING, Emojis.PADDING));
+        assertEquals(-1, validate(Emojis.MAPPING[0], Emojis.MAPPING[1], Emojis.MAPPING[2], Emojis.PADDING_43));
+    }
+
+    private static int validate(int... codePoints) {
+        return Ecoji.getDecoder().validate(new String(codePoints, 0, codePoints.length));
+    }
+}
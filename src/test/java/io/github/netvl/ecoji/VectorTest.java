@@ -0,0 +1,97 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the prefixes processed by the {@link EcojiVector} kernels against the alphabet. On JDKs where the kernels
+ * are disabled they process nothing, which trivially passes.
+ */
+class VectorTest {
+    private static final int SIZE = 5 * 1000;
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String reference(byte[] bytes, int off, int groups) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = off; i < off + groups * 5; i += 5) {
+            long group = 0;
+            for (int k = 0; k < 5; ++k) {
+                group = group << 8 | bytes[i + k] & 0xff;
+            }
+            for (int k = 3; k >= 0; --k) {
+                sb.appendCodePoint(Emojis.MAPPING[(int) (group >>> (k * 10)) & 0x3ff]);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testEncode() {
+        byte[] bytes = randomBytes(SIZE + 3);
+        for (int off = 0; off < 3; ++off) {
+            char[] dst = new char[SIZE / 5 * 8 + 1];
+            int groups = EcojiVector.encode(bytes, off, off + SIZE, dst, 1);
+
+            assertTrue(groups >= 0 && groups <= SIZE / 5);
+            assertEquals(reference(bytes, off, groups), new String(dst, 1, groups * 8));
+        }
+    }
+
+    @Test
+    void testEncodeUtf8() {
+        byte[] bytes = randomBytes(SIZE + 3);
+        for (int off = 0; off < 3; ++off) {
+            byte[] dst = new byte[SIZE / 5 * 16 + 1];
+            int groups = EcojiVector.encodeUtf8(bytes, off, off + SIZE, dst, 1);
+
+            assertTrue(groups >= 0 && groups <= SIZE / 5);
+            assertArrayEquals(reference(bytes, off, groups).getBytes(StandardCharsets.UTF_8),
+                              Arrays.copyOfRange(dst, 1, 1 + groups * 16));
+        }
+    }
+
+    @Test
+    void testDecodeStopsAtInvalidGroup() {
+        byte[] bytes = randomBytes(SIZE);
+        char[] encoded = reference(bytes, 0, SIZE / 5).toCharArray();
+        // the second half of the input starts with a code point which is not in the alphabet
+        encoded[encoded.length / 2] = 'a';
+        encoded[encoded.length / 2 + 1] = 'b';
+
+        byte[] dst = new byte[SIZE];
+        int groups = EcojiVector.decode(encoded, 0, encoded.length, dst, 0, dst.length);
+        assertTrue(groups <= SIZE / 10);
+        assertArrayEquals(Arrays.copyOf(bytes, groups * 5), Arrays.copyOf(dst, groups * 5));
+
+        byte[] utf8 = new String(encoded).getBytes(StandardCharsets.UTF_8);
+        groups = EcojiVector.decodeUtf8(utf8, 0, utf8.length, dst, 0, dst.length);
+        assertTrue(groups <= SIZE / 10);
+        assertArrayEquals(Arrays.copyOf(bytes, groups * 5), Arrays.copyOf(dst, groups * 5));
+    }
+
+    @Test
+    void testDecodeRespectsOutputBounds() {
+        byte[] bytes = randomBytes(SIZE);
+        char[] encoded = reference(bytes, 0, SIZE / 5).toCharArray();
+
+        byte[] dst = new byte[SIZE];
+        int groups = EcojiVector.decode(encoded, 0, encoded.length, dst, 0, 103);
+        assertTrue(groups * 5 <= 103);
+        assertArrayEquals(Arrays.copyOf(bytes, groups * 5), Arrays.copyOf(dst, groups * 5));
+        for (int i = groups * 5; i < dst.length; ++i) {
+            assertEquals(0, dst[i]);
+        }
+    }
+}
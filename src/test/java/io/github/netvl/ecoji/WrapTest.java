@@ -0,0 +1,217 @@
+package io.github.netvl.ecoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WrapTest {
+    @Test
+    void testLineLengths() throws IOException {
+        Random random = new Random(42);
+        for (int emojisPerLine : new int[]{1, 2, 3, 4, 5, 7, 8, 76}) {
+            Ecoji.WrappingEncoder encoder = Ecoji.getEncoder().wrapAt(emojisPerLine, "\r\n");
+            for (int size = 0; size <= 40; ++size) {
+                byte[] bytes = new byte[size];
+                random.nextBytes(bytes);
+                String encoded = Ecoji.getEncoder().readFrom(bytes).writeToString();
+                String expected = wrap(encoded, emojisPerLine, "\r\n");
+                byte[] expectedUtf8 = expected.getBytes(StandardCharsets.UTF_8);
+
+                String wrapped = encoder.readFrom(bytes).writeToString();
+                assertEquals(expected, wrapped);
+                assertArrayEquals(expectedUtf8, encoder.readFrom(bytes).writeToUtf8Bytes());
+                assertEquals(expected.codePointCount(0, expected.length()), encoder.encodedCodePointCount(size));
+                assertEquals(expected.length() - encoded.length(),
+                             encoder.encodedLength(size) - Ecoji.getEncoder().encodedLength(size));
+                assertEquals(expectedUtf8.length - encoded.getBytes(StandardCharsets.UTF_8).length,
+                             encoder.encodedUtf8Length(size) - Ecoji.getEncoder().encodedUtf8Length(size));
+                assertArrayEquals(bytes, Ecoji.getDecoder().lenient().readFrom(wrapped).writeToBytes());
+            }
+        }
+    }
+
+    @Test
+    void testStreams() throws IOException {
+        byte[] bytes = new byte[EcojiEncoding.BLOCK_SIZE * 2 + 3];
+        new Random(42).nextBytes(bytes);
+        Ecoji.WrappingEncoder encoder = Ecoji.getEncoder().wrapAt(7, "\n");
+        String expected = wrap(Ecoji.getEncoder().readFrom(bytes).writeToString(), 7, "\n");
+        byte[] expectedUtf8 = expected.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(expected, encoder.readFrom(bytes).writeToString());
+        assertEquals(expected, encoder.readFrom(new ByteArrayInputStream(bytes)).writeToString());
+        assertArrayEquals(expectedUtf8, encoder.readFrom(new ByteArrayInputStream(bytes)).writeToUtf8Bytes());
+
+        ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+        assertEquals(expectedUtf8.length, encoder.readFrom(bytes).writeTo(utf8));
+        assertArrayEquals(expectedUtf8, utf8.toByteArray());
+
+        StringWriter writer = new StringWriter();
+        try (OutputStream stream = encoder.wrap(writer)) {
+            for (int p = 0; p < bytes.length; p += 1001) {
+                stream.write(bytes, p, Math.min(1001, bytes.length - p));
+                stream.flush();
+            }
+        }
+        assertEquals(expected, writer.toString());
+
+        // wrapped output is encoded sequentially
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, encoder.parallel(pool).readFrom(bytes).writeToString());
+            assertEquals(expected, Ecoji.getEncoder().parallel(pool).wrapAt(7, "\n").readFrom(bytes).writeToString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testFile() throws IOException {
+        byte[] bytes = new byte[100003];
+        new Random(42).nextBytes(bytes);
+        Path source = Files.createTempFile("ecoji", ".bin");
+        Path destination = Files.createTempFile("ecoji", ".txt");
+        try {
+            Files.write(source, bytes);
+            Ecoji.WrappingEncoder encoder = Ecoji.getEncoder().wrapAt(76, "\n");
+            long written = encoder.encodeFile(source, destination);
+
+            byte[] expected = encoder.readFrom(bytes).writeToUtf8Bytes();
+            assertEquals(expected.length, written);
+            assertEquals(encoder.encodedUtf8Length(bytes.length), written);
+            assertArrayEquals(expected, Files.readAllBytes(destination));
+        } finally {
+            Files.delete(source);
+            Files.delete(destination);
+        }
+    }
+
+    @Test
+    void testSessions() throws IOException {
+        Random random = new Random(42);
+        for (int emojisPerLine : new int[]{1, 3, 4, 7, 76}) {
+            Ecoji.WrappingEncoder encoder = Ecoji.getEncoder().wrapAt(emojisPerLine, "\r\n");
+            EcojiEncoderSession session = encoder.newSession();
+            for (int size : new int[]{0, 1, 4, 5, 9, 10, 123, 5000, 10001}) {
+                byte[] bytes = new byte[size];
+                random.nextBytes(bytes);
+                String expected = wrap(Ecoji.getEncoder().readFrom(bytes).writeToString(), emojisPerLine, "\r\n");
+                byte[] expectedUtf8 = expected.getBytes(StandardCharsets.UTF_8);
+
+                // every call of the array-based methods starts a new line
+                for (int i = 0; i < 2; ++i) {
+                    char[] chars = new char[(int) encoder.encodedLength(size)];
+                    assertEquals(expected, new String(chars, 0, session.encode(bytes, 0, size, chars, 0)));
+                    assertEquals(expected, session.encodeToString(bytes, 0, size));
+                    byte[] utf8 = new byte[(int) encoder.encodedUtf8Length(size)];
+                    assertArrayEquals(expectedUtf8, Arrays.copyOf(utf8, session.encodeUtf8(bytes, 0, size, utf8, 0)));
+                }
+
+                // the incremental methods continue the current line across the calls
+                for (boolean direct : new boolean[]{false, true}) {
+                    assertEquals(expected, encodeInFragments(session, bytes, random, direct));
+                    assertArrayEquals(expectedUtf8, encodeUtf8InFragments(session, bytes, random, direct));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSettings() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.getEncoder().wrapAt(0, "\n"));
+        assertThrows(IllegalArgumentException.class, () -> Ecoji.getEncoder().wrapAt(10, "\n☕"));
+
+        // an empty separator disables the wrapping
+        byte[] bytes = new byte[100];
+        new Random(42).nextBytes(bytes);
+        char[] chars = new char[200];
+        int n = Ecoji.getEncoder().wrapAt(10, "").newSession().encode(bytes, 0, bytes.length, chars, 0);
+        assertEquals(Ecoji.getEncoder().readFrom(bytes).writeToString(), new String(chars, 0, n));
+    }
+
+    // The helpers feed the input in random fragments and drain the output through small buffers, which still have
+    // room for a group with a separator before each of its emojis
+
+    private static String encodeInFragments(EcojiEncoderSession session, byte[] bytes, Random random,
+                                            boolean direct) {
+        StringBuilder result = new StringBuilder();
+        int capacity = 16 + random.nextInt(20);
+        CharBuffer dst = direct
+                ? ByteBuffer.allocateDirect(capacity * 2).asCharBuffer()
+                : CharBuffer.allocate(capacity);
+        for (int p = 0; ; ) {
+            int n = Math.min(bytes.length - p, random.nextInt(12));
+            ByteBuffer src = ByteBuffer.wrap(bytes, p, n);
+            p += n;
+            boolean last = p == bytes.length;
+            while (session.encode(src, dst, last) == CoderResult.OVERFLOW) {
+                dst.flip();
+                result.append(dst);
+                dst.clear();
+            }
+            if (last) {
+                break;
+            }
+        }
+        dst.flip();
+        return result.append(dst).toString();
+    }
+
+    private static byte[] encodeUtf8InFragments(EcojiEncoderSession session, byte[] bytes, Random random,
+                                                boolean direct) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int capacity = 32 + random.nextInt(40);
+        ByteBuffer dst = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        byte[] chunk = new byte[capacity];
+        for (int p = 0; ; ) {
+            int n = Math.min(bytes.length - p, random.nextInt(12));
+            ByteBuffer src = ByteBuffer.wrap(bytes, p, n);
+            p += n;
+            boolean last = p == bytes.length;
+            CoderResult r;
+            do {
+                r = session.encodeUtf8(src, dst, last);
+                dst.flip();
+                int k = dst.remaining();
+                dst.get(chunk, 0, k);
+                result.write(chunk, 0, k);
+                dst.clear();
+            } while (r == CoderResult.OVERFLOW);
+            if (last) {
+                break;
+            }
+        }
+        return result.toByteArray();
+    }
+
+    // Inserts the separator after every `emojis` code points but the last ones
+    private static String wrap(String encoded, int emojis, String separator) {
+        StringBuilder result = new StringBuilder();
+        int count = 0;
+        for (int i = 0; i < encoded.length(); i += Character.charCount(encoded.codePointAt(i))) {
+            if (count > 0 && count % emojis == 0) {
+                result.append(separator);
+            }
+            result.appendCodePoint(encoded.codePointAt(i));
+            ++count;
+        }
+        return result.toString();
+    }
+}